@@ -0,0 +1,79 @@
+package src.jmh.java.blockchain.benchmarks;
+
+import src.main.java.blockchain.core.Block;
+import src.main.java.blockchain.persistence.BlockchainDAO;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Builds benchmark fixtures: validly mined chains written straight into an H2 database, so
+ * large chains can be set up without going through the printing {@code Blockchain.addBlock}.
+ */
+final class BenchmarkChains {
+
+    private BenchmarkChains() {
+    }
+
+    /**
+     * Mines {@code length} linked blocks at {@code difficulty} and writes them into the
+     * {@code blocks} table of {@code dbUrl}, creating the schema if needed.
+     */
+    static void populate(String dbUrl, int length, int difficulty) {
+        new BlockchainDAO(dbUrl).close();
+
+        String sql = "INSERT INTO blocks (hash, previous_hash, data, timestamp, nonce, difficulty, height) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        try (Connection conn = DriverManager.getConnection(dbUrl);
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            conn.setAutoCommit(false);
+
+            String previousHash = "0";
+            for (int i = 0; i < length; i++) {
+                Block block = mine(new Block("Benchmark entry " + i, previousHash), difficulty);
+
+                stmt.setString(1, block.getHash());
+                stmt.setString(2, block.getPreviousHash());
+                stmt.setString(3, block.getData());
+                stmt.setLong(4, block.getTimeStamp());
+                stmt.setInt(5, block.getNonce());
+                stmt.setInt(6, difficulty);
+                stmt.setInt(7, i);
+                stmt.addBatch();
+
+                if ((i + 1) % 1_000 == 0) {
+                    stmt.executeBatch();
+                    conn.commit();
+                }
+                previousHash = block.getHash();
+            }
+            stmt.executeBatch();
+            conn.commit();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to populate benchmark chain", e);
+        }
+    }
+
+    /** Single-threaded mining without console output. */
+    static Block mine(Block block, int difficulty) {
+        int nonce = 0;
+        String hash = block.calculateHashWithNonce(nonce);
+        while (!hasLeadingZeros(hash, difficulty)) {
+            nonce++;
+            hash = block.calculateHashWithNonce(nonce);
+        }
+        block.setNonce(nonce);
+        block.setHash(hash);
+        return block;
+    }
+
+    private static boolean hasLeadingZeros(String hash, int difficulty) {
+        for (int i = 0; i < difficulty; i++) {
+            if (hash.charAt(i) != '0') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,80 @@
+package src.jmh.java.blockchain.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import src.main.java.blockchain.core.Block;
+import src.main.java.blockchain.hashing.HashEngine;
+import src.main.java.blockchain.hashing.HashEngines;
+import src.main.java.blockchain.utils.StringUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-hash cost of the string hashing helper and of {@code Block.calculateHash}, against the
+ * original helper that looked up a new MessageDigest and built the hex string per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HashingBenchmark {
+
+    private String input;
+
+    @State(Scope.Thread)
+    public static class EngineState {
+        @Param({"jca", "unrolled", "multilane"})
+        public String engine;
+
+        HashEngine hashEngine;
+        Block block;
+
+        @Setup
+        public void setUp() {
+            hashEngine = HashEngines.byName(engine);
+            block = newBlock();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        Block block = newBlock();
+        input = block.getPreviousHash() + block.getTimeStamp() + block.getNonce() + block.getData();
+    }
+
+    @Benchmark
+    public String applySha256() {
+        return StringUtil.applySha256(input);
+    }
+
+    /**
+     * The original {@code applySha256}, kept here as the baseline
+     */
+    @Benchmark
+    public String perCallMessageDigest() throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hexString = new StringBuilder();
+        for (byte b : hash) {
+            String hex = Integer.toHexString(0xff & b);
+            if (hex.length() == 1) {
+                hexString.append('0');
+            }
+            hexString.append(hex);
+        }
+        return hexString.toString();
+    }
+
+    @Benchmark
+    public String calculateHash(EngineState state) {
+        return state.block.calculateHash(state.hashEngine);
+    }
+
+    private static Block newBlock() {
+        return new Block("Alice sends 50 coins to Bob", StringUtil.applySha256("previous"));
+    }
+}
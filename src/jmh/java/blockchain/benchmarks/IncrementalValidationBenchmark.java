@@ -0,0 +1,54 @@
+package src.jmh.java.blockchain.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import src.main.java.blockchain.core.Blockchain;
+import src.main.java.blockchain.core.BlockchainConfig;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of validating a chain after one block has been appended, where the blocks checked by
+ * earlier calls are trusted. Each invocation appends a block in its setup, so only the check
+ * of the new block is measured; the cost should not grow with the chain length.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class IncrementalValidationBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int chainLength;
+
+    private Blockchain blockchain;
+    private int appended;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String dbUrl = "jdbc:h2:mem:incremental" + chainLength + ";DB_CLOSE_DELAY=-1";
+        BenchmarkChains.populate(dbUrl, chainLength, 1);
+        blockchain = new Blockchain(new BlockchainConfig()
+            .withDifficulty(1)
+            .withDbUrl(dbUrl)
+            .withConsoleOutput(false));
+        // Verifies the loaded chain once, so invocations only see the appended block
+        blockchain.isChainValid();
+    }
+
+    @Setup(Level.Invocation)
+    public void appendBlock() {
+        blockchain.addBlock("Appended entry " + appended++);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        blockchain.close();
+    }
+
+    @Benchmark
+    public boolean isChainValidAfterAppend() {
+        return blockchain.isChainValid();
+    }
+}
@@ -0,0 +1,49 @@
+package src.jmh.java.blockchain.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import src.main.java.blockchain.core.Block;
+import src.main.java.blockchain.hashing.HashEngines;
+import src.main.java.blockchain.mining.MiningPool;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to mine one block on a long-lived {@link MiningPool} at a fixed difficulty, for a
+ * range of thread counts. Each invocation mines a fresh block so nonce luck averages out.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MiningBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"4"})
+    public int difficulty;
+
+    @Param({"jca"})
+    public String engine;
+
+    private MiningPool pool;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = new MiningPool(threads, HashEngines.byName(engine));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int mineBlockConcurrently() {
+        Block block = new Block("Mining benchmark block " + sequence++, "0");
+        return pool.mineBlockConcurrently(block, difficulty);
+    }
+}
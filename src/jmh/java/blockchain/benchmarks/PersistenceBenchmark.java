@@ -0,0 +1,72 @@
+package src.jmh.java.blockchain.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import src.main.java.blockchain.core.Block;
+import src.main.java.blockchain.persistence.BlockchainDAO;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link BlockchainDAO} save and load cost against in-memory H2.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    private static final AtomicLong DATABASE_SEQUENCE = new AtomicLong();
+
+    @State(Scope.Benchmark)
+    public static class SaveState {
+        BlockchainDAO dao;
+        long sequence;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            dao = new BlockchainDAO("jdbc:h2:mem:save" + DATABASE_SEQUENCE.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            dao.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class LoadState {
+        @Param({"1000", "10000"})
+        public int rows;
+
+        BlockchainDAO dao;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            String dbUrl = "jdbc:h2:mem:load" + DATABASE_SEQUENCE.incrementAndGet() + ";DB_CLOSE_DELAY=-1";
+            BenchmarkChains.populate(dbUrl, rows, 1);
+            dao = new BlockchainDAO(dbUrl);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            dao.close();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public Block saveBlock(SaveState state) {
+        // Unmined block with unique data: the DAO does not verify proof-of-work
+        Block block = new Block("Persistence benchmark entry " + state.sequence++, "0");
+        state.dao.saveBlock(block);
+        return block;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public List<Block> loadBlockchain(LoadState state) {
+        return state.dao.loadBlockchain();
+    }
+}
@@ -0,0 +1,43 @@
+package src.jmh.java.blockchain.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import src.main.java.blockchain.core.Blockchain;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full-chain validation cost on chains loaded from an in-memory H2 database. Every invocation
+ * re-checks all blocks; validation of appended blocks alone is measured by
+ * {@link IncrementalValidationBenchmark}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ValidationBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int chainLength;
+
+    private Blockchain blockchain;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String dbUrl = "jdbc:h2:mem:validation" + chainLength + ";DB_CLOSE_DELAY=-1";
+        BenchmarkChains.populate(dbUrl, chainLength, 1);
+        blockchain = new Blockchain(1, dbUrl, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        blockchain.close();
+    }
+
+    @Benchmark
+    public boolean isChainValid() {
+        // Incremental validation would trust the blocks checked by the warmup and check nothing
+        return blockchain.isChainValid(true);
+    }
+}
@@ -1,20 +1,44 @@
 package src.main.java.blockchain.core;
 
-import src.main.java.blockchain.utils.StringUtil;
+import src.main.java.blockchain.hashing.HashEngine;
+import src.main.java.blockchain.hashing.HashEngines;
+import src.main.java.blockchain.mining.BlockMiner;
+import src.main.java.blockchain.mining.MiningJob;
 import src.main.java.blockchain.mining.MiningPool;
+import src.main.java.blockchain.utils.StringUtil;
 
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.List;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
 
 /**
  * Represents a single block in the blockchain.
  * Each block contains data, references the previous block, and includes proof-of-work.
+ *
+ * A block built from a list of entries ({@link #withEntries}) stores them as a JSON array in
+ * its data and commits to them through a Merkle root: the header hash covers the root in
+ * place of the data, and single entries can be proven with {@link #getInclusionProof(int)}.
  */
 public class Block {
+    private static final Gson ENTRY_GSON = new Gson();
+    private static final Type ENTRY_LIST_TYPE = new TypeToken<List<String>>() { }.getType();
+    // Nonces tried on the calling thread between polls of the mining job, about a millisecond
+    private static final int JOB_POLL_INTERVAL = 1 << 10;
+
     private volatile String hash;        // Made volatile for thread safety
     private final String previousHash;
     private final String data;
     private volatile long timeStamp;     // Made volatile for database reconstruction
     private volatile int nonce;          // Made volatile for concurrent mining
+    private final String merkleRoot;     // null for blocks with opaque data
+    private volatile int difficultyBits; // Leading zero bits the block was mined to; 0 until mined
+
+    // Built on first use and kept for later proofs; not serialized
+    private transient volatile MerkleTree merkleTree;
 
     /**
      * Creates a new block with the specified data and previous block hash
@@ -24,17 +48,42 @@ public class Block {
      * @throws IllegalArgumentException if data or previousHash is null or empty
      */
     public Block(String data, String previousHash) {
+        this(data, previousHash, null, null);
+    }
+
+    private Block(String data, String previousHash, String merkleRoot, MerkleTree merkleTree) {
+        this(data, previousHash, merkleRoot, merkleTree, Instant.now().toEpochMilli());
+        this.hash = calculateHash();
+    }
+
+    // Stored blocks already carry their hash, so unlike a new block this computes none
+    private Block(String data, String previousHash, String merkleRoot, MerkleTree merkleTree, long timeStamp) {
+        this.data = checkedData(data, previousHash);
+        this.previousHash = previousHash;
+        this.merkleRoot = merkleRoot;
+        this.merkleTree = merkleTree;
+        this.timeStamp = timeStamp;
+        this.nonce = 0;
+    }
+
+    private static String checkedData(String data, String previousHash) {
         if (data == null || data.trim().isEmpty()) {
             throw new IllegalArgumentException("Block data cannot be null or empty");
         }
         if (previousHash == null) {
             throw new IllegalArgumentException("Previous hash cannot be null");
         }
-        this.data = data.trim();
-        this.previousHash = previousHash;
-        this.timeStamp = Instant.now().toEpochMilli();
-        this.nonce = 0;
-        this.hash = calculateHash();
+        return data.trim();
+    }
+
+    /**
+     * Creates a block holding the given entries, committed to by their Merkle root
+     *
+     * @throws IllegalArgumentException if there are no entries or an entry is null
+     */
+    public static Block withEntries(List<String> entries, String previousHash) {
+        MerkleTree tree = MerkleTree.of(entries);
+        return new Block(ENTRY_GSON.toJson(tree.getEntries()), previousHash, tree.getRoot(), tree);
     }
 
     /**
@@ -42,10 +91,28 @@ public class Block {
      */
     public static Block fromDatabase(String hash, String previousHash, String data,
                                      long timestamp, int nonce) {
-        Block block = new Block(data, previousHash);
-        block.timeStamp = timestamp;  // Override constructor timestamp
+        return fromDatabase(hash, previousHash, data, timestamp, nonce, null);
+    }
+
+    /**
+     * Reconstructs a block from storage, with the Merkle root it was created with or
+     * {@code null} for a block with opaque data. The tree is rebuilt from the data on demand.
+     */
+    public static Block fromDatabase(String hash, String previousHash, String data,
+                                     long timestamp, int nonce, String merkleRoot) {
+        return fromDatabase(hash, previousHash, data, timestamp, nonce, merkleRoot, 0);
+    }
+
+    /**
+     * Reconstructs a block from storage together with the difficulty, in leading zero bits,
+     * it was mined to
+     */
+    public static Block fromDatabase(String hash, String previousHash, String data,
+                                     long timestamp, int nonce, String merkleRoot, int difficultyBits) {
+        Block block = new Block(data, previousHash, merkleRoot, null, timestamp);
         block.nonce = nonce;
         block.hash = hash;
+        block.difficultyBits = difficultyBits;
         return block;
     }
 
@@ -53,46 +120,93 @@ public class Block {
      * Calculates the hash for this block based on its contents
      */
     public String calculateHash() {
-        String input = previousHash +
-            Long.toString(timeStamp) +
-            Integer.toString(nonce) +
-            data;
-        return StringUtil.applySha256(input);
+        return calculateHash(HashEngines.jca());
+    }
+
+    /**
+     * Calculates the hash for this block with the given hash engine
+     */
+    public String calculateHash(HashEngine engine) {
+        return calculateHashWithNonce(nonce, engine);
     }
 
     /**
      * Calculates hash with a specific nonce (used in concurrent mining)
      */
     public String calculateHashWithNonce(int testNonce) {
+        return calculateHashWithNonce(testNonce, HashEngines.jca());
+    }
+
+    public String calculateHashWithNonce(int testNonce, HashEngine engine) {
+        return calculateHeaderHash(engine, previousHash, timeStamp, testNonce, headerPayload());
+    }
+
+    /**
+     * Hash of a block header without the block itself
+     *
+     * @param payload the block's data, or its Merkle root if it has one
+     */
+    public static String calculateHeaderHash(HashEngine engine, String previousHash, long timeStamp, int nonce,
+                                             String payload) {
         String input = previousHash +
             Long.toString(timeStamp) +
-            Integer.toString(testNonce) +
-            data;
-        return StringUtil.applySha256(input);
+            Integer.toString(nonce) +
+            payload;
+        return engine.hashHex(input);
+    }
+
+    // What the header hash commits to after the nonce: the data, or the Merkle root if any
+    private String headerPayload() {
+        return merkleRoot != null ? merkleRoot : data;
+    }
+
+    /**
+     * Hash input preceding the nonce digits for a given timestamp, UTF-8 encoded.
+     * Together with {@link #hashInputSuffix()} this is what mining engines search over.
+     */
+    public byte[] hashInputPrefix(long timeStamp) {
+        return (previousHash + timeStamp).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Hash input following the nonce digits, UTF-8 encoded: the data, or the 64-character
+     * Merkle root for blocks with entries
+     */
+    public byte[] hashInputSuffix() {
+        return headerPayload().getBytes(StandardCharsets.UTF_8);
     }
 
     /**
      * Original mining method (backward compatible)
      */
     public void mineBlock(int difficulty) {
-        if (difficulty < 0) {
-            throw new IllegalArgumentException("Difficulty cannot be negative");
-        }
-        if (difficulty > 10) {
-            throw new IllegalArgumentException("Difficulty too high (max 10)");
-        }
+        mineBlock(difficulty, HashEngines.jca());
+    }
+
+    /**
+     * Single-threaded mining with the given hash engine
+     */
+    public void mineBlock(int difficulty, HashEngine engine) {
+        checkDifficulty(difficulty);
+        mineBlockToBits(difficulty * 4, engine);
+    }
 
-        String target = "0".repeat(difficulty);
+    /**
+     * Single-threaded mining to {@code zeroBits} leading zero bits, with console output
+     */
+    public void mineBlockToBits(int zeroBits, HashEngine engine) {
+        mineBlockToBits(zeroBits, engine, new MiningJob());
+    }
+
+    /**
+     * Single-threaded mining to {@code zeroBits} leading zero bits under the given job, with
+     * console output
+     */
+    public void mineBlockToBits(int zeroBits, HashEngine engine, MiningJob job) {
         long startTime = System.currentTimeMillis();
-        System.out.printf("Mining block with difficulty %d...%n", difficulty);
+        System.out.printf("Mining block with difficulty %s...%n", describeBits(zeroBits));
 
-        while (!hash.substring(0, difficulty).equals(target)) {
-            nonce++;
-            hash = calculateHash();
-            if (difficulty >= 5 && nonce % 100000 == 0) {
-                System.out.printf("Attempts: %,d%n", nonce);
-            }
-        }
+        mineToBits(zeroBits, engine, job);
 
         long endTime = System.currentTimeMillis();
         long miningTime = endTime - startTime;
@@ -102,32 +216,146 @@ public class Block {
         System.out.printf("Mining time: %,d ms%n%n", miningTime);
     }
 
+    /**
+     * Single-threaded mining without console output
+     */
+    public void mine(int difficulty, HashEngine engine) {
+        checkDifficulty(difficulty);
+        mineToBits(difficulty * 4, engine);
+    }
+
+    /**
+     * Single-threaded mining to {@code zeroBits} leading zero bits, without console output
+     */
+    public void mineToBits(int zeroBits, HashEngine engine) {
+        mineToBits(zeroBits, engine, new MiningJob());
+    }
+
+    /**
+     * Single-threaded mining under the given job, which is polled every
+     * {@value #JOB_POLL_INTERVAL} nonces
+     *
+     * @throws java.util.concurrent.CancellationException if the job was cancelled or expired
+     *         first; the block keeps the last nonce tried and is not mined
+     */
+    public void mineToBits(int zeroBits, HashEngine engine, MiningJob job) {
+        checkBits(zeroBits);
+        job.start();
+
+        long attempts = 0;
+        while (!StringUtil.hasLeadingZeroBits(hash, zeroBits)) {
+            if (++attempts % JOB_POLL_INTERVAL == 0) {
+                job.poll(attempts);
+            }
+            nonce++;
+            hash = calculateHash(engine);
+        }
+        difficultyBits = zeroBits;
+    }
+
     /**
      * Concurrent mining method for performance
      */
     public void mineBlockConcurrent(int difficulty, int threadCount) {
-        if (difficulty < 0) {
-            throw new IllegalArgumentException("Difficulty cannot be negative");
-        }
-        if (difficulty > 10) {
-            throw new IllegalArgumentException("Difficulty too high (max 10)");
-        }
+        mineBlockConcurrent(difficulty, threadCount, new MiningJob());
+    }
 
+    /**
+     * Concurrent mining on a pool of its own under the given job; the pool is shut down once
+     * the block is mined or the job ends
+     */
+    public void mineBlockConcurrent(int difficulty, int threadCount, MiningJob job) {
+        checkDifficulty(difficulty);
         MiningPool miningPool = new MiningPool(threadCount);
-        long startTime = System.currentTimeMillis();
+        try {
+            mineBlockConcurrentToBits(difficulty * 4, miningPool, job);
+        } finally {
+            miningPool.shutdown();
+        }
+    }
 
-        System.out.printf("Mining block with difficulty %d using %d threads...%n", difficulty, threadCount);
+    /**
+     * Concurrent mining on a caller-owned pool that is reused across blocks, or on a
+     * {@code MiningService}
+     */
+    public void mineBlockConcurrent(int difficulty, BlockMiner miner) {
+        checkDifficulty(difficulty);
+        mineBlockConcurrentToBits(difficulty * 4, miner);
+    }
 
-        int winningNonce = miningPool.mineBlockConcurrently(this, difficulty);
+    /**
+     * Concurrent mining to {@code zeroBits} leading zero bits, with console output
+     */
+    public void mineBlockConcurrentToBits(int zeroBits, BlockMiner miner) {
+        mineBlockConcurrentToBits(zeroBits, miner, new MiningJob());
+    }
 
-        this.nonce = winningNonce;
-        this.hash = calculateHash();
+    /**
+     * Concurrent mining to {@code zeroBits} leading zero bits under the given job, with
+     * console output
+     */
+    public void mineBlockConcurrentToBits(int zeroBits, BlockMiner miner, MiningJob job) {
+        long startTime = System.currentTimeMillis();
+
+        System.out.printf("Mining block with difficulty %s using %d threads...%n",
+            describeBits(zeroBits), miner.getThreadCount());
+
+        mineToBits(zeroBits, miner, job);
 
         long endTime = System.currentTimeMillis();
         System.out.printf("Block mined successfully in %d ms!%n", (endTime - startTime));
         System.out.printf("Hash: %s%nNonce: %d%n%n", hash, nonce);
+    }
+
+    /**
+     * Concurrent mining on a caller-owned pool or a mining service, without console output
+     */
+    public void mine(int difficulty, BlockMiner miner) {
+        checkDifficulty(difficulty);
+        mineToBits(difficulty * 4, miner);
+    }
 
-        miningPool.shutdown();
+    /**
+     * Concurrent mining to {@code zeroBits} leading zero bits, without console output
+     */
+    public void mineToBits(int zeroBits, BlockMiner miner) {
+        mineToBits(zeroBits, miner, new MiningJob());
+    }
+
+    /**
+     * Concurrent mining under the given job, see {@link BlockMiner#mineToBits(Block, int, MiningJob)}
+     */
+    public void mineToBits(int zeroBits, BlockMiner miner, MiningJob job) {
+        checkBits(zeroBits);
+
+        int winningNonce = miner.mineToBits(this, zeroBits, job);
+
+        this.nonce = winningNonce;
+        this.hash = calculateHash();
+        this.difficultyBits = zeroBits;
+    }
+
+    private static void checkDifficulty(int difficulty) {
+        if (difficulty < 0) {
+            throw new IllegalArgumentException("Difficulty cannot be negative");
+        }
+        if (difficulty > 10) {
+            throw new IllegalArgumentException("Difficulty too high (max 10)");
+        }
+    }
+
+    private static void checkBits(int zeroBits) {
+        if (zeroBits < 0) {
+            throw new IllegalArgumentException("Difficulty cannot be negative");
+        }
+        if (zeroBits > DifficultyPolicy.MAX_BITS) {
+            throw new IllegalArgumentException("Difficulty too high (max " + DifficultyPolicy.MAX_BITS + " bits)");
+        }
+    }
+
+    // Whole hex digits as before, e.g. "4"; otherwise the bits, e.g. "18 bits"
+    private static String describeBits(int zeroBits) {
+        return (zeroBits % 4 == 0) ? Integer.toString(zeroBits / 4) : zeroBits + " bits";
     }
 
     // Getters
@@ -136,13 +364,91 @@ public class Block {
     public String getData() { return data; }
     public long getTimeStamp() { return timeStamp; }
     public int getNonce() { return nonce; }
+    public String getMerkleRoot() { return merkleRoot; }
+
+    /** Leading zero bits the block was mined to, or 0 if it has not been mined. */
+    public int getDifficultyBits() { return difficultyBits; }
+
+    /** Whether this block's entries are committed to by a Merkle root. */
+    public boolean hasMerkleRoot() { return merkleRoot != null; }
+
+    /**
+     * The block's entries; a block without a Merkle root holds its data as a single entry
+     */
+    public List<String> getEntries() {
+        return hasMerkleRoot() ? getMerkleTree().getEntries() : List.of(data);
+    }
+
+    /**
+     * Proof that the entry at {@code index} is part of this block, verifiable against
+     * {@link #getMerkleRoot()} with {@link MerkleProof#verify(String, String)}
+     *
+     * @throws IllegalStateException if the block has no Merkle root
+     */
+    public MerkleProof getInclusionProof(int index) {
+        if (!hasMerkleRoot()) {
+            throw new IllegalStateException("Block has no Merkle root");
+        }
+        return getMerkleTree().getProof(index);
+    }
+
+    /**
+     * Whether the Merkle root matches the entries in the data. Always true for a block
+     * without a Merkle root.
+     */
+    public boolean isMerkleRootValid() {
+        if (!hasMerkleRoot()) {
+            return true;
+        }
+        try {
+            return getMerkleTree().getRoot().equals(merkleRoot);
+        } catch (RuntimeException e) {
+            // Data that is not a JSON array of entries cannot match any root
+            return false;
+        }
+    }
+
+    /**
+     * The tree over the entries in the data, built on first use. A tree built from
+     * tampered data simply has a different root than {@link #merkleRoot}.
+     */
+    private MerkleTree getMerkleTree() {
+        MerkleTree tree = merkleTree;
+        if (tree == null) {
+            List<String> entries;
+            try {
+                entries = ENTRY_GSON.fromJson(data, ENTRY_LIST_TYPE);
+            } catch (JsonParseException e) {
+                throw new IllegalStateException("Block data is not a list of entries", e);
+            }
+            tree = MerkleTree.of(entries);
+            merkleTree = tree;
+        }
+        return tree;
+    }
+
+    /**
+     * Reuses the Merkle tree {@code other} has built, if any, for storage that materializes
+     * the same stored block more than once; both must hold the same data
+     */
+    void shareMerkleTree(Block other) {
+        MerkleTree tree = other.merkleTree;
+        if (tree != null) {
+            merkleTree = tree;
+        }
+    }
 
     // Setters for thread-safe operations
     public void setHash(String hash) { this.hash = hash; }
     public void setNonce(int nonce) { this.nonce = nonce; }
+    public void setTimeStamp(long timeStamp) { this.timeStamp = timeStamp; }
 
     @Override
     public String toString() {
+        if (hasMerkleRoot()) {
+            return String.format("Block{hash='%s', previousHash='%s', merkleRoot='%s', data='%s', timeStamp=%d, nonce=%d}",
+                hash, previousHash, merkleRoot, data, timeStamp, nonce);
+        }
         return String.format("Block{hash='%s', previousHash='%s', data='%s', timeStamp=%d, nonce=%d}",
             hash, previousHash, data, timeStamp, nonce);
     }
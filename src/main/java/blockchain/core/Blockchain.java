@@ -1,18 +1,72 @@
 package src.main.java.blockchain.core;
 
+import src.main.java.blockchain.export.ChainExporter;
+import src.main.java.blockchain.hashing.HashEngine;
+import src.main.java.blockchain.hashing.HashEngines;
+import src.main.java.blockchain.metrics.MetricsRegistry;
+import src.main.java.blockchain.mining.BlockMiner;
+import src.main.java.blockchain.mining.MiningJob;
+import src.main.java.blockchain.mining.MiningPool;
+import src.main.java.blockchain.mining.MiningService;
+import src.main.java.blockchain.persistence.BlockStore;
 import src.main.java.blockchain.persistence.BlockchainDAO;
+import src.main.java.blockchain.persistence.WriteBehindBlockWriter;
+import src.main.java.blockchain.utils.StringUtil;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
-import com.google.gson.GsonBuilder;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
 
 /**
  * Enhanced blockchain implementation with proof-of-work consensus mechanism.
+ *
+ * Blocks are added by one writer at a time, serialized on an internal lock, while any number
+ * of threads read concurrently. {@link #getBlock}, {@link #size}, {@link #getLatestBlock},
+ * {@link #getBlockByHash} and {@link #isChainValid} take no lock shared with the writer. They
+ * see the chain as of some recent append and never wait for mining or persistence.
  */
 public class Blockchain {
-    private final List<Block> chain;
-    private final int difficulty;
-    private final BlockchainDAO dao;
+    private final ChainStorage chain;
+    private final DifficultyPolicy difficultyPolicy;
+    private final BlockStore store;
+    private final WriteBehindBlockWriter blockWriter;
     private final int miningThreads;
+    private final HashEngine hashEngine;
+    // This chain's own pool, or its client of a shared service; null when mining on the calling thread
+    private final MiningPool miningPool;
+    private final MiningService.Client miningClient;
+    private final BlockMiner miner;
+    private final ChainValidator validator;
+    private DigestIndex hashIndex = new DigestIndex();
+    private final MetricsRegistry metrics;
+    private final boolean consoleOutput;
+    private final Mempool mempool;
+    private final CheckpointStore checkpoints;
+    // Queued blocks by height while a resident window and write-behind are both enabled
+    private final ConcurrentHashMap<Integer, Block> unpersisted;
+    private final int checkpointInterval;
+    // Statistics of a chain without a store; a store maintains its own
+    private final ChainStats memoryStats;
+
+    // Rolling digest over the hashes of all appended blocks, see ChainCheckpoint
+    private byte[] chainDigest = ChainCheckpoint.initialDigest();
+    private volatile ChainCheckpoint lastCheckpoint;
+
+    // Held while a block is mined, appended and queued for persistence
+    private final Object writeLock = new Object();
+    // Guards starting the block producer and closing, so no entry is accepted after close
+    private final Object producerLock = new Object();
+    private volatile Thread blockProducer;
+    private volatile boolean closed;
+
+    private static final long PRODUCER_POLL_MILLIS = 100;
+    private static final int RETAINED_CHECKPOINTS = 2;
 
     // Configuration constants
     public static final int MIN_DIFFICULTY = 1;
@@ -24,15 +78,72 @@ public class Blockchain {
      * Enhanced constructor with database and threading support
      */
     public Blockchain(int difficulty, String dbUrl, int miningThreads) {
-        if (difficulty < MIN_DIFFICULTY || difficulty > MAX_DIFFICULTY) {
+        this(difficulty, dbUrl, miningThreads, HashEngines.defaultEngine());
+    }
+
+    /**
+     * Constructor with an explicit hash engine for mining and validation. The engine is
+     * checked against the JCA SHA-256 reference before it is used.
+     */
+    public Blockchain(int difficulty, String dbUrl, int miningThreads, HashEngine hashEngine) {
+        this(new BlockchainConfig()
+            .withDifficulty(difficulty)
+            .withDbUrl(dbUrl)
+            .withMiningThreads(miningThreads)
+            .withHashEngine(hashEngine));
+    }
+
+    /**
+     * Constructor taking the full set of options
+     */
+    public Blockchain(BlockchainConfig config) {
+        int difficulty = config.getDifficulty();
+        HashEngine hashEngine = config.getHashEngine();
+        if (config.getDifficultyBits() == 0 && (difficulty < MIN_DIFFICULTY || difficulty > MAX_DIFFICULTY)) {
             throw new IllegalArgumentException(
                 String.format("Difficulty must be between %d and %d", MIN_DIFFICULTY, MAX_DIFFICULTY));
         }
+        int difficultyBits = (config.getDifficultyBits() != 0) ? config.getDifficultyBits() : difficulty * 4;
 
-        this.difficulty = difficulty;
-        this.miningThreads = Math.max(1, miningThreads);
-        this.dao = (dbUrl != null) ? new BlockchainDAO(dbUrl) : null;
-        this.chain = new ArrayList<>();
+        if (hashEngine == null) {
+            throw new IllegalArgumentException("Hash engine cannot be null");
+        }
+        if (config.getCheckpointDirectory() != null && config.getCheckpointInterval() < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive");
+        }
+        if (config.isColumnarStorage() && config.getResidentTailBlocks() > 0) {
+            throw new IllegalArgumentException("Configure either columnar storage or a resident window, not both");
+        }
+        HashEngines.verify(hashEngine);
+
+        this.difficultyPolicy = (config.getTargetBlockMillis() > 0)
+            ? DifficultyPolicy.retargeting(difficultyBits, config.getTargetBlockMillis(), config.getRetargetInterval())
+            : DifficultyPolicy.fixed(difficultyBits);
+        this.miningThreads = Math.max(1, config.getMiningThreads());
+        this.hashEngine = hashEngine;
+        this.metrics = (config.getMetrics() != null) ? config.getMetrics() : new MetricsRegistry();
+        this.consoleOutput = config.isConsoleOutput();
+        this.mempool = new Mempool(config.getMempoolPolicy());
+        this.validator = new ChainValidator(hashEngine, ForkJoinPool.commonPool(),
+            ChainValidator.DEFAULT_RANGE_SIZE, metrics.validation());
+        this.store = openStore(config, metrics);
+        this.blockWriter = (store != null && config.getWriteBehindPolicy() != null)
+            ? new WriteBehindBlockWriter(store, config.getWriteBehindPolicy()) : null;
+        this.chain = createStorage(config, store);
+        this.unpersisted = (blockWriter != null && chain instanceof WindowedChainStorage) ? new ConcurrentHashMap<>() : null;
+        if (config.getMiningService() != null) {
+            this.miningPool = null;
+            this.miningClient = config.getMiningService().register(metrics.getName(), config.getMiningWeight(), metrics.mining());
+            this.miner = miningClient;
+        } else {
+            this.miningPool = (miningThreads > 1) ? new MiningPool(this.miningThreads, hashEngine, metrics.mining()) : null;
+            this.miningClient = null;
+            this.miner = miningPool;
+        }
+        this.checkpoints = (store != null && config.getCheckpointDirectory() != null)
+            ? new CheckpointStore(config.getCheckpointDirectory(), RETAINED_CHECKPOINTS) : null;
+        this.checkpointInterval = config.getCheckpointInterval();
+        this.memoryStats = (store == null) ? new ChainStats() : null;
 
         loadOrCreateBlockchain();
     }
@@ -51,135 +162,638 @@ public class Blockchain {
         this(DEFAULT_DIFFICULTY, null, DEFAULT_THREADS);
     }
 
+    private static BlockStore openStore(BlockchainConfig config, MetricsRegistry metrics) {
+        if (config.getDbUrl() != null && config.getBlockStore() != null) {
+            throw new IllegalArgumentException("Configure either a database URL or a block store, not both");
+        }
+        if (config.getBlockStore() != null) {
+            return config.getBlockStore();
+        }
+        return (config.getDbUrl() != null)
+            ? new BlockchainDAO(config.getDbUrl(), metrics.persistence(), config.getDbSchema()) : null;
+    }
+
+    private ChainStorage createStorage(BlockchainConfig config, BlockStore store) {
+        if (config.isColumnarStorage()) {
+            return new ColumnarChainStorage();
+        }
+        return (store != null && config.getResidentTailBlocks() > 0)
+            ? new WindowedChainStorage(config.getResidentTailBlocks(), config.getBlockCacheCapacity(), this::loadBlock)
+            : new FullChainStorage();
+    }
+
     private void loadOrCreateBlockchain() {
         if (isDatabaseEnabled()) {
-            List<Block> existingBlocks = dao.loadBlockchain();
-            if (existingBlocks.isEmpty()) {
+            // Blocks below a restored checkpoint are already indexed and digested
+            int trusted = restoreCheckpoint();
+            store.forEachBlock(chain.skip(trusted), block -> {
+                if (chain.size() < trusted) {
+                    chain.append(block);
+                } else {
+                    appendToChain(block);
+                }
+            });
+            if (chain.isEmpty()) {
                 createGenesisBlock();
-            } else {
-                chain.addAll(existingBlocks);
-                System.out.printf("Loaded %d blocks from database%n", existingBlocks.size());
+                return;
+            }
+            if (consoleOutput && trusted > 0) {
+                System.out.printf("Loaded %d blocks after the checkpoint from database%n", chain.size() - trusted);
+            } else if (consoleOutput) {
+                System.out.printf("Loaded %d blocks from database%n", chain.size());
+            }
+            if (trusted > 0) {
+                // The checkpoint vouches only for the blocks below it; a chain whose newer blocks
+                // fail is not opened, and close() writes no checkpoint for an invalid chain
+                ChainValidator.Result result = validator.validate(chain::get, chain.size(), difficultyPolicy);
+                if (!result.isValid()) {
+                    close();
+                    throw new IllegalStateException(String.format(
+                        "Blocks after the checkpoint at height %d failed validation: %s", trusted, result));
+                }
             }
         } else {
             createGenesisBlock();
         }
     }
 
+    /**
+     * Restores the newest checkpoint that matches the store: same difficulty policy, and the
+     * store holds the checkpoint's tip block at its height. Older checkpoints are tried when the
+     * newest does not match or cannot be read.
+     *
+     * @return height of the restored checkpoint, or {@code 0} if none was restored
+     */
+    private int restoreCheckpoint() {
+        if (checkpoints == null) {
+            return 0;
+        }
+        for (Path file : checkpoints.list()) {
+            String problem;
+            try {
+                CheckpointStore.Snapshot snapshot = checkpoints.read(file);
+                problem = checkRestorable(snapshot);
+                if (problem == null) {
+                    ChainCheckpoint checkpoint = snapshot.checkpoint;
+                    hashIndex = snapshot.index;
+                    chainDigest = StringUtil.fromHex(checkpoint.getChainDigest());
+                    lastCheckpoint = checkpoint;
+                    validator.markVerified(checkpoint.getHeight());
+                    if (consoleOutput) {
+                        System.out.printf("Restored checkpoint at height %d%n", checkpoint.getHeight());
+                    }
+                    return checkpoint.getHeight();
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                problem = e.getMessage();
+            }
+            if (consoleOutput) {
+                System.out.printf("Ignoring checkpoint %s: %s%n", file.getFileName(), problem);
+            }
+        }
+        return 0;
+    }
+
+    private String checkRestorable(CheckpointStore.Snapshot snapshot) {
+        ChainCheckpoint checkpoint = snapshot.checkpoint;
+        if (!checkpoint.getDifficultyPolicy().equals(difficultyPolicy.toString())) {
+            return "difficulty \"" + checkpoint.getDifficultyPolicy() + "\" differs from \"" + difficultyPolicy + "\"";
+        }
+        if (checkpoint.getHeight() < 1 || snapshot.index.size() != checkpoint.getHeight()) {
+            return "hash index does not cover the checkpoint height";
+        }
+        if (!StringUtil.isSha256Hex(checkpoint.getChainDigest())) {
+            return "invalid chain digest";
+        }
+        Block tip = store.loadBlock(checkpoint.getHeight() - 1);
+        if (tip == null || !tip.getHash().equals(checkpoint.getTipHash())) {
+            return "store does not hold the checkpoint's tip block";
+        }
+        return null;
+    }
+
+    /**
+     * Reads a block that is no longer resident. With write-behind enabled the block may
+     * still be queued, in which case it is served from {@link #unpersisted}. A block is
+     * removed from there only after it is committed, so a reader never has to wait for a flush.
+     */
+    private Block loadBlock(int height) {
+        Block pending = (unpersisted != null) ? unpersisted.get(height) : null;
+        return (pending != null) ? pending : store.loadBlock(height);
+    }
+
     private void createGenesisBlock() {
-        System.out.println("Creating genesis block...");
+        if (consoleOutput) {
+            System.out.println("Creating genesis block...");
+        }
         Block genesis = new Block("Genesis Block - The beginning of the chain", "0");
 
-        if (isConcurrentMiningEnabled()) {
-            genesis.mineBlockConcurrent(difficulty, miningThreads);
-        } else {
-            genesis.mineBlock(difficulty);
+        mine(genesis, new MiningJob());
+
+        appendToChain(genesis);
+
+        persist(genesis);
+
+        if (consoleOutput) {
+            System.out.println("Genesis block created successfully!\n");
+        }
+    }
+
+    public void addBlock(String data) {
+        addBlock(data, new MiningJob());
+    }
+
+    /**
+     * Mines and appends a block under the given job. Blocks are mined one at a time, so the
+     * job's deadline also covers waiting for a block another thread is mining; a job cancelled
+     * or expired meanwhile fails as soon as it is this call's turn.
+     *
+     * @throws java.util.concurrent.CancellationException if the job was cancelled or expired
+     *         before the block was mined; the chain is left as it was
+     */
+    public void addBlock(String data, MiningJob job) {
+        if (data == null || data.trim().isEmpty()) {
+            throw new IllegalArgumentException("Block data cannot be null or empty");
         }
 
-        chain.add(genesis);
+        synchronized (writeLock) {
+            Block newBlock = appendNewBlock(previousHash -> new Block(data, previousHash), job);
+            persist(newBlock);
+            checkpointIfDue();
+        }
+    }
 
-        if (isDatabaseEnabled()) {
-            dao.saveBlock(genesis, difficulty);
+    /**
+     * Mines a block holding the given entries under a Merkle root, see {@link Block#withEntries}
+     */
+    public void addBlock(List<String> entries) {
+        addBlock(entries, new MiningJob());
+    }
+
+    /**
+     * Mines a block holding the given entries under the given job, see {@link #addBlock(String, MiningJob)}
+     */
+    public void addBlock(List<String> entries, MiningJob job) {
+        if (entries == null || entries.isEmpty()) {
+            throw new IllegalArgumentException("Block entries cannot be null or empty");
         }
 
-        System.out.println("Genesis block created successfully!\n");
+        synchronized (writeLock) {
+            Block newBlock = appendNewBlock(previousHash -> Block.withEntries(entries, previousHash), job);
+            persist(newBlock);
+            checkpointIfDue();
+        }
     }
 
-    public void addBlock(String data) {
+    /**
+     * Queues an entry for mining and returns immediately. A background block producer drains
+     * the mempool into blocks of up to {@link Mempool.Policy#getMaxEntriesPerBlock()} entries
+     * and {@link Mempool.Policy#getMaxBytesPerBlock()} bytes. Such a block holds its entries
+     * in submission order under a Merkle root (see {@link Block#withEntries}), so each entry
+     * can be proven with {@link Block#getInclusionProof(int)}. Blocks from {@link #addBlock(String)}
+     * and from the producer are appended one at a time.
+     *
+     * @return future completed with the entry's block once that block has been mined and
+     *         persisted; completed exceptionally with a {@link RejectedExecutionException} if
+     *         the mempool is full, or if mining or persisting the block fails
+     * @throws IllegalArgumentException if the entry is empty or larger than a block may be
+     * @throws IllegalStateException if the blockchain has been closed
+     */
+    public CompletableFuture<Block> submit(String data) {
         if (data == null || data.trim().isEmpty()) {
             throw new IllegalArgumentException("Block data cannot be null or empty");
         }
+        Mempool.Entry entry = new Mempool.Entry(data);
+        if (entry.bytes > mempool.getPolicy().getMaxBytesPerBlock()) {
+            throw new IllegalArgumentException(String.format("Entry of %d bytes exceeds the block limit of %d bytes",
+                entry.bytes, mempool.getPolicy().getMaxBytesPerBlock()));
+        }
+
+        synchronized (producerLock) {
+            if (closed) {
+                throw new IllegalStateException("Blockchain has been closed");
+            }
+            if (blockProducer == null) {
+                blockProducer = new Thread(this::produceBlocks, "block-producer");
+                blockProducer.setDaemon(true);
+                blockProducer.start();
+            }
+            if (!mempool.offer(entry)) {
+                entry.future.completeExceptionally(new RejectedExecutionException("Mempool is full"));
+            }
+        }
+        return entry.future;
+    }
+
+    public Mempool getMempool() { return mempool; }
+
+    private void produceBlocks() {
+        List<Mempool.Entry> batch = new ArrayList<>();
+        while (!closed) {
+            try {
+                if (mempool.drainBlock(batch, PRODUCER_POLL_MILLIS) == 0) {
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                // Not expected: the producer is stopped through the closed flag
+                Thread.currentThread().interrupt();
+                return;
+            }
+            mineEntries(batch);
+            batch.clear();
+        }
+    }
+
+    private void mineEntries(List<Mempool.Entry> batch) {
+        List<String> entries = new ArrayList<>(batch.size());
+        for (Mempool.Entry entry : batch) {
+            entries.add(entry.data);
+        }
+
+        Block block;
+        CompletableFuture<Void> persisted;
+        try {
+            synchronized (writeLock) {
+                block = appendNewBlock(previousHash -> Block.withEntries(entries, previousHash), new MiningJob());
+                persisted = persist(block);
+                checkpointIfDue();
+            }
+        } catch (RuntimeException e) {
+            for (Mempool.Entry entry : batch) {
+                entry.future.completeExceptionally(e);
+            }
+            return;
+        }
+
+        List<Mempool.Entry> owners = List.copyOf(batch);
+        persisted.whenComplete((ignored, failure) -> {
+            for (Mempool.Entry entry : owners) {
+                if (failure == null) {
+                    entry.future.complete(block);
+                } else {
+                    entry.future.completeExceptionally(failure);
+                }
+            }
+        });
+    }
+
+    /**
+     * Creates a block on top of the chain from the latest hash, mines it and appends it.
+     * Callers hold {@link #writeLock}.
+     */
+    private Block appendNewBlock(Function<String, Block> blockFactory, MiningJob job) {
+        String previousHash = chain.hashAt(chain.size() - 1);
+        Block newBlock = blockFactory.apply(previousHash);
+
+        if (consoleOutput) {
+            System.out.printf("Adding new block (Block #%d)...%n", chain.size() + 1);
+        }
+
+        mine(newBlock, job);
 
-        String previousHash = getLatestBlock().getHash();
-        Block newBlock = new Block(data, previousHash);
+        appendToChain(newBlock);
 
-        System.out.printf("Adding new block (Block #%d)...%n", chain.size() + 1);
+        if (consoleOutput) {
+            System.out.printf("Block #%d added successfully!%n%n", chain.size());
+        }
+        return newBlock;
+    }
 
+    /**
+     * Mines the block, which goes on top of the chain, to the difficulty the policy requires
+     * at its height. Mines on the pool, the shared service or the calling thread. Pools and the
+     * service record their own mining metrics; single-threaded mining is recorded here as the
+     * work of worker 0.
+     */
+    private void mine(Block block, MiningJob job) {
+        int bits = difficultyPolicy.bitsAt(chain.size(), chain::get);
         if (isConcurrentMiningEnabled()) {
-            newBlock.mineBlockConcurrent(difficulty, miningThreads);
+            if (consoleOutput) {
+                block.mineBlockConcurrentToBits(bits, miner, job);
+            } else {
+                block.mineToBits(bits, miner, job);
+            }
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        if (consoleOutput) {
+            block.mineBlockToBits(bits, hashEngine, job);
         } else {
-            newBlock.mineBlock(difficulty);
+            block.mineToBits(bits, hashEngine, job);
         }
+        long nanos = System.nanoTime() - startTime;
+        // The nonce counts up from 0, and the hash for nonce 0 is computed on construction
+        long attempts = block.getNonce() + 1L;
+        metrics.mining().recordWork(0, attempts, nanos);
+        metrics.mining().recordBlock(nanos, attempts);
+    }
 
-        chain.add(newBlock);
+    /**
+     * The block is published to readers first and indexed after, so an indexed height is
+     * always readable; only the newest block can be briefly missing from the index.
+     */
+    private void appendToChain(Block block) {
+        int height = chain.size();
+        chainDigest = ChainCheckpoint.extendDigest(hashEngine, chainDigest, block.getHash());
+        chain.append(block);
+        hashIndex.put(block.getHash(), height);
+        if (memoryStats != null) {
+            memoryStats.record(block);
+        }
+    }
 
-        if (isDatabaseEnabled()) {
-            dao.saveBlock(newBlock, difficulty);
+    /**
+     * Writes a checkpoint of the current chain: pending writes are flushed and the blocks
+     * since the last validation are validated first, so the checkpoint only covers blocks that
+     * are both durable and valid.
+     *
+     * @throws IllegalStateException if checkpoints are not configured or the chain is invalid
+     */
+    public ChainCheckpoint checkpoint() {
+        if (checkpoints == null) {
+            throw new IllegalStateException("Checkpoints are not configured");
+        }
+        synchronized (writeLock) {
+            ChainCheckpoint checkpoint = writeCheckpoint();
+            if (checkpoint == null) {
+                throw new IllegalStateException("Chain is invalid; no checkpoint written");
+            }
+            return checkpoint;
         }
+    }
 
-        System.out.printf("Block #%d added successfully!%n%n", chain.size());
+    /** The newest checkpoint written or restored, or {@code null} if there is none. */
+    public ChainCheckpoint getLastCheckpoint() {
+        return lastCheckpoint;
     }
 
-    // Keep all your existing methods (getLatestBlock, isChainValid, etc.)
-    public Block getLatestBlock() {
-        if (chain.isEmpty()) {
-            throw new IllegalStateException("Blockchain is empty");
+    /**
+     * Writes a checkpoint once {@code checkpointInterval} blocks have been added since the
+     * last one. Callers hold {@link #writeLock}.
+     */
+    private void checkpointIfDue() {
+        if (checkpoints != null && chain.size() - checkpointHeight() >= checkpointInterval) {
+            writeCheckpoint();
         }
-        return chain.get(chain.size() - 1);
     }
 
-    public boolean isChainValid() {
-        String hashTarget = "0".repeat(difficulty);
+    private int checkpointHeight() {
+        ChainCheckpoint checkpoint = lastCheckpoint;
+        return (checkpoint != null) ? checkpoint.getHeight() : 0;
+    }
 
-        for (int i = 1; i < chain.size(); i++) {
-            Block currentBlock = chain.get(i);
-            Block previousBlock = chain.get(i - 1);
+    /**
+     * Callers hold {@link #writeLock}.
+     *
+     * @return the checkpoint, or {@code null} if the chain failed validation
+     */
+    private ChainCheckpoint writeCheckpoint() {
+        flush();
+        ChainValidator.Result result = validator.validate(chain::get, chain.size(), difficultyPolicy);
+        if (!result.isValid()) {
+            System.err.println("Checkpoint skipped: " + result);
+            return null;
+        }
+        ChainCheckpoint checkpoint = new ChainCheckpoint(chain.size(), chain.hashAt(chain.size() - 1),
+            StringUtil.toHex(chainDigest), difficultyPolicy.toString(), System.currentTimeMillis());
+        checkpoints.write(checkpoint, hashIndex);
+        lastCheckpoint = checkpoint;
+        return checkpoint;
+    }
 
-            if (!currentBlock.getHash().equals(currentBlock.calculateHash())) {
-                System.err.printf("Invalid hash detected at block %d%n", i);
-                return false;
+    /**
+     * Saves the block, or queues it when write-behind is enabled.
+     *
+     * @return future completed once the block is persisted (already complete unless queued)
+     */
+    private CompletableFuture<Void> persist(Block block) {
+        if (blockWriter != null) {
+            if (unpersisted == null) {
+                return blockWriter.submit(block);
             }
-
-            if (!currentBlock.getPreviousHash().equals(previousBlock.getHash())) {
-                System.err.printf("Invalid previous hash link at block %d%n", i);
-                return false;
+            int height = chain.size() - 1;
+            unpersisted.put(height, block);
+            CompletableFuture<Void> committed;
+            try {
+                committed = blockWriter.submit(block);
+            } catch (RuntimeException e) {
+                unpersisted.remove(height);
+                throw e;
             }
+            committed.whenComplete((ignored, failure) -> unpersisted.remove(height));
+            return committed;
+        }
+        if (isDatabaseEnabled()) {
+            store.saveBlock(block);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
 
-            if (!currentBlock.getHash().substring(0, difficulty).equals(hashTarget)) {
-                System.err.printf("Block %d was not properly mined (invalid proof-of-work)%n", i);
-                return false;
-            }
+    // Keep all your existing methods (getLatestBlock, isChainValid, etc.)
+    public Block getLatestBlock() {
+        int size = chain.size();
+        if (size == 0) {
+            throw new IllegalStateException("Blockchain is empty");
+        }
+        return chain.get(size - 1);
+    }
+
+    /**
+     * Validates the chain. Blocks verified by an earlier successful call are trusted, so
+     * repeated calls only check blocks appended since then.
+     */
+    public boolean isChainValid() {
+        return isChainValid(false);
+    }
+
+    /**
+     * Validates the chain, optionally re-checking every block from the genesis onwards
+     */
+    public boolean isChainValid(boolean fullRevalidation) {
+        int size = chain.size();
+        ChainValidator.Result result = fullRevalidation
+            ? validator.validateAll(chain::get, size, difficultyPolicy)
+            : validator.validate(chain::get, size, difficultyPolicy);
+        if (!result.isValid()) {
+            System.err.println(result);
+            return false;
         }
         return true;
     }
 
+    /**
+     * The whole chain as a pretty-printed JSON array. For large chains stream it with
+     * {@link ChainExporter} instead of building one string.
+     */
     public String toJson() {
-        return new GsonBuilder().setPrettyPrinting().create().toJson(chain);
+        StringWriter out = new StringWriter();
+        new ChainExporter().withPrettyPrinting(true).export(this, out);
+        return out.toString();
     }
 
     public int size() { return chain.size(); }
-    public int getDifficulty() { return difficulty; }
+
+    /** Difficulty of the next block in whole leading zero hex digits, rounded down. */
+    public int getDifficulty() { return getDifficultyBits() / 4; }
+
+    /** Leading zero bits the next block will be mined to. */
+    public int getDifficultyBits() { return difficultyPolicy.bitsAt(chain.size(), chain::get); }
+
+    public DifficultyPolicy getDifficultyPolicy() { return difficultyPolicy; }
     public int getMiningThreads() { return miningThreads; }
+    public HashEngine getHashEngine() { return hashEngine; }
+    public MetricsRegistry getMetrics() { return metrics; }
 
     public Block getBlock(int index) {
-        if (index < 0 || index >= chain.size()) {
+        int size = chain.size();
+        if (index < 0 || index >= size) {
             throw new IndexOutOfBoundsException(
-                String.format("Invalid block index: %d (valid range: 0-%d)", index, chain.size() - 1));
+                String.format("Invalid block index: %d (valid range: 0-%d)", index, size - 1));
         }
         return chain.get(index);
     }
 
+    /**
+     * Looks up a block by hash through the in-memory digest index. Blocks that are not
+     * resident are loaded by height. Every block of the chain is indexed when it is appended
+     * or loaded, so a hash missing from the index is not in the chain and the store is not
+     * searched.
+     *
+     * @return the block, or {@code null} if no block has this hash
+     */
+    public Block getBlockByHash(String hash) {
+        int height = hashIndex.get(hash);
+        if (height < 0) {
+            // Only the newest block can be appended but not yet indexed. If another block
+            // has been appended since the lookup, the one before it is indexed by now.
+            int size = chain.size();
+            if (size > 0 && chain.hashAt(size - 1).equals(hash)) {
+                return chain.get(size - 1);
+            }
+            height = hashIndex.get(hash);
+        }
+        return (height >= 0) ? chain.get(height) : null;
+    }
+
+    public boolean containsHash(String hash) {
+        return getBlockByHash(hash) != null;
+    }
+
+    /**
+     * Statistics of the chain, read without scanning it. With a store they cover the blocks
+     * committed to it, so with write-behind the newest blocks may not be counted yet.
+     */
+    public ChainStats getStats() {
+        return isDatabaseEnabled() ? store.getChainStats() : memoryStats.copy();
+    }
+
+    /**
+     * Flushes pending writes and recomputes the store's statistics from every stored block,
+     * replacing its persisted summary. Without a store the in-memory statistics are returned
+     * as they are, since nothing can make them drift from the chain.
+     */
+    public ChainStats rebuildStats() {
+        if (!isDatabaseEnabled()) {
+            return memoryStats.copy();
+        }
+        flush();
+        return store.rebuildChainStats();
+    }
+
     public void printStats() {
         System.out.println("=== ENHANCED BLOCKCHAIN STATISTICS ===");
         System.out.printf("Total blocks: %d%n", size());
-        System.out.printf("Mining difficulty: %d%n", difficulty);
-        System.out.printf("Mining threads: %d%n", miningThreads);
+        System.out.printf("Mining difficulty: %d bits%n", getDifficultyBits());
+        if (difficultyPolicy.isRetargeting()) {
+            System.out.printf("Difficulty policy: %s%n", difficultyPolicy);
+        }
+        if (miningClient != null) {
+            System.out.printf("Mining service: %d shared workers, weight %d%n", miner.getThreadCount(), miningClient.getWeight());
+        } else {
+            System.out.printf("Mining threads: %d%n", miningThreads);
+        }
+        System.out.printf("Hash engine: %s%n", hashEngine.getName());
         System.out.printf("Database enabled: %s%n", isDatabaseEnabled() ? "Yes" : "No");
         System.out.printf("Latest block hash: %s%n", getLatestBlock().getHash());
         System.out.printf("Genesis block hash: %s%n", chain.get(0).getHash());
 
         if (isDatabaseEnabled()) {
-            System.out.printf("Database stats: %s%n", dao.getBlockchainStats());
+            if (blockWriter != null) {
+                System.out.printf("Blocks pending write: %d%n", blockWriter.getPendingCount());
+            }
+            System.out.printf("Database stats: %s%n", store.getBlockchainStats());
+        }
+        System.out.printf("Chain stats: %s%n", getStats());
+        if (lastCheckpoint != null) {
+            System.out.printf("Last checkpoint: height %d%n", lastCheckpoint.getHeight());
         }
+        if (blockProducer != null) {
+            System.out.printf("Mempool: %d entries (%,d bytes) pending%n", mempool.size(), mempool.getPendingBytes());
+        }
+        System.out.println(metrics.summary());
 
         System.out.println("=========================================\n");
     }
 
-    private boolean isDatabaseEnabled() { return dao != null; }
-    private boolean isConcurrentMiningEnabled() { return miningThreads > 1; }
+    private boolean isDatabaseEnabled() { return store != null; }
+    private boolean isConcurrentMiningEnabled() { return miner != null; }
+
+    /**
+     * Waits until every block added so far has been committed to the database. A no-op
+     * unless write-behind persistence is enabled.
+     */
+    public void flush() {
+        if (blockWriter != null) {
+            blockWriter.flush();
+        }
+    }
 
+    /**
+     * Stops the block producer after the block it is mining, fails the futures of entries
+     * still in the mempool, writes a final checkpoint if blocks were added since the last one,
+     * then shuts down mining and persistence.
+     */
     public void close() {
-        if (isDatabaseEnabled()) {
-            dao.close();
+        synchronized (producerLock) {
+            closed = true;
+        }
+        if (blockProducer != null) {
+            try {
+                blockProducer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for the block producer", e);
+            }
+        }
+        for (Mempool.Entry entry : mempool.clear()) {
+            entry.future.completeExceptionally(new IllegalStateException("Blockchain was closed before the entry was mined"));
+        }
+
+        try {
+            if (checkpoints != null) {
+                synchronized (writeLock) {
+                    if (chain.size() > checkpointHeight()) {
+                        writeCheckpoint();
+                    }
+                }
+            }
+        } finally {
+            if (miningPool != null) {
+                miningPool.shutdown();
+            }
+            if (miningClient != null) {
+                miningClient.close();
+            }
+            try {
+                if (blockWriter != null) {
+                    blockWriter.close();
+                }
+            } finally {
+                if (isDatabaseEnabled()) {
+                    store.close();
+                }
+            }
         }
     }
 }
@@ -0,0 +1,205 @@
+package src.main.java.blockchain.core;
+
+import src.main.java.blockchain.hashing.HashEngine;
+import src.main.java.blockchain.hashing.HashEngines;
+import src.main.java.blockchain.metrics.MetricsRegistry;
+import src.main.java.blockchain.mining.MiningService;
+import src.main.java.blockchain.persistence.BlockStore;
+import src.main.java.blockchain.persistence.BlockchainDAO;
+import src.main.java.blockchain.persistence.WriteBehindBlockWriter.DurabilityPolicy;
+
+import java.nio.file.Path;
+
+/**
+ * Settings for a {@link Blockchain}. Defaults match the no-argument constructor:
+ * difficulty {@value Blockchain#DEFAULT_DIFFICULTY}, one mining thread, no database.
+ */
+public class BlockchainConfig {
+    private int difficulty = Blockchain.DEFAULT_DIFFICULTY;
+    private int difficultyBits;
+    private long targetBlockMillis;
+    private int retargetInterval;
+    private String dbUrl;
+    private BlockchainDAO.Schema dbSchema = BlockchainDAO.Schema.V1;
+    private BlockStore blockStore;
+    private int miningThreads = Blockchain.DEFAULT_THREADS;
+    private HashEngine hashEngine = HashEngines.defaultEngine();
+    private DurabilityPolicy writeBehindPolicy;
+    private int residentTailBlocks;
+    private int blockCacheCapacity;
+    private boolean columnarStorage;
+    private MetricsRegistry metrics;
+    private boolean consoleOutput = true;
+    private Mempool.Policy mempoolPolicy = Mempool.Policy.DEFAULT;
+    private Path checkpointDirectory;
+    private int checkpointInterval;
+    private MiningService miningService;
+    private int miningWeight = 1;
+
+    /** Difficulty as a number of leading zero hex digits, {@value Blockchain#MIN_DIFFICULTY}..{@value Blockchain#MAX_DIFFICULTY}. */
+    public BlockchainConfig withDifficulty(int difficulty) {
+        this.difficulty = difficulty;
+        this.difficultyBits = 0;
+        return this;
+    }
+
+    /**
+     * Difficulty as a number of leading zero bits, {@value DifficultyPolicy#MIN_BITS}..{@value
+     * DifficultyPolicy#MAX_BITS}; replaces {@link #withDifficulty}. With retargeting enabled
+     * this is the difficulty of the first blocks.
+     */
+    public BlockchainConfig withDifficultyBits(int bits) {
+        this.difficultyBits = bits;
+        return this;
+    }
+
+    /**
+     * Retargets the difficulty every {@code retargetInterval} blocks to hold the given time per
+     * block, judged from the timestamps of the blocks mined since the last retarget. See
+     * {@link DifficultyPolicy#retargeting}.
+     */
+    public BlockchainConfig withTargetBlockTime(long targetMillis, int retargetInterval) {
+        this.targetBlockMillis = targetMillis;
+        this.retargetInterval = retargetInterval;
+        return this;
+    }
+
+    /** JDBC URL of the database to persist to, or {@code null} for an in-memory chain only. */
+    public BlockchainConfig withDbUrl(String dbUrl) {
+        this.dbUrl = dbUrl;
+        return this;
+    }
+
+    /**
+     * Table layout used with {@link #withDbUrl(String)}; {@code V1} by default. Existing v1
+     * data is moved over with {@code BlockchainDAO.migrateToV2}.
+     */
+    public BlockchainConfig withDbSchema(BlockchainDAO.Schema dbSchema) {
+        this.dbSchema = dbSchema;
+        return this;
+    }
+
+    /**
+     * Persists to the given store, e.g. a {@code MappedBlockLog}, instead of a database. The
+     * blockchain takes ownership and closes the store in {@code close()}. Cannot be combined
+     * with {@link #withDbUrl(String)}.
+     */
+    public BlockchainConfig withBlockStore(BlockStore blockStore) {
+        this.blockStore = blockStore;
+        return this;
+    }
+
+    public BlockchainConfig withMiningThreads(int miningThreads) {
+        this.miningThreads = miningThreads;
+        return this;
+    }
+
+    public BlockchainConfig withHashEngine(HashEngine hashEngine) {
+        this.hashEngine = hashEngine;
+        return this;
+    }
+
+    /**
+     * Persists blocks through a write-behind queue with the given policy instead of saving
+     * each one synchronously in {@code addBlock}. {@code null} restores synchronous saves.
+     */
+    public BlockchainConfig withWriteBehind(DurabilityPolicy policy) {
+        this.writeBehindPolicy = policy;
+        return this;
+    }
+
+    /**
+     * Keeps only the newest {@code tailBlocks} blocks plus an LRU cache of up to
+     * {@code cacheBlocks} older ones in memory; other blocks are read from the database on
+     * demand. Only takes effect with a database or block store. A tail of {@code 0} keeps every block.
+     */
+    public BlockchainConfig withResidentWindow(int tailBlocks, int cacheBlocks) {
+        this.residentTailBlocks = tailBlocks;
+        this.blockCacheCapacity = cacheBlocks;
+        return this;
+    }
+
+    /**
+     * Keeps every block in memory in compact columns rather than as {@link Block} objects,
+     * cutting the heap per block to about 60 bytes plus its data. Blocks are rebuilt on each
+     * read, so changes made to a block returned by the chain are not kept. Cannot be combined
+     * with {@link #withResidentWindow}.
+     */
+    public BlockchainConfig withColumnarStorage(boolean columnarStorage) {
+        this.columnarStorage = columnarStorage;
+        return this;
+    }
+
+    /**
+     * Records mining, persistence and validation metrics into the given registry instead of
+     * a private one, e.g. one that has been registered with JMX.
+     */
+    public BlockchainConfig withMetrics(MetricsRegistry metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Whether mining progress and chain events are printed to standard output. On by default.
+     */
+    public BlockchainConfig withConsoleOutput(boolean consoleOutput) {
+        this.consoleOutput = consoleOutput;
+        return this;
+    }
+
+    /**
+     * Bounds of the mempool behind {@code Blockchain.submit} and of the blocks built from it
+     */
+    public BlockchainConfig withMempool(Mempool.Policy policy) {
+        this.mempoolPolicy = policy;
+        return this;
+    }
+
+    /**
+     * Writes a checkpoint into {@code directory} every {@code intervalBlocks} blocks and on
+     * {@code close()}. On startup the blocks below the newest checkpoint that still matches the
+     * database are trusted without validation; with {@link #withResidentWindow} they are not
+     * loaded either. The blocks after it are validated, and if any fails the chain is not
+     * opened. Only takes effect with a database or block store. {@code null} disables
+     * checkpoints.
+     */
+    public BlockchainConfig withCheckpoints(Path directory, int intervalBlocks) {
+        this.checkpointDirectory = directory;
+        this.checkpointInterval = intervalBlocks;
+        return this;
+    }
+
+    /**
+     * Mines on a shared service, e.g. {@link MiningService#shared()}, instead of on threads of
+     * this chain's own. Busy chains get workers in proportion to their {@code weight}. Takes
+     * precedence over {@link #withMiningThreads}.
+     */
+    public BlockchainConfig withMiningService(MiningService service, int weight) {
+        this.miningService = service;
+        this.miningWeight = weight;
+        return this;
+    }
+
+    public int getDifficulty() { return difficulty; }
+    /** Difficulty in bits if set with {@link #withDifficultyBits}, else 0. */
+    public int getDifficultyBits() { return difficultyBits; }
+    /** Target block time in milliseconds, or 0 for a fixed difficulty. */
+    public long getTargetBlockMillis() { return targetBlockMillis; }
+    public int getRetargetInterval() { return retargetInterval; }
+    public String getDbUrl() { return dbUrl; }
+    public BlockchainDAO.Schema getDbSchema() { return dbSchema; }
+    public BlockStore getBlockStore() { return blockStore; }
+    public int getMiningThreads() { return miningThreads; }
+    public HashEngine getHashEngine() { return hashEngine; }
+    public DurabilityPolicy getWriteBehindPolicy() { return writeBehindPolicy; }
+    public int getResidentTailBlocks() { return residentTailBlocks; }
+    public int getBlockCacheCapacity() { return blockCacheCapacity; }
+    public boolean isColumnarStorage() { return columnarStorage; }
+    public MetricsRegistry getMetrics() { return metrics; }
+    public boolean isConsoleOutput() { return consoleOutput; }
+    public Mempool.Policy getMempoolPolicy() { return mempoolPolicy; }
+    public Path getCheckpointDirectory() { return checkpointDirectory; }
+    public int getCheckpointInterval() { return checkpointInterval; }
+    public MiningService getMiningService() { return miningService; }
+    public int getMiningWeight() { return miningWeight; }
+}
@@ -0,0 +1,63 @@
+package src.main.java.blockchain.core;
+
+import src.main.java.blockchain.hashing.HashEngine;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Verified state of a chain at one height, written by {@link Blockchain} so a restart can
+ * trust the blocks below it without loading and validating them again.
+ *
+ * The chain digest folds every block hash up to the checkpoint into one value,
+ * {@code d(n) = SHA-256(d(n-1) || hash(n))} starting from 32 zero bytes, so two checkpoints at
+ * the same height agree only if every block hash below it agrees.
+ */
+public final class ChainCheckpoint {
+    static final int DIGEST_BYTES = 32;
+
+    private final int height;
+    private final String tipHash;
+    private final String chainDigest;
+    private final String difficultyPolicy;
+    private final long createdAt;
+
+    ChainCheckpoint(int height, String tipHash, String chainDigest, String difficultyPolicy, long createdAt) {
+        this.height = height;
+        this.tipHash = tipHash;
+        this.chainDigest = chainDigest;
+        this.difficultyPolicy = difficultyPolicy;
+        this.createdAt = createdAt;
+    }
+
+    /** Number of blocks covered, i.e. the height of the first block after the checkpoint. */
+    public int getHeight() { return height; }
+    /** Hash of the last block covered. */
+    public String getTipHash() { return tipHash; }
+    /** Rolling digest over the hashes of all covered blocks, lowercase hex. */
+    public String getChainDigest() { return chainDigest; }
+    /** The chain's {@link DifficultyPolicy} in its {@code toString()} form. */
+    public String getDifficultyPolicy() { return difficultyPolicy; }
+    public long getCreatedAt() { return createdAt; }
+
+    /** Chain digest before the first block. */
+    static byte[] initialDigest() {
+        return new byte[DIGEST_BYTES];
+    }
+
+    /**
+     * Folds one block hash into the chain digest and returns the new digest
+     */
+    static byte[] extendDigest(HashEngine engine, byte[] digest, String blockHash) {
+        byte[] hash = blockHash.getBytes(StandardCharsets.UTF_8);
+        byte[] input = new byte[DIGEST_BYTES + hash.length];
+        System.arraycopy(digest, 0, input, 0, DIGEST_BYTES);
+        System.arraycopy(hash, 0, input, DIGEST_BYTES, hash.length);
+        return engine.digest(input);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Checkpoint{height=%d, tip=%s, digest=%s, difficulty=%s}",
+            height, tipHash, chainDigest, difficultyPolicy);
+    }
+}
@@ -0,0 +1,169 @@
+package src.main.java.blockchain.core;
+
+import src.main.java.blockchain.metrics.Histogram;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Statistics of a chain's blocks, updated as each block is appended so that reading them never
+ * scans the chain.
+ *
+ * Covers the number of blocks and how many of them hold entries under a Merkle root, and the
+ * time span from the first block's timestamp to the latest. It also keeps two distributions:
+ * - nonces, which for a block mined on one thread are its attempts minus one;
+ * - block times, the gap between a block's timestamp and the one before it. A block's timestamp
+ *   is taken right after the block below it was mined, so this is about the time that block took
+ *   to mine.
+ *
+ * Recording is synchronized; every getter is constant time. Stores persist the statistics with
+ * {@link #toByteArray()} next to the blocks, and can rebuild them by recording every stored block
+ * again.
+ */
+public final class ChainStats {
+    private static final byte FORMAT_VERSION = 1;
+
+    private volatile long blockCount;
+    private volatile long merkleBlockCount;
+    private volatile long firstTimestamp;
+    private volatile long latestTimestamp;
+    private final Histogram nonces;
+    private final Histogram blockTimeMillis;
+
+    public ChainStats() {
+        this(new Histogram(), new Histogram());
+    }
+
+    private ChainStats(Histogram nonces, Histogram blockTimeMillis) {
+        this.nonces = nonces;
+        this.blockTimeMillis = blockTimeMillis;
+    }
+
+    /**
+     * Adds the block on top of the chain
+     */
+    public void record(Block block) {
+        record(block.getTimeStamp(), block.getNonce(), block.hasMerkleRoot());
+    }
+
+    /**
+     * Adds a block on top of the chain from the fields the statistics cover, for stores that
+     * rebuild them without decoding whole blocks
+     */
+    public synchronized void record(long timestamp, int nonce, boolean hasMerkleRoot) {
+        if (blockCount == 0) {
+            firstTimestamp = timestamp;
+        } else {
+            blockTimeMillis.record(timestamp - latestTimestamp);
+        }
+        latestTimestamp = timestamp;
+        nonces.record(Integer.toUnsignedLong(nonce));
+        if (hasMerkleRoot) {
+            merkleBlockCount++;
+        }
+        blockCount++;
+    }
+
+    /**
+     * Adds consecutive blocks on top of the chain
+     */
+    public synchronized void recordAll(Iterable<Block> blocks) {
+        for (Block block : blocks) {
+            record(block);
+        }
+    }
+
+    /**
+     * Independent copy, e.g. to update and only publish once the blocks are stored
+     */
+    public synchronized ChainStats copy() {
+        ChainStats copy = new ChainStats(nonces.copy(), blockTimeMillis.copy());
+        copy.blockCount = blockCount;
+        copy.merkleBlockCount = merkleBlockCount;
+        copy.firstTimestamp = firstTimestamp;
+        copy.latestTimestamp = latestTimestamp;
+        return copy;
+    }
+
+    public long getBlockCount() { return blockCount; }
+    public long getMerkleBlockCount() { return merkleBlockCount; }
+
+    /** Timestamp of the first block, or 0 for an empty chain */
+    public long getFirstTimestamp() { return firstTimestamp; }
+
+    /** Timestamp of the latest block, or 0 for an empty chain */
+    public long getLatestTimestamp() { return latestTimestamp; }
+
+    public long getTimeSpanMillis() { return latestTimestamp - firstTimestamp; }
+
+    public double getNonceMean() { return nonces.getMean(); }
+    public long getNonceP50() { return nonces.getValueAtPercentile(50); }
+    public long getNonceP99() { return nonces.getValueAtPercentile(99); }
+    public long getNonceMax() { return nonces.getMax(); }
+
+    public double getBlockTimeMeanMillis() { return blockTimeMillis.getMean(); }
+    public long getBlockTimeP50Millis() { return blockTimeMillis.getValueAtPercentile(50); }
+    public long getBlockTimeP99Millis() { return blockTimeMillis.getValueAtPercentile(99); }
+    public long getBlockTimeMaxMillis() { return blockTimeMillis.getMax(); }
+
+    public Histogram getNonceHistogram() { return nonces; }
+    public Histogram getBlockTimeHistogram() { return blockTimeMillis; }
+
+    /**
+     * Encoding for storage, a few hundred bytes to a few kilobytes depending on how widely the
+     * nonces and block times spread
+     */
+    public synchronized byte[] toByteArray() {
+        byte[] nonceBytes = nonces.toByteArray();
+        byte[] blockTimeBytes = blockTimeMillis.toByteArray();
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 * 8 + 4 + nonceBytes.length + 4 + blockTimeBytes.length);
+        buffer.put(FORMAT_VERSION);
+        buffer.putLong(blockCount);
+        buffer.putLong(merkleBlockCount);
+        buffer.putLong(firstTimestamp);
+        buffer.putLong(latestTimestamp);
+        buffer.putInt(nonceBytes.length).put(nonceBytes);
+        buffer.putInt(blockTimeBytes.length).put(blockTimeBytes);
+        return buffer.array();
+    }
+
+    /**
+     * Decodes {@link #toByteArray()}
+     *
+     * @throws IllegalArgumentException if the bytes are not encoded statistics
+     */
+    public static ChainStats fromByteArray(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try {
+            byte version = buffer.get();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported chain stats version: " + version);
+            }
+            long blockCount = buffer.getLong();
+            long merkleBlockCount = buffer.getLong();
+            long firstTimestamp = buffer.getLong();
+            long latestTimestamp = buffer.getLong();
+            byte[] nonceBytes = new byte[buffer.getInt()];
+            buffer.get(nonceBytes);
+            byte[] blockTimeBytes = new byte[buffer.getInt()];
+            buffer.get(blockTimeBytes);
+
+            ChainStats stats = new ChainStats(Histogram.fromByteArray(nonceBytes), Histogram.fromByteArray(blockTimeBytes));
+            stats.blockCount = blockCount;
+            stats.merkleBlockCount = merkleBlockCount;
+            stats.firstTimestamp = firstTimestamp;
+            stats.latestTimestamp = latestTimestamp;
+            return stats;
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Malformed chain stats encoding", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%,d blocks (%,d with entries) over %,.1f s, nonce mean %,.0f / p50 %,d / p99 %,d, "
+                + "block time mean %.1f ms / p50 %d ms / p99 %d ms / max %d ms",
+            blockCount, merkleBlockCount, getTimeSpanMillis() / 1000.0, getNonceMean(), getNonceP50(), getNonceP99(),
+            getBlockTimeMeanMillis(), getBlockTimeP50Millis(), getBlockTimeP99Millis(), getBlockTimeMaxMillis());
+    }
+}
@@ -0,0 +1,41 @@
+package src.main.java.blockchain.core;
+
+/**
+ * In-memory view of the chain held by a {@link Blockchain}, addressed by height.
+ * Implementations decide which blocks stay resident on the heap.
+ */
+interface ChainStorage {
+
+    int size();
+
+    /**
+     * Returns the block at {@code height}, which must be in {@code [0, size())}.
+     */
+    Block get(int height);
+
+    /**
+     * Hash of the block at {@code height}; storage that does not hold {@link Block} objects
+     * answers without materializing one.
+     */
+    default String hashAt(int height) {
+        return get(height).getHash();
+    }
+
+    /** Appends the next block; its height is the previous {@link #size()}. */
+    void append(Block block);
+
+    /**
+     * Starts an empty storage at up to {@code height} without the blocks below that height
+     * being appended, where the storage can load them on demand later. Storage that keeps every
+     * block resident skips nothing.
+     *
+     * @return the height the storage now starts at; blocks from there on must be appended
+     */
+    default int skip(int height) {
+        return 0;
+    }
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+}
@@ -0,0 +1,239 @@
+package src.main.java.blockchain.core;
+
+import src.main.java.blockchain.hashing.HashEngine;
+import src.main.java.blockchain.metrics.ValidationMetrics;
+import src.main.java.blockchain.utils.StringUtil;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Validates a chain by splitting it into height ranges that are verified in parallel on a
+ * fork-join pool.
+ *
+ * Every block is checked against its predecessor, including the first block of a range,
+ * so link continuity across range boundaries is covered. Each block must also record the
+ * difficulty its {@link DifficultyPolicy} requires at its height, and its hash must meet it.
+ * Ranges report their first violation and the lowest height wins, so the reported block is
+ * the same one a sequential scan would find. The validator remembers how many leading blocks
+ * it has verified and later calls only check blocks appended since then. Concurrent calls
+ * are safe; the verified count only moves forward unless a full validation fails or it is
+ * reset.
+ */
+public class ChainValidator {
+    public static final int DEFAULT_RANGE_SIZE = 2048;
+
+    private final HashEngine hashEngine;
+    private final ForkJoinPool pool;
+    private final int rangeSize;
+    private final ValidationMetrics metrics;
+    private final AtomicInteger verifiedCount = new AtomicInteger();
+
+    public ChainValidator(HashEngine hashEngine) {
+        this(hashEngine, ForkJoinPool.commonPool(), DEFAULT_RANGE_SIZE);
+    }
+
+    public ChainValidator(HashEngine hashEngine, ForkJoinPool pool, int rangeSize) {
+        this(hashEngine, pool, rangeSize, new ValidationMetrics());
+    }
+
+    public ChainValidator(HashEngine hashEngine, ForkJoinPool pool, int rangeSize, ValidationMetrics metrics) {
+        if (rangeSize < 1) {
+            throw new IllegalArgumentException("Range size must be positive");
+        }
+        this.hashEngine = hashEngine;
+        this.pool = pool;
+        this.rangeSize = rangeSize;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Type of rule a block broke
+     */
+    public enum Violation {
+        INVALID_HASH("Invalid hash detected at block %d"),
+        BROKEN_LINK("Invalid previous hash link at block %d"),
+        INSUFFICIENT_WORK("Block %d was not properly mined (invalid proof-of-work)"),
+        INVALID_MERKLE_ROOT("Merkle root does not match the entries of block %d"),
+        WRONG_DIFFICULTY("Block %d does not record a difficulty accepted at its height");
+
+        private final String messageFormat;
+
+        Violation(String messageFormat) {
+            this.messageFormat = messageFormat;
+        }
+
+        public String describe(int height) {
+            return String.format(messageFormat, height);
+        }
+    }
+
+    /**
+     * Outcome of a validation run
+     */
+    public static final class Result {
+        private static final Result VALID = new Result(-1, null);
+
+        private final int invalidHeight;
+        private final Violation violation;
+
+        private Result(int invalidHeight, Violation violation) {
+            this.invalidHeight = invalidHeight;
+            this.violation = violation;
+        }
+
+        public boolean isValid() { return violation == null; }
+        public int getInvalidHeight() { return invalidHeight; }
+        public Violation getViolation() { return violation; }
+
+        @Override
+        public String toString() {
+            return isValid() ? "valid" : violation.describe(invalidHeight);
+        }
+    }
+
+    /**
+     * Validates blocks {@code 1 .. size - 1} that have not been verified yet. The genesis block
+     * is not checked, as before. On success the verified height advances to {@code size}.
+     *
+     * @param blocks accessor returning the block at a height
+     * @param size number of blocks in the chain
+     * @param difficulty leading zero bits each block must record and have
+     */
+    public Result validate(IntFunction<Block> blocks, int size, DifficultyPolicy difficulty) {
+        int from = Math.max(1, Math.min(verifiedCount.get(), size));
+        Result result = validateRange(blocks, from, size, difficulty);
+        if (result.isValid()) {
+            verifiedCount.accumulateAndGet(size, Math::max);
+        }
+        return result;
+    }
+
+    /**
+     * Validates blocks {@code 1 .. size - 1} whatever has been verified before. On success the
+     * verified height advances to {@code size}; on failure all progress is forgotten.
+     */
+    public Result validateAll(IntFunction<Block> blocks, int size, DifficultyPolicy difficulty) {
+        Result result = validateRange(blocks, 1, size, difficulty);
+        if (result.isValid()) {
+            verifiedCount.accumulateAndGet(size, Math::max);
+        } else {
+            verifiedCount.set(0);
+        }
+        return result;
+    }
+
+    /**
+     * Validates heights {@code from .. to - 1} regardless of what has been verified before.
+     */
+    public Result validateRange(IntFunction<Block> blocks, int from, int to, DifficultyPolicy difficulty) {
+        int start = Math.max(1, from);
+        if (start >= to) {
+            return Result.VALID;
+        }
+
+        // Lowest violation found so far, encoded as height * 8 + violation ordinal
+        long startTime = System.nanoTime();
+        AtomicLong firstViolation = new AtomicLong(Long.MAX_VALUE);
+        RangeTask task = new RangeTask(blocks, start, to, difficulty, firstViolation);
+        if (to - start <= rangeSize) {
+            task.compute();
+        } else {
+            pool.invoke(task);
+        }
+        metrics.recordRun(to - start, System.nanoTime() - startTime);
+
+        long encoded = firstViolation.get();
+        if (encoded == Long.MAX_VALUE) {
+            return Result.VALID;
+        }
+        return new Result((int) (encoded >>> 3), Violation.values()[(int) (encoded & 7)]);
+    }
+
+    public ValidationMetrics getMetrics() {
+        return metrics;
+    }
+
+    /** Number of leading blocks known to be valid. */
+    public int getVerifiedCount() {
+        return verifiedCount.get();
+    }
+
+    /** Marks the first {@code count} blocks as verified, e.g. after restoring trusted state. */
+    public void markVerified(int count) {
+        verifiedCount.set(count);
+    }
+
+    /** Forgets all verification progress so the next call checks the whole chain again. */
+    public void reset() {
+        verifiedCount.set(0);
+    }
+
+    private Violation check(Block current, Block previous, DifficultyPolicy difficulty, int requiredBits) {
+        if (!current.getHash().equals(current.calculateHash(hashEngine))) {
+            return Violation.INVALID_HASH;
+        }
+        // The hash only covers the root, so the entries must be checked against it
+        if (!current.isMerkleRootValid()) {
+            return Violation.INVALID_MERKLE_ROOT;
+        }
+        if (!current.getPreviousHash().equals(previous.getHash())) {
+            return Violation.BROKEN_LINK;
+        }
+        // The recorded difficulty is not hashed, so it must be one the policy accepts
+        if (!difficulty.accepts(current.getDifficultyBits(), requiredBits)) {
+            return Violation.WRONG_DIFFICULTY;
+        }
+        if (!StringUtil.hasLeadingZeroBits(current.getHash(), current.getDifficultyBits())) {
+            return Violation.INSUFFICIENT_WORK;
+        }
+        return null;
+    }
+
+    private final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final IntFunction<Block> blocks;
+        private final int from;
+        private final int to;
+        private final DifficultyPolicy difficulty;
+        private final AtomicLong firstViolation;
+
+        RangeTask(IntFunction<Block> blocks, int from, int to, DifficultyPolicy difficulty, AtomicLong firstViolation) {
+            this.blocks = blocks;
+            this.from = from;
+            this.to = to;
+            this.difficulty = difficulty;
+            this.firstViolation = firstViolation;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > rangeSize) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RangeTask(blocks, from, mid, difficulty, firstViolation),
+                    new RangeTask(blocks, mid, to, difficulty, firstViolation));
+                return;
+            }
+
+            Block previous = blocks.apply(from - 1);
+            for (int height = from; height < to; height++) {
+                // A lower range already failed; nothing here can be the first violation
+                if (((long) height << 3) > firstViolation.get()) {
+                    return;
+                }
+                Block current = blocks.apply(height);
+                Violation violation = check(current, previous, difficulty, difficulty.bitsAt(height, blocks));
+                if (violation != null) {
+                    long encoded = ((long) height << 3) | violation.ordinal();
+                    firstViolation.accumulateAndGet(encoded, Math::min);
+                    return;
+                }
+                previous = current;
+            }
+        }
+    }
+}
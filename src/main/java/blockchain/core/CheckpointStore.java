@@ -0,0 +1,165 @@
+package src.main.java.blockchain.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Directory of checkpoint files {@code checkpoint-NNNNNNNNNN.chk}, named by height.
+ *
+ * A file holds the {@link ChainCheckpoint} fields followed by a snapshot of the hash index
+ * and ends with a CRC32 of everything before it. Files are written to a temporary name,
+ * forced to disk and then renamed, so a crash leaves either the complete new file or none.
+ * Only the newest {@code retained} files are kept.
+ */
+final class CheckpointStore {
+    private static final int MAGIC = 0x42434B50; // "BCKP"
+    // Version 2 records the difficulty policy instead of a number of hex digits
+    private static final int FORMAT_VERSION = 2;
+    private static final String PREFIX = "checkpoint-";
+    private static final String SUFFIX = ".chk";
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final Path directory;
+    private final int retained;
+
+    /**
+     * A checkpoint read back together with its hash index
+     */
+    static final class Snapshot {
+        final ChainCheckpoint checkpoint;
+        final DigestIndex index;
+
+        Snapshot(ChainCheckpoint checkpoint, DigestIndex index) {
+            this.checkpoint = checkpoint;
+            this.index = index;
+        }
+    }
+
+    /**
+     * @param directory directory holding the checkpoint files; created if missing
+     * @param retained number of newest checkpoint files kept, at least 1
+     */
+    CheckpointStore(Path directory, int retained) {
+        if (retained < 1) {
+            throw new IllegalArgumentException("At least one checkpoint must be retained");
+        }
+        this.directory = directory;
+        this.retained = retained;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create checkpoint directory " + directory, e);
+        }
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Writes the checkpoint and index, then deletes checkpoints beyond the retained count
+     */
+    void write(ChainCheckpoint checkpoint, DigestIndex index) {
+        Path file = directory.resolve(fileName(checkpoint.getHeight()));
+        Path temporary = directory.resolve(fileName(checkpoint.getHeight()) + ".tmp");
+        try {
+            try (FileOutputStream fileOut = new FileOutputStream(temporary.toFile())) {
+                CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(fileOut, BUFFER_BYTES), new CRC32());
+                DataOutputStream out = new DataOutputStream(checked);
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(checkpoint.getHeight());
+                out.writeUTF(checkpoint.getTipHash());
+                out.writeUTF(checkpoint.getChainDigest());
+                out.writeUTF(checkpoint.getDifficultyPolicy());
+                out.writeLong(checkpoint.getCreatedAt());
+                index.writeTo(out);
+                out.writeLong(checked.getChecksum().getValue());
+                out.flush();
+                fileOut.getFD().sync();
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write checkpoint at height " + checkpoint.getHeight(), e);
+        }
+
+        List<Path> files = list();
+        for (Path old : files.subList(Math.min(retained, files.size()), files.size())) {
+            try {
+                Files.deleteIfExists(old);
+            } catch (IOException e) {
+                // Left for the next prune; an extra old checkpoint does no harm
+            }
+        }
+    }
+
+    /**
+     * Checkpoint files in the directory, newest first
+     */
+    List<Path> list() {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> checkpoints = new ArrayList<>();
+            files.filter(CheckpointStore::isCheckpointFile).forEach(checkpoints::add);
+            checkpoints.sort(Comparator.comparing((Path path) -> path.getFileName().toString()).reversed());
+            return checkpoints;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list checkpoints in " + directory, e);
+        }
+    }
+
+    /**
+     * Reads a checkpoint file
+     *
+     * @throws IOException if the file cannot be read, is truncated or fails its checksum
+     */
+    Snapshot read(Path file) throws IOException {
+        try (InputStream fileIn = Files.newInputStream(file)) {
+            CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(fileIn, BUFFER_BYTES), new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a checkpoint file");
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported checkpoint format version " + version);
+            }
+            int height = in.readInt();
+            String tipHash = in.readUTF();
+            String chainDigest = in.readUTF();
+            String difficultyPolicy = in.readUTF();
+            long createdAt = in.readLong();
+            DigestIndex index = DigestIndex.readFrom(in);
+
+            long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("Checksum mismatch");
+            }
+            return new Snapshot(new ChainCheckpoint(height, tipHash, chainDigest, difficultyPolicy, createdAt), index);
+        }
+    }
+
+    private static boolean isCheckpointFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+
+    private static String fileName(int height) {
+        return String.format("%s%010d%s", PREFIX, height, SUFFIX);
+    }
+}
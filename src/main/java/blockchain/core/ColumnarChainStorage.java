@@ -0,0 +1,248 @@
+package src.main.java.blockchain.core;
+
+import src.main.java.blockchain.utils.StringUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps every block on the heap in columns instead of as {@link Block} objects, for chains too
+ * large to hold one object per block.
+ *
+ * Each block is a row across primitive arrays: its hash as four {@code long}s, its timestamp,
+ * nonce and difficulty bits, and a reference into a packed byte arena holding its Merkle root
+ * (if any) and UTF-8 data. The previous hash is not stored; it is the hash of the row before.
+ * A block costs about 60 bytes plus its data, where a {@link Block} with its hash, previous hash
+ * and data strings costs several hundred. {@link #get} materializes a new {@link Block} from
+ * its row on every call, so changes made to a returned block are not seen by later reads. The
+ * last blocks with entries read are remembered in a small table, so reading one again shares
+ * the Merkle tree an earlier copy built instead of parsing the entries again.
+ *
+ * Hashes that are not lowercase hex digests, and previous hashes that do not match the row
+ * before (such as the genesis block's {@code "0"}), are kept as strings in side maps, so every
+ * block is materialized exactly as it was appended and tampering stays visible to validation.
+ *
+ * Rows live in fixed-size segments and the arena in fixed-size chunks, neither moved once
+ * allocated. As in {@link FullChainStorage}, one thread appends and any number of threads
+ * read without locking: a row is written before the volatile size is raised.
+ */
+final class ColumnarChainStorage implements ChainStorage {
+    private static final int SEGMENT_BITS = 14;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final int WORDS = 4;
+    private static final int ROOT_BYTES = WORDS * Long.BYTES;
+    private static final int CHUNK_SIZE = 1 << 20;
+    // Payloads larger than this get a chunk of their own rather than ending the current one
+    private static final int OWN_CHUNK_THRESHOLD = CHUNK_SIZE / 4;
+
+    private static final byte MERKLE_ROOT = 1;
+    private static final byte IRREGULAR_HASH = 2;
+    private static final byte IRREGULAR_PREVIOUS_HASH = 4;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    // Slots of the recently read blocks with entries, indexed by height
+    private static final int RECENT_SLOTS = 64;
+
+    /**
+     * Columns of {@link #SEGMENT_SIZE} consecutive blocks
+     */
+    private static final class Segment {
+        final long[] hashes = new long[SEGMENT_SIZE * WORDS];
+        final long[] timestamps = new long[SEGMENT_SIZE];
+        final int[] nonces = new int[SEGMENT_SIZE];
+        final byte[] difficultyBits = new byte[SEGMENT_SIZE];
+        final byte[] flags = new byte[SEGMENT_SIZE];
+        // Chunk index in the high 32 bits, offset within the chunk in the low 32
+        final long[] payloadRefs = new long[SEGMENT_SIZE];
+        final int[] payloadLengths = new int[SEGMENT_SIZE];
+    }
+
+    /**
+     * A block with entries as last materialized, whose Merkle tree later copies share
+     */
+    private static final class RecentBlock {
+        final int height;
+        final Block block;
+
+        RecentBlock(int height, Block block) {
+            this.height = height;
+            this.block = block;
+        }
+    }
+
+    // Directories are copied when they run out of slots and, like the rows themselves,
+    // become visible to readers through the write to size
+    private volatile Segment[] segments = new Segment[16];
+    private volatile byte[][] chunks = new byte[16][];
+    private final ConcurrentHashMap<Integer, String> irregularHashes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, String> irregularPreviousHashes = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<RecentBlock> recentBlocks = new AtomicReferenceArray<>(RECENT_SLOTS);
+    private volatile int size;
+
+    // Writer state: the chunk small payloads are packed into, and the next free chunk slot
+    private int currentChunk = -1;
+    private int currentOffset = CHUNK_SIZE;
+    private int chunkCount;
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Block get(int height) {
+        checkHeight(height);
+        Segment segment = segments[height >>> SEGMENT_BITS];
+        int row = height & SEGMENT_MASK;
+        byte flags = segment.flags[row];
+
+        byte[] chunk = chunks[(int) (segment.payloadRefs[row] >>> 32)];
+        int offset = (int) segment.payloadRefs[row];
+        int length = segment.payloadLengths[row];
+        String merkleRoot = null;
+        if ((flags & MERKLE_ROOT) != 0) {
+            merkleRoot = StringUtil.toHex(Arrays.copyOfRange(chunk, offset, offset + ROOT_BYTES));
+            offset += ROOT_BYTES;
+            length -= ROOT_BYTES;
+        }
+        String data = new String(chunk, offset, length, StandardCharsets.UTF_8);
+
+        Block block = Block.fromDatabase(hashAt(height), previousHashAt(height, flags), data,
+            segment.timestamps[row], segment.nonces[row], merkleRoot, segment.difficultyBits[row]);
+        if (merkleRoot != null) {
+            int slot = height % RECENT_SLOTS;
+            RecentBlock recent = recentBlocks.get(slot);
+            if (recent != null && recent.height == height) {
+                block.shareMerkleTree(recent.block);
+            }
+            recentBlocks.set(slot, new RecentBlock(height, block));
+        }
+        return block;
+    }
+
+    /**
+     * Formats the hash from its row without materializing the block
+     */
+    @Override
+    public String hashAt(int height) {
+        checkHeight(height);
+        Segment segment = segments[height >>> SEGMENT_BITS];
+        int row = height & SEGMENT_MASK;
+        if ((segment.flags[row] & IRREGULAR_HASH) != 0) {
+            return irregularHashes.get(height);
+        }
+        char[] hex = new char[WORDS * 16];
+        int base = row * WORDS;
+        for (int word = 0; word < WORDS; word++) {
+            long value = segment.hashes[base + word];
+            for (int i = 15; i >= 0; i--) {
+                hex[word * 16 + i] = HEX_DIGITS[(int) value & 0xf];
+                value >>>= 4;
+            }
+        }
+        return new String(hex);
+    }
+
+    @Override
+    public void append(Block block) {
+        int height = size;
+        Segment segment = segmentFor(height);
+        int row = height & SEGMENT_MASK;
+
+        byte flags = 0;
+        String hash = block.getHash();
+        if (StringUtil.isSha256Hex(hash)) {
+            int base = row * WORDS;
+            for (int word = 0; word < WORDS; word++) {
+                segment.hashes[base + word] = Long.parseUnsignedLong(hash, word * 16, word * 16 + 16, 16);
+            }
+        } else {
+            irregularHashes.put(height, hash);
+            flags |= IRREGULAR_HASH;
+        }
+        if (height == 0 || !block.getPreviousHash().equals(hashAt(height - 1))) {
+            irregularPreviousHashes.put(height, block.getPreviousHash());
+            flags |= IRREGULAR_PREVIOUS_HASH;
+        }
+
+        byte[] data = block.getData().getBytes(StandardCharsets.UTF_8);
+        byte[] root = null;
+        if (block.hasMerkleRoot()) {
+            root = StringUtil.fromHex(block.getMerkleRoot());
+            flags |= MERKLE_ROOT;
+        }
+        int length = data.length + ((root != null) ? root.length : 0);
+        long ref = reserve(length);
+        byte[] chunk = chunks[(int) (ref >>> 32)];
+        int offset = (int) ref;
+        if (root != null) {
+            System.arraycopy(root, 0, chunk, offset, root.length);
+            offset += root.length;
+        }
+        System.arraycopy(data, 0, chunk, offset, data.length);
+
+        segment.timestamps[row] = block.getTimeStamp();
+        segment.nonces[row] = block.getNonce();
+        segment.difficultyBits[row] = (byte) block.getDifficultyBits();
+        segment.payloadRefs[row] = ref;
+        segment.payloadLengths[row] = length;
+        segment.flags[row] = flags;
+        size = height + 1;
+    }
+
+    private String previousHashAt(int height, byte flags) {
+        return ((flags & IRREGULAR_PREVIOUS_HASH) != 0) ? irregularPreviousHashes.get(height) : hashAt(height - 1);
+    }
+
+    private void checkHeight(int height) {
+        int currentSize = size;
+        if (height < 0 || height >= currentSize) {
+            throw new IndexOutOfBoundsException("Height " + height + " out of range for size " + currentSize);
+        }
+    }
+
+    private Segment segmentFor(int height) {
+        int index = height >>> SEGMENT_BITS;
+        Segment[] current = segments;
+        if (index == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+            segments = current;
+        }
+        if (current[index] == null) {
+            current[index] = new Segment();
+        }
+        return current[index];
+    }
+
+    /**
+     * Reserves {@code length} bytes of arena, packed into the current chunk while they fit
+     *
+     * @return reference to the reserved bytes, see {@link Segment#payloadRefs}
+     */
+    private long reserve(int length) {
+        if (length > OWN_CHUNK_THRESHOLD) {
+            return ((long) addChunk(length) << 32);
+        }
+        if (currentOffset + length > CHUNK_SIZE) {
+            currentChunk = addChunk(CHUNK_SIZE);
+            currentOffset = 0;
+        }
+        long ref = ((long) currentChunk << 32) | currentOffset;
+        currentOffset += length;
+        return ref;
+    }
+
+    private int addChunk(int chunkSize) {
+        byte[][] current = chunks;
+        if (chunkCount == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+            chunks = current;
+        }
+        current[chunkCount] = new byte[chunkSize];
+        return chunkCount++;
+    }
+}
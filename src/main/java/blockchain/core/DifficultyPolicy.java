@@ -0,0 +1,155 @@
+package src.main.java.blockchain.core;
+
+import java.util.function.IntFunction;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Number of leading zero bits each block's hash must have. Every bit doubles the expected
+ * number of attempts, so difficulty can be tuned in factors of two instead of the factors of
+ * sixteen that whole hex digits give.
+ *
+ * A fixed policy requires the same number of bits for every block. A retargeting policy starts
+ * at an initial number. Every {@code retargetInterval} blocks it moves the difficulty by whole
+ * bits, at most {@value #MAX_STEP_BITS} at a time, towards the target block time. The observed
+ * block time comes from the timestamps of the interval that just ended, whose blocks were all
+ * mined at the same difficulty.
+ *
+ * The required difficulty of a block depends only on its height and on the timestamps and
+ * difficulties of earlier blocks. A validator can therefore recompute it for every block and
+ * reject a block that records a difficulty the policy does not {@linkplain #accepts accept}.
+ */
+public final class DifficultyPolicy {
+    public static final int MIN_BITS = 1;
+    public static final int MAX_BITS = 40;
+
+    /** Largest change of a single retarget: a factor of four in expected attempts either way. */
+    public static final int MAX_STEP_BITS = 2;
+
+    private final int initialBits;
+    private final long targetBlockMillis;   // 0 for a fixed policy
+    private final int retargetInterval;
+
+    private DifficultyPolicy(int initialBits, long targetBlockMillis, int retargetInterval) {
+        if (initialBits < MIN_BITS || initialBits > MAX_BITS) {
+            throw new IllegalArgumentException(
+                String.format("Difficulty must be between %d and %d bits", MIN_BITS, MAX_BITS));
+        }
+        this.initialBits = initialBits;
+        this.targetBlockMillis = targetBlockMillis;
+        this.retargetInterval = retargetInterval;
+    }
+
+    /**
+     * Every block needs {@code bits} leading zero bits
+     */
+    public static DifficultyPolicy fixed(int bits) {
+        return new DifficultyPolicy(bits, 0, 0);
+    }
+
+    /**
+     * Starts at {@code initialBits} and retargets every {@code retargetInterval} blocks to hold
+     * {@code targetBlockMillis} per block
+     *
+     * @throws IllegalArgumentException if the target is not positive or the interval is below 2
+     */
+    public static DifficultyPolicy retargeting(int initialBits, long targetBlockMillis, int retargetInterval) {
+        if (targetBlockMillis < 1) {
+            throw new IllegalArgumentException("Target block time must be positive");
+        }
+        // An interval of n blocks has n - 1 timestamp gaps to measure
+        if (retargetInterval < 2) {
+            throw new IllegalArgumentException("Retarget interval must be at least 2 blocks");
+        }
+        return new DifficultyPolicy(initialBits, targetBlockMillis, retargetInterval);
+    }
+
+    public int getInitialBits() { return initialBits; }
+    public boolean isRetargeting() { return targetBlockMillis > 0; }
+    public long getTargetBlockMillis() { return targetBlockMillis; }
+    public int getRetargetInterval() { return retargetInterval; }
+
+    /**
+     * Leading zero bits required of the block at {@code height}
+     *
+     * @param blocks accessor for the blocks below {@code height}; a retargeting policy reads
+     *               the block just below, and at interval boundaries the first block of the
+     *               interval that ended
+     */
+    public int bitsAt(int height, IntFunction<Block> blocks) {
+        if (!isRetargeting() || height == 0) {
+            return initialBits;
+        }
+        Block previous = blocks.apply(height - 1);
+        if (height % retargetInterval != 0) {
+            return previous.getDifficultyBits();
+        }
+        Block first = blocks.apply(height - retargetInterval);
+        return retarget(previous.getDifficultyBits(), previous.getTimeStamp() - first.getTimeStamp());
+    }
+
+    /**
+     * Leading zero bits required of the block at {@code height}, from the recorded difficulties
+     * and timestamps of the blocks below it, e.g. from headers received before their blocks
+     */
+    public int bitsAt(int height, IntUnaryOperator difficultyBits, IntToLongFunction timestamps) {
+        if (!isRetargeting() || height == 0) {
+            return initialBits;
+        }
+        int previousBits = difficultyBits.applyAsInt(height - 1);
+        if (height % retargetInterval != 0) {
+            return previousBits;
+        }
+        return retarget(previousBits, timestamps.applyAsLong(height - 1) - timestamps.applyAsLong(height - retargetInterval));
+    }
+
+    /**
+     * Whether a block whose height requires {@code requiredBits} may record {@code recordedBits};
+     * its hash must then have the recorded number of leading zero bits. A retargeting policy
+     * derives later requirements from the recorded bits, so they must match exactly. A fixed
+     * policy also accepts more bits, so a chain mined at a higher difficulty stays valid when
+     * the configured difficulty is lowered.
+     */
+    public boolean accepts(int recordedBits, int requiredBits) {
+        return isRetargeting() ? recordedBits == requiredBits : recordedBits >= requiredBits;
+    }
+
+    /**
+     * New difficulty after an interval mined at {@code bits} took {@code elapsedMillis} from
+     * its first block's timestamp to its last
+     */
+    int retarget(int bits, long elapsedMillis) {
+        double expectedMillis = (double) targetBlockMillis * (retargetInterval - 1);
+        // Blocks faster than the clock resolution count as 1 ms, which caps the step anyway
+        double step = Math.rint(Math.log(expectedMillis / Math.max(1, elapsedMillis)) / Math.log(2));
+        int clamped = (int) Math.max(-MAX_STEP_BITS, Math.min(MAX_STEP_BITS, step));
+        return Math.max(MIN_BITS, Math.min(MAX_BITS, bits + clamped));
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof DifficultyPolicy)) {
+            return false;
+        }
+        DifficultyPolicy that = (DifficultyPolicy) other;
+        return initialBits == that.initialBits && targetBlockMillis == that.targetBlockMillis
+            && retargetInterval == that.retargetInterval;
+    }
+
+    @Override
+    public int hashCode() {
+        return (initialBits * 31 + Long.hashCode(targetBlockMillis)) * 31 + retargetInterval;
+    }
+
+    /**
+     * {@code "16 bits"} or {@code "16 bits, retarget every 32 blocks to 1000 ms"}; also the form
+     * checkpoints record the policy in
+     */
+    @Override
+    public String toString() {
+        if (!isRetargeting()) {
+            return initialBits + " bits";
+        }
+        return String.format("%d bits, retarget every %d blocks to %d ms", initialBits, retargetInterval, targetBlockMillis);
+    }
+}
@@ -0,0 +1,239 @@
+package src.main.java.blockchain.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from a 32-byte SHA-256 digest to a block height.
+ *
+ * Keys are stored unboxed as four {@code long}s per slot in one flat array and probed
+ * linearly, so a lookup touches a couple of cache lines and allocates nothing: hex hash
+ * strings are parsed straight into longs. Digests are uniformly distributed, so the first
+ * key word is used as the hash code directly.
+ *
+ * One thread writes and any number of threads read without locking. A slot's key words are
+ * written before its height is released, and a reader acquires the height before comparing
+ * keys, so a reader never matches a half-written key. A resize fills a new table and then
+ * publishes it through a volatile field, so a reader probes either the old or the new table.
+ */
+final class DigestIndex {
+    private static final int WORDS = 4;
+    private static final int EMPTY = -1;
+    private static final double MAX_LOAD = 0.6;
+    private static final int IO_CHUNK_BYTES = 64 * 1024;
+    private static final VarHandle HEIGHTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    /**
+     * Keys and heights of one capacity, replaced as a whole on resize
+     */
+    private static final class Table {
+        final long[] keys;
+        final int[] heights;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new long[capacity * WORDS];
+            heights = new int[capacity];
+            Arrays.fill(heights, EMPTY);
+            mask = capacity - 1;
+        }
+
+        int capacity() {
+            return heights.length;
+        }
+    }
+
+    private volatile Table table;
+    private volatile int size;
+    private int resizeAt;
+
+    DigestIndex() {
+        this(1024);
+    }
+
+    DigestIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        publish(new Table(capacity));
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Maps {@code hexHash} to {@code height}. Values that are not 64-character hex digests are
+     * ignored, as they can never be looked up. Only one thread may call this at a time.
+     */
+    void put(String hexHash, int height) {
+        if (!isDigest(hexHash)) {
+            return;
+        }
+        if (size >= resizeAt) {
+            rehash(table.capacity() << 1);
+        }
+        if (insert(table, word(hexHash, 0), word(hexHash, 1), word(hexHash, 2), word(hexHash, 3), height)) {
+            size++;
+        }
+    }
+
+    /**
+     * Returns the height stored for {@code hexHash}, or {@code -1} if it is not indexed.
+     * Safe to call concurrently with {@link #put}.
+     */
+    int get(String hexHash) {
+        if (!isDigest(hexHash)) {
+            return EMPTY;
+        }
+        long w0 = word(hexHash, 0);
+        long w1 = word(hexHash, 1);
+        long w2 = word(hexHash, 2);
+        long w3 = word(hexHash, 3);
+
+        Table current = table;
+        long[] keys = current.keys;
+        int slot = slotFor(w0, current.mask);
+        while (true) {
+            int height = (int) HEIGHTS.getAcquire(current.heights, slot);
+            if (height == EMPTY) {
+                return EMPTY;
+            }
+            int base = slot * WORDS;
+            if (keys[base] == w0 && keys[base + 1] == w1 && keys[base + 2] == w2 && keys[base + 3] == w3) {
+                return height;
+            }
+            slot = (slot + 1) & current.mask;
+        }
+    }
+
+    /**
+     * Writes the table as it is laid out in memory, so {@link #readFrom} restores it with bulk
+     * copies instead of re-inserting every key. Must not run concurrently with {@link #put}.
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        Table current = table;
+        long[] keys = current.keys;
+        int[] heights = current.heights;
+        out.writeInt(current.capacity());
+        out.writeInt(size);
+        ByteBuffer chunk = ByteBuffer.allocate(IO_CHUNK_BYTES);
+        for (int from = 0; from < keys.length; from += IO_CHUNK_BYTES / Long.BYTES) {
+            int count = Math.min(IO_CHUNK_BYTES / Long.BYTES, keys.length - from);
+            chunk.clear();
+            chunk.asLongBuffer().put(keys, from, count);
+            out.write(chunk.array(), 0, count * Long.BYTES);
+        }
+        for (int from = 0; from < heights.length; from += IO_CHUNK_BYTES / Integer.BYTES) {
+            int count = Math.min(IO_CHUNK_BYTES / Integer.BYTES, heights.length - from);
+            chunk.clear();
+            chunk.asIntBuffer().put(heights, from, count);
+            out.write(chunk.array(), 0, count * Integer.BYTES);
+        }
+    }
+
+    /**
+     * Reads a table written by {@link #writeTo}
+     *
+     * @throws IOException if the stream ends early or does not hold a valid table
+     */
+    static DigestIndex readFrom(DataInputStream in) throws IOException {
+        int capacity = in.readInt();
+        int size = in.readInt();
+        if (capacity < 16 || Integer.bitCount(capacity) != 1 || capacity > (1 << 28)
+                || size < 0 || size > capacity * MAX_LOAD) {
+            throw new IOException("Invalid digest index header: capacity " + capacity + ", size " + size);
+        }
+        Table restored = new Table(capacity);
+
+        byte[] chunk = new byte[IO_CHUNK_BYTES];
+        long[] keys = restored.keys;
+        for (int from = 0; from < keys.length; from += IO_CHUNK_BYTES / Long.BYTES) {
+            int count = Math.min(IO_CHUNK_BYTES / Long.BYTES, keys.length - from);
+            in.readFully(chunk, 0, count * Long.BYTES);
+            ByteBuffer.wrap(chunk, 0, count * Long.BYTES).asLongBuffer().get(keys, from, count);
+        }
+        int[] heights = restored.heights;
+        for (int from = 0; from < heights.length; from += IO_CHUNK_BYTES / Integer.BYTES) {
+            int count = Math.min(IO_CHUNK_BYTES / Integer.BYTES, heights.length - from);
+            in.readFully(chunk, 0, count * Integer.BYTES);
+            ByteBuffer.wrap(chunk, 0, count * Integer.BYTES).asIntBuffer().get(heights, from, count);
+        }
+
+        DigestIndex index = new DigestIndex(0);
+        index.publish(restored);
+        index.size = size;
+        return index;
+    }
+
+    /**
+     * @return {@code true} if the key was new, {@code false} if its height was replaced
+     */
+    private static boolean insert(Table target, long w0, long w1, long w2, long w3, int height) {
+        long[] keys = target.keys;
+        int[] heights = target.heights;
+        int slot = slotFor(w0, target.mask);
+        while (true) {
+            int base = slot * WORDS;
+            if (heights[slot] == EMPTY) {
+                keys[base] = w0;
+                keys[base + 1] = w1;
+                keys[base + 2] = w2;
+                keys[base + 3] = w3;
+                HEIGHTS.setRelease(heights, slot, height);
+                return true;
+            }
+            if (keys[base] == w0 && keys[base + 1] == w1 && keys[base + 2] == w2 && keys[base + 3] == w3) {
+                HEIGHTS.setRelease(heights, slot, height);
+                return false;
+            }
+            slot = (slot + 1) & target.mask;
+        }
+    }
+
+    private static int slotFor(long w0, int mask) {
+        return (int) (w0 ^ (w0 >>> 32)) & mask;
+    }
+
+    private void rehash(int newCapacity) {
+        Table old = table;
+        Table resized = new Table(newCapacity);
+        for (int slot = 0; slot < old.capacity(); slot++) {
+            if (old.heights[slot] != EMPTY) {
+                int base = slot * WORDS;
+                insert(resized, old.keys[base], old.keys[base + 1], old.keys[base + 2], old.keys[base + 3], old.heights[slot]);
+            }
+        }
+        publish(resized);
+    }
+
+    private void publish(Table newTable) {
+        table = newTable;
+        resizeAt = (int) (newTable.capacity() * MAX_LOAD);
+    }
+
+    /** Parses the 16 hex characters of key word {@code index} without allocating. */
+    private static long word(String hex, int index) {
+        long value = 0;
+        int start = index * 16;
+        for (int i = start; i < start + 16; i++) {
+            value = (value << 4) | Character.digit(hex.charAt(i), 16);
+        }
+        return value;
+    }
+
+    private static boolean isDigest(String value) {
+        if (value == null || value.length() != 64) {
+            return false;
+        }
+        for (int i = 0; i < 64; i++) {
+            if (Character.digit(value.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,51 @@
+package src.main.java.blockchain.core;
+
+import java.util.Arrays;
+
+/**
+ * Keeps every block on the heap. The default storage.
+ *
+ * Blocks live in fixed-size segments that are never moved or copied once allocated, so a
+ * reader never sees a block array being resized under it. One thread appends and any number
+ * of threads read without locking: the block is stored before the volatile size is raised,
+ * so every height below a size a reader has seen is fully visible to it.
+ */
+final class FullChainStorage implements ChainStorage {
+    private static final int SEGMENT_BITS = 14;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    // Directory of segments, copied when it runs out of slots; like the blocks themselves,
+    // new entries become visible to readers through the write to size
+    private volatile Block[][] segments = new Block[16][];
+    private volatile int size;
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Block get(int height) {
+        if (height < 0 || height >= size) {
+            throw new IndexOutOfBoundsException("Height " + height + " out of range for size " + size);
+        }
+        return segments[height >>> SEGMENT_BITS][height & SEGMENT_MASK];
+    }
+
+    @Override
+    public void append(Block block) {
+        int height = size;
+        int segment = height >>> SEGMENT_BITS;
+        Block[][] current = segments;
+        if (segment == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+            segments = current;
+        }
+        if (current[segment] == null) {
+            current[segment] = new Block[SEGMENT_SIZE];
+        }
+        current[segment][height & SEGMENT_MASK] = block;
+        size = height + 1;
+    }
+}
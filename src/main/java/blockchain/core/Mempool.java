@@ -0,0 +1,173 @@
+package src.main.java.blockchain.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded FIFO of entries waiting to be mined, each with the future its submitter holds.
+ *
+ * The pool is bounded by entry count and by the UTF-8 size of the entries. Offers beyond
+ * either bound are refused rather than blocking, so {@code Blockchain.submit} never stalls
+ * its caller.
+ */
+public class Mempool {
+
+    /**
+     * Capacity of the mempool and how much of it goes into one block
+     */
+    public static final class Policy {
+        public static final Policy DEFAULT = new Policy(100_000, 64L << 20, 1000, 1 << 20);
+
+        private final int maxPendingEntries;
+        private final long maxPendingBytes;
+        private final int maxEntriesPerBlock;
+        private final int maxBytesPerBlock;
+
+        /**
+         * @param maxPendingEntries entries the mempool holds at most
+         * @param maxPendingBytes total UTF-8 bytes of entries the mempool holds at most
+         * @param maxEntriesPerBlock entries put into one block at most
+         * @param maxBytesPerBlock UTF-8 bytes of entries put into one block at most; also the
+         *                         largest entry that is accepted
+         */
+        public Policy(int maxPendingEntries, long maxPendingBytes, int maxEntriesPerBlock, int maxBytesPerBlock) {
+            if (maxPendingEntries < 1 || maxPendingBytes < 1 || maxEntriesPerBlock < 1 || maxBytesPerBlock < 1) {
+                throw new IllegalArgumentException("Invalid mempool policy");
+            }
+            this.maxPendingEntries = maxPendingEntries;
+            this.maxPendingBytes = maxPendingBytes;
+            this.maxEntriesPerBlock = maxEntriesPerBlock;
+            this.maxBytesPerBlock = maxBytesPerBlock;
+        }
+
+        public int getMaxPendingEntries() { return maxPendingEntries; }
+        public long getMaxPendingBytes() { return maxPendingBytes; }
+        public int getMaxEntriesPerBlock() { return maxEntriesPerBlock; }
+        public int getMaxBytesPerBlock() { return maxBytesPerBlock; }
+    }
+
+    /**
+     * A submitted entry and the future completed with the block it ends up in
+     */
+    static final class Entry {
+        final String data;
+        final int bytes;
+        final CompletableFuture<Block> future = new CompletableFuture<>();
+
+        Entry(String data) {
+            this.data = data;
+            this.bytes = data.getBytes(StandardCharsets.UTF_8).length;
+        }
+    }
+
+    private final Policy policy;
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private long pendingBytes;
+
+    public Mempool(Policy policy) {
+        this.policy = policy;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Adds the entry unless the mempool is full.
+     *
+     * @return {@code false} if either bound would be exceeded
+     */
+    boolean offer(Entry entry) {
+        lock.lock();
+        try {
+            if (entries.size() >= policy.getMaxPendingEntries()
+                    || pendingBytes + entry.bytes > policy.getMaxPendingBytes()) {
+                return false;
+            }
+            entries.addLast(entry);
+            pendingBytes += entry.bytes;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits up to {@code timeoutMillis} for an entry, then moves entries in arrival order
+     * into {@code batch} until the per-block entry or byte limit is reached.
+     *
+     * @return number of entries moved; {@code 0} if none arrived in time
+     */
+    int drainBlock(List<Entry> batch, long timeoutMillis) throws InterruptedException {
+        lock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (entries.isEmpty()) {
+                if (remaining <= 0) {
+                    return 0;
+                }
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+
+            int moved = 0;
+            long blockBytes = 0;
+            while (!entries.isEmpty() && moved < policy.getMaxEntriesPerBlock()) {
+                Entry next = entries.peekFirst();
+                if (moved > 0 && blockBytes + next.bytes > policy.getMaxBytesPerBlock()) {
+                    break;
+                }
+                entries.pollFirst();
+                pendingBytes -= next.bytes;
+                blockBytes += next.bytes;
+                batch.add(next);
+                moved++;
+            }
+            return moved;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes and returns every pending entry
+     */
+    List<Entry> clear() {
+        lock.lock();
+        try {
+            List<Entry> removed = List.copyOf(entries);
+            entries.clear();
+            pendingBytes = 0;
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Number of entries waiting to be mined. */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Total UTF-8 bytes of the entries waiting to be mined. */
+    public long getPendingBytes() {
+        lock.lock();
+        try {
+            return pendingBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package src.main.java.blockchain.core;
+
+import src.main.java.blockchain.utils.StringUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Proof that an entry is part of a block: the sibling digests on the path from the entry's
+ * leaf to the Merkle root. Verifying it takes one hash per sibling, without the rest of the
+ * block's entries.
+ */
+public final class MerkleProof {
+    private final int entryIndex;
+    private final List<byte[]> siblings;
+    private final List<Boolean> siblingOnLeft;
+
+    MerkleProof(int entryIndex, List<byte[]> siblings, List<Boolean> siblingOnLeft) {
+        this.entryIndex = entryIndex;
+        this.siblings = List.copyOf(siblings);
+        this.siblingOnLeft = List.copyOf(siblingOnLeft);
+    }
+
+    /** Position of the proven entry within its block. */
+    public int getEntryIndex() {
+        return entryIndex;
+    }
+
+    /** Hex sibling digests, from the leaf level upwards. */
+    public List<String> getSiblingHashes() {
+        List<String> hex = new ArrayList<>(siblings.size());
+        for (byte[] sibling : siblings) {
+            hex.add(StringUtil.toHex(sibling));
+        }
+        return hex;
+    }
+
+    /**
+     * Whether {@code entry} hashes up to {@code merkleRoot} along this proof
+     */
+    public boolean verify(String entry, String merkleRoot) {
+        if (entry == null || !StringUtil.isSha256Hex(merkleRoot)) {
+            return false;
+        }
+        byte[] hash = MerkleTree.leafHash(entry);
+        for (int i = 0; i < siblings.size(); i++) {
+            hash = siblingOnLeft.get(i)
+                ? MerkleTree.nodeHash(siblings.get(i), hash)
+                : MerkleTree.nodeHash(hash, siblings.get(i));
+        }
+        return StringUtil.toHex(hash).equals(merkleRoot);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MerkleProof{entryIndex=%d, siblings=%s}", entryIndex, getSiblingHashes());
+    }
+}
@@ -0,0 +1,120 @@
+package src.main.java.blockchain.core;
+
+import src.main.java.blockchain.hashing.HashEngines;
+import src.main.java.blockchain.utils.StringUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary SHA-256 Merkle tree over a block's entries, with every level kept so inclusion
+ * proofs are read off rather than recomputed.
+ *
+ * Leaves are {@code SHA-256(0x00 || UTF-8 entry)} and inner nodes
+ * {@code SHA-256(0x01 || left || right)}; the prefixes keep a leaf from being passed off as an
+ * inner node. A node without a sibling is carried up to the next level unchanged instead
+ * of being paired with itself, so no two different entry lists share a root.
+ */
+public final class MerkleTree {
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+    private static final int DIGEST_BYTES = 32;
+
+    private final List<String> entries;
+    private final byte[][][] levels;
+
+    private MerkleTree(List<String> entries, byte[][][] levels) {
+        this.entries = entries;
+        this.levels = levels;
+    }
+
+    /**
+     * Builds the tree over the given entries, in order.
+     *
+     * @throws IllegalArgumentException if there are no entries or an entry is null
+     */
+    public static MerkleTree of(List<String> entries) {
+        if (entries == null || entries.isEmpty()) {
+            throw new IllegalArgumentException("A Merkle tree needs at least one entry");
+        }
+        // List.copyOf would reject a null entry with a NullPointerException instead
+        for (String entry : entries) {
+            if (entry == null) {
+                throw new IllegalArgumentException("Merkle tree entries cannot be null");
+            }
+        }
+        List<String> copy = List.copyOf(entries);
+
+        List<byte[][]> levels = new ArrayList<>();
+        byte[][] level = new byte[copy.size()][];
+        for (int i = 0; i < level.length; i++) {
+            level[i] = leafHash(copy.get(i));
+        }
+        levels.add(level);
+
+        while (level.length > 1) {
+            byte[][] parent = new byte[(level.length + 1) / 2][];
+            for (int i = 0; i < parent.length; i++) {
+                int left = 2 * i;
+                parent[i] = (left + 1 < level.length) ? nodeHash(level[left], level[left + 1]) : level[left];
+            }
+            levels.add(parent);
+            level = parent;
+        }
+        return new MerkleTree(copy, levels.toArray(new byte[0][][]));
+    }
+
+    /** Hex root digest. */
+    public String getRoot() {
+        return StringUtil.toHex(levels[levels.length - 1][0]);
+    }
+
+    public List<String> getEntries() {
+        return entries;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the inclusion proof of the entry at {@code index}: one sibling digest per level
+     * at which the entry's path has a sibling, so at most {@code ceil(log2(size))} digests.
+     */
+    public MerkleProof getProof(int index) {
+        if (index < 0 || index >= entries.size()) {
+            throw new IndexOutOfBoundsException(
+                String.format("Invalid entry index: %d (valid range: 0-%d)", index, entries.size() - 1));
+        }
+        List<byte[]> siblings = new ArrayList<>();
+        List<Boolean> siblingOnLeft = new ArrayList<>();
+        int position = index;
+        for (int depth = 0; depth < levels.length - 1; depth++) {
+            byte[][] level = levels[depth];
+            int sibling = position ^ 1;
+            if (sibling < level.length) {
+                siblings.add(level[sibling]);
+                siblingOnLeft.add(sibling < position);
+            }
+            position >>>= 1;
+        }
+        return new MerkleProof(index, siblings, siblingOnLeft);
+    }
+
+    static byte[] leafHash(String entry) {
+        byte[] utf8 = entry.getBytes(StandardCharsets.UTF_8);
+        byte[] input = new byte[1 + utf8.length];
+        input[0] = LEAF_PREFIX;
+        System.arraycopy(utf8, 0, input, 1, utf8.length);
+        return HashEngines.jca().digest(input);
+    }
+
+    static byte[] nodeHash(byte[] left, byte[] right) {
+        byte[] input = new byte[1 + 2 * DIGEST_BYTES];
+        input[0] = NODE_PREFIX;
+        System.arraycopy(left, 0, input, 1, DIGEST_BYTES);
+        System.arraycopy(right, 0, input, 1 + DIGEST_BYTES, DIGEST_BYTES);
+        return HashEngines.jca().digest(input);
+    }
+}
@@ -0,0 +1,127 @@
+package src.main.java.blockchain.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntFunction;
+
+/**
+ * Bounded-memory storage: only the newest {@code tailWindow} blocks are always resident.
+ * Older blocks are loaded by height through {@code loader} when requested and kept in a
+ * size-bounded LRU cache, so repeated reads of hot historical blocks stay in memory.
+ *
+ * One thread appends and any number of threads read. The tail is a ring buffer, so an append
+ * overwrites the slot of the block leaving the window; readers take an optimistic
+ * {@link StampedLock} read of the size and slot and only fall back to the read lock if an
+ * append overlapped. The write lock is held just for storing one reference, so readers never
+ * wait on mining or persistence.
+ */
+final class WindowedChainStorage implements ChainStorage {
+    private final Block[] tail;
+    private final IntFunction<Block> loader;
+    private final LinkedHashMap<Integer, Block> cache;
+    private final StampedLock tailLock = new StampedLock();
+    private volatile int size;
+
+    /**
+     * @param tailWindow number of newest blocks kept resident
+     * @param cacheCapacity maximum number of older blocks cached after being loaded
+     * @param loader loads a block by height from durable storage
+     */
+    WindowedChainStorage(int tailWindow, int cacheCapacity, IntFunction<Block> loader) {
+        if (tailWindow < 1 || cacheCapacity < 0) {
+            throw new IllegalArgumentException("Tail window must be positive and cache capacity non-negative");
+        }
+        this.tail = new Block[tailWindow];
+        this.loader = loader;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Block> eldest) {
+                return size() > cacheCapacity;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Block get(int height) {
+        long stamp = tailLock.tryOptimisticRead();
+        int currentSize = size;
+        Block resident = residentAt(height, currentSize);
+        if (!tailLock.validate(stamp)) {
+            stamp = tailLock.readLock();
+            try {
+                currentSize = size;
+                resident = residentAt(height, currentSize);
+            } finally {
+                tailLock.unlockRead(stamp);
+            }
+        }
+        if (height < 0 || height >= currentSize) {
+            throw new IndexOutOfBoundsException("Height " + height + " out of range for size " + currentSize);
+        }
+        if (resident != null) {
+            return resident;
+        }
+
+        synchronized (cache) {
+            Block cached = cache.get(height);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Block loaded = loader.apply(height);
+        if (loaded == null) {
+            throw new IllegalStateException("Block " + height + " is not resident and could not be loaded");
+        }
+        synchronized (cache) {
+            cache.put(height, loaded);
+        }
+        return loaded;
+    }
+
+    @Override
+    public void append(Block block) {
+        long stamp = tailLock.writeLock();
+        try {
+            tail[size % tail.length] = block;
+            size++;
+        } finally {
+            tailLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * The tail block at {@code height} for the given size, or {@code null} if the height is
+     * outside the window or its slot was skipped
+     */
+    private Block residentAt(int height, int currentSize) {
+        if (height < 0 || height >= currentSize || height < currentSize - tail.length) {
+            return null;
+        }
+        return tail[height % tail.length];
+    }
+
+    /**
+     * Skips all but the blocks that will fill the resident tail; the rest are loaded on demand
+     */
+    @Override
+    public int skip(int height) {
+        if (size != 0) {
+            throw new IllegalStateException("Only an empty storage can skip blocks");
+        }
+        size = Math.max(0, height - tail.length);
+        return size;
+    }
+
+    /** Number of historical blocks currently cached. */
+    int cachedCount() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package src.main.java.blockchain.demo;
+
+import src.main.java.blockchain.core.Block;
+import src.main.java.blockchain.core.Blockchain;
+import src.main.java.blockchain.core.BlockchainConfig;
+import src.main.java.blockchain.hashing.HashEngine;
+import src.main.java.blockchain.hashing.HashEngines;
+import src.main.java.blockchain.persistence.MappedBlockLog;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Measures the heap a loaded chain retains per block with {@link Block} objects and with
+ * columnar storage, and what reading every block and validating the chain cost with each.
+ *
+ * Usage: {@code ChainMemoryBenchmark [blocks]}. The chain is written to a {@link MappedBlockLog}
+ * in a temporary directory at difficulty 1, with every tenth block holding entries under a
+ * Merkle root. Heap is measured after a full GC before and after the chain is opened, so the
+ * hash index, which every layout has, is included; the resident window of one block shows its
+ * share. Run with a heap large enough for the Block objects, e.g. {@code -Xmx4g}.
+ */
+public class ChainMemoryBenchmark {
+    private static final int DIFFICULTY = 1;
+    private static final int SAVE_BATCH = 10_000;
+
+    public static void main(String[] args) throws IOException {
+        int blocks = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        System.out.println("=== CHAIN MEMORY BENCHMARK ===");
+        System.out.printf("Blocks: %,d%n%n", blocks);
+
+        Path directory = Files.createTempDirectory("chain-memory");
+        try {
+            long start = System.nanoTime();
+            writeChain(directory, blocks);
+            System.out.printf("Wrote %,d blocks in %.1f s%n%n", blocks, (System.nanoTime() - start) / 1e9);
+
+            System.out.printf("%-30s %12s %14s %14s %14s%n", "Layout", "Heap (MB)", "Bytes/block", "Read all (ms)", "Validate (ms)");
+            measure("Resident window of 1 block", blocks, () -> config(directory).withResidentWindow(1, 0));
+            measure("Block objects", blocks, () -> config(directory));
+            measure("Columnar", blocks, () -> config(directory).withColumnarStorage(true));
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    private static BlockchainConfig config(Path directory) {
+        return new BlockchainConfig()
+            .withDifficulty(DIFFICULTY)
+            .withBlockStore(new MappedBlockLog(directory))
+            .withConsoleOutput(false);
+    }
+
+    private static void measure(String label, int blocks, Supplier<BlockchainConfig> configs) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        BlockchainConfig config = configs.get();
+        long before = usedHeapAfterGc(memory);
+        Blockchain chain = new Blockchain(config);
+        long retained = usedHeapAfterGc(memory) - before;
+
+        long start = System.nanoTime();
+        long checksum = 0;
+        for (int height = 0; height < chain.size(); height++) {
+            checksum += chain.getBlock(height).getNonce();
+        }
+        long readNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        boolean valid = chain.isChainValid(true);
+        long validateNanos = System.nanoTime() - start;
+        chain.close();
+
+        System.out.printf("%-30s %,12.1f %,14.0f %,14.1f %,14.1f%s%n", label, retained / 1e6, (double) retained / blocks,
+            readNanos / 1e6, validateNanos / 1e6, valid && checksum >= 0 ? "" : "  (INVALID)");
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            memory.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static void writeChain(Path directory, int count) {
+        HashEngine engine = HashEngines.defaultEngine();
+        try (MappedBlockLog log = new MappedBlockLog(directory)) {
+            String previousHash = "0";
+            List<Block> batch = new ArrayList<>(SAVE_BATCH);
+            for (int height = 0; height < count; height++) {
+                Block block = (height % 10 == 9)
+                    ? Block.withEntries(List.of("Entry " + height + "a", "Entry " + height + "b"), previousHash)
+                    : new Block(height == 0 ? "Genesis Block" : "Block " + height, previousHash);
+                block.mine(DIFFICULTY, engine);
+                batch.add(block);
+                previousHash = block.getHash();
+                if (batch.size() == SAVE_BATCH) {
+                    log.saveBlocks(batch);
+                    batch.clear();
+                }
+            }
+            log.saveBlocks(batch);
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package src.main.java.blockchain.demo;
+
+import src.main.java.blockchain.core.Block;
+import src.main.java.blockchain.core.ChainStats;
+import src.main.java.blockchain.metrics.PersistenceMetrics;
+import src.main.java.blockchain.persistence.BlockchainDAO;
+import src.main.java.blockchain.persistence.BlockchainDAO.Schema;
+import src.main.java.blockchain.utils.StringUtil;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Compares reading chain statistics by aggregating the block table, as
+ * {@code getBlockchainStats()} used to, with reading the maintained {@link ChainStats}, as the
+ * chain grows.
+ *
+ * Usage: {@code ChainStatsBenchmark [blocks] [schema]}. Blocks are appended in batches to a
+ * file-based H2 database (v2 by default). At each size the aggregate query is timed once after
+ * the appends, the way a dashboard polling a growing chain runs it, and
+ * {@link BlockchainDAO#getChainStats()} is averaged over many reads. Then the statistics are
+ * rebuilt from the table and compared with the maintained ones. Blocks carry random nonces and
+ * block times and are not mined, since the DAO does not check proof-of-work.
+ */
+public class ChainStatsBenchmark {
+    private static final int SAVE_BATCH = 1000;
+    private static final int READS = 10_000;
+
+    public static void main(String[] args) throws IOException, SQLException {
+        int blocks = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        Schema schema = (args.length < 2 || args[1].equalsIgnoreCase("v2")) ? Schema.V2 : Schema.V1;
+
+        System.out.println("=== CHAIN STATS BENCHMARK ===");
+        System.out.printf("Blocks: %,d, schema %s%n%n", blocks, schema);
+
+        Path directory = Files.createTempDirectory("chain-stats");
+        String dbUrl = "jdbc:h2:file:" + directory.resolve("chain").toAbsolutePath();
+        String aggregateSql = "SELECT COUNT(*), MIN(timestamp), MAX(timestamp), AVG(nonce) FROM " + schema.getTable();
+        Random random = new Random(11);
+        try (BlockchainDAO dao = new BlockchainDAO(dbUrl, new PersistenceMetrics(), schema);
+             Connection conn = DriverManager.getConnection(dbUrl)) {
+            System.out.printf("%10s %16s %16s %12s%n", "Blocks", "Aggregate (ms)", "Stats read (us)", "Rebuild (ms)");
+
+            String previousHash = "0";
+            long timestamp = System.currentTimeMillis();
+            int saved = 0;
+            long saveNanos = 0;
+            for (int checkpoint = Math.min(10_000, blocks); ; checkpoint = Math.min(checkpoint * 2, blocks)) {
+                while (saved < checkpoint) {
+                    List<Block> batch = new ArrayList<>(SAVE_BATCH);
+                    for (int i = 0; i < SAVE_BATCH && saved + i < checkpoint; i++) {
+                        timestamp += 1 + random.nextInt(2000);
+                        Block block = Block.fromDatabase(randomDigest(random), previousHash, "Block " + (saved + i),
+                            timestamp, random.nextInt(1 << 20), null, 16);
+                        batch.add(block);
+                        previousHash = block.getHash();
+                    }
+                    long start = System.nanoTime();
+                    dao.saveBlocks(batch);
+                    saveNanos += System.nanoTime() - start;
+                    saved += batch.size();
+                }
+
+                // Run once: H2 reuses the result of a repeated query until the table changes
+                long start = System.nanoTime();
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery(aggregateSql)) {
+                    rs.next();
+                }
+                long aggregateNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                ChainStats stats = null;
+                for (int i = 0; i < READS; i++) {
+                    stats = dao.getChainStats();
+                }
+                long readNanos = (System.nanoTime() - start) / READS;
+
+                start = System.nanoTime();
+                ChainStats rebuilt = dao.rebuildChainStats();
+                long rebuildNanos = System.nanoTime() - start;
+                if (!rebuilt.toString().equals(stats.toString())) {
+                    throw new IllegalStateException("Maintained statistics " + stats + " differ from rebuilt " + rebuilt);
+                }
+
+                System.out.printf("%,10d %16.1f %16.1f %12.1f%n",
+                    saved, aggregateNanos / 1e6, readNanos / 1e3, rebuildNanos / 1e6);
+                if (saved == blocks) {
+                    System.out.printf("%nSaved with the summary row at %,.0f blocks/s%n", saved / (saveNanos / 1e9));
+                    System.out.println("Statistics: " + stats);
+                    break;
+                }
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    private static String randomDigest(Random random) {
+        byte[] digest = new byte[32];
+        random.nextBytes(digest);
+        return StringUtil.toHex(digest);
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
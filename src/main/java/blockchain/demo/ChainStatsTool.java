@@ -0,0 +1,68 @@
+package src.main.java.blockchain.demo;
+
+import src.main.java.blockchain.core.ChainStats;
+import src.main.java.blockchain.metrics.PersistenceMetrics;
+import src.main.java.blockchain.persistence.BlockStore;
+import src.main.java.blockchain.persistence.BlockchainDAO;
+import src.main.java.blockchain.persistence.MappedBlockLog;
+
+import java.nio.file.Path;
+
+/**
+ * Shows or rebuilds the maintained statistics of a block store.
+ *
+ * Usage: {@code ChainStatsTool <jdbcUrl | blockLogDirectory> [v1|v2] [show|rebuild]}. A JDBC URL
+ * opens a database with the given table layout (v1 by default); anything else is taken as the
+ * directory of a {@link MappedBlockLog}. {@code show} prints the statistics as the store keeps
+ * them, after the catch-up every store does on open; {@code rebuild} recomputes them from every
+ * block, replaces the stored summary and prints the statistics before and after. Run it with no
+ * node using the store.
+ */
+public class ChainStatsTool {
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: ChainStatsTool <jdbcUrl | blockLogDirectory> [v1|v2] [show|rebuild]");
+            System.exit(2);
+        }
+        String location = args[0];
+        BlockchainDAO.Schema schema = BlockchainDAO.Schema.V1;
+        boolean rebuild = false;
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i].toLowerCase();
+            if (arg.equals("v1") || arg.equals("v2")) {
+                schema = BlockchainDAO.Schema.valueOf(arg.toUpperCase());
+            } else if (arg.equals("show") || arg.equals("rebuild")) {
+                rebuild = arg.equals("rebuild");
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        try (BlockStore store = location.startsWith("jdbc:")
+                ? new BlockchainDAO(location, new PersistenceMetrics(), schema)
+                : new MappedBlockLog(Path.of(location))) {
+            ChainStats stored = store.getChainStats();
+            print("Stored", stored);
+            if (rebuild) {
+                long start = System.nanoTime();
+                ChainStats rebuilt = store.rebuildChainStats();
+                System.out.printf("%nRebuilt from %,d blocks in %.1f s%n", rebuilt.getBlockCount(),
+                    (System.nanoTime() - start) / 1e9);
+                print("Rebuilt", rebuilt);
+            }
+        }
+    }
+
+    private static void print(String label, ChainStats stats) {
+        System.out.printf("%s statistics:%n", label);
+        System.out.printf("  Blocks:       %,d (%,d with entries)%n", stats.getBlockCount(), stats.getMerkleBlockCount());
+        System.out.printf("  Time span:    %d .. %d (%,.1f s)%n",
+            stats.getFirstTimestamp(), stats.getLatestTimestamp(), stats.getTimeSpanMillis() / 1000.0);
+        System.out.printf("  Nonce:        mean %,.0f, p50 %,d, p99 %,d, max %,d%n",
+            stats.getNonceMean(), stats.getNonceP50(), stats.getNonceP99(), stats.getNonceMax());
+        System.out.printf("  Block time:   mean %.1f ms, p50 %d ms, p99 %d ms, max %d ms%n",
+            stats.getBlockTimeMeanMillis(), stats.getBlockTimeP50Millis(), stats.getBlockTimeP99Millis(),
+            stats.getBlockTimeMaxMillis());
+    }
+}
@@ -0,0 +1,128 @@
+package src.main.java.blockchain.demo;
+
+import src.main.java.blockchain.core.Blockchain;
+import src.main.java.blockchain.core.BlockchainConfig;
+import src.main.java.blockchain.metrics.PersistenceMetrics;
+import src.main.java.blockchain.persistence.BlockchainDAO;
+import src.main.java.blockchain.sync.ChainSyncClient;
+import src.main.java.blockchain.sync.ChainSyncServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Catches up a fresh node from a leader over a loopback connection.
+ *
+ * Usage: {@code ChainSyncBenchmark [blocks] [difficultyBits] [schema]}. The leader mines the
+ * given number of blocks in memory; every fourth block holds four entries under a Merkle root.
+ * The follower then syncs into an empty file-backed H2 database with the given table layout
+ * (v2 by default, or v1), printing its progress and the blocks per second of the catch-up. After that the
+ * leader mines another 1,000 blocks and the follower syncs again, resuming from its database.
+ * Finally the follower's database is opened as a chain and fully validated against the leader's
+ * tip.
+ */
+public class ChainSyncBenchmark {
+    private static final int EXTRA_BLOCKS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        int blocks = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int bits = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        BlockchainDAO.Schema schema = (args.length < 3 || args[2].equalsIgnoreCase("v2"))
+            ? BlockchainDAO.Schema.V2 : BlockchainDAO.Schema.V1;
+
+        System.out.println("=== CHAIN SYNC BENCHMARK ===");
+        System.out.printf("Leader: %,d blocks at %d bits in memory; follower: H2 file, schema %s, %d cores%n%n",
+            blocks, bits, schema, Runtime.getRuntime().availableProcessors());
+
+        long buildStart = System.nanoTime();
+        Blockchain leader = new Blockchain(new BlockchainConfig().withDifficultyBits(bits).withConsoleOutput(false));
+        mine(leader, blocks - 1);
+        System.out.printf("Leader mined in %.1f s%n", (System.nanoTime() - buildStart) / 1e9);
+
+        Path directory = Files.createTempDirectory("chain-sync");
+        String followerUrl = "jdbc:h2:file:" + directory.resolve("follower").toAbsolutePath();
+        try (ChainSyncServer server = new ChainSyncServer(leader, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))) {
+            try (BlockchainDAO store = new BlockchainDAO(followerUrl, new PersistenceMetrics(), schema)) {
+                ChainSyncClient client = new ChainSyncClient(store, leader.getDifficultyPolicy());
+                ChainSyncClient.Result initial = syncWithProgress(client, server.getAddress());
+                System.out.println("Initial sync: " + initial);
+
+                mine(leader, EXTRA_BLOCKS);
+                ChainSyncClient.Result resumed = client.sync(server.getAddress());
+                System.out.println("Resumed sync: " + resumed);
+            }
+
+            long loadStart = System.nanoTime();
+            Blockchain follower = new Blockchain(new BlockchainConfig()
+                .withDbUrl(followerUrl)
+                .withDbSchema(schema)
+                .withDifficultyBits(bits)
+                .withResidentWindow(10_000, 10_000)
+                .withConsoleOutput(false));
+            boolean valid = follower.isChainValid(true);
+            System.out.printf("%nFollower reopened and validated in %.1f s: %,d blocks, tip %s leader's, chain valid: %s%n",
+                (System.nanoTime() - loadStart) / 1e9, follower.size(),
+                follower.getLatestBlock().getHash().equals(leader.getLatestBlock().getHash()) ? "matches" : "DIFFERS FROM",
+                valid);
+            System.out.printf("Follower database: %.1f MB%n", directorySize(directory) / 1e6);
+            follower.close();
+        } finally {
+            leader.close();
+            deleteRecursively(directory);
+        }
+    }
+
+    private static void mine(Blockchain chain, int blocks) {
+        int first = chain.size();
+        for (int i = first; i < first + blocks; i++) {
+            if (i % 4 == 0) {
+                chain.addBlock(List.of("Entry " + i + ".0", "Entry " + i + ".1", "Entry " + i + ".2", "Entry " + i + ".3"));
+            } else {
+                chain.addBlock("Block " + i);
+            }
+        }
+    }
+
+    private static ChainSyncClient.Result syncWithProgress(ChainSyncClient client, InetSocketAddress leader)
+            throws InterruptedException {
+        Thread progress = new Thread(() -> {
+            long start = System.nanoTime();
+            try {
+                while (true) {
+                    Thread.sleep(5000);
+                    System.out.printf("  %5.0f s: %,d blocks%n", (System.nanoTime() - start) / 1e9, client.getSyncedHeight());
+                }
+            } catch (InterruptedException e) {
+                // Sync finished
+            }
+        }, "sync-progress");
+        progress.setDaemon(true);
+        progress.start();
+        try {
+            return client.sync(leader);
+        } finally {
+            progress.interrupt();
+            progress.join();
+        }
+    }
+
+    private static long directorySize(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package src.main.java.blockchain.demo;
+
+import src.main.java.blockchain.core.Block;
+import src.main.java.blockchain.core.Blockchain;
+import src.main.java.blockchain.core.BlockchainConfig;
+import src.main.java.blockchain.persistence.MappedBlockLog;
+import src.main.java.blockchain.persistence.WriteBehindBlockWriter.DurabilityPolicy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Stress test for concurrent readers: one thread keeps adding blocks while reader threads
+ * call {@code size}, {@code getLatestBlock}, {@code getBlock}, {@code getBlockByHash} and
+ * {@code isChainValid} and check what they see for consistency.
+ *
+ * Readers check that:
+ * - the size never goes backwards
+ * - every block links to the block below it
+ * - a block is found by its own hash
+ * - the chain validates
+ *
+ * Runs against the default in-memory storage, then against a resident window over a block
+ * log with write-behind, where most reads go to the log.
+ *
+ * Usage: {@code ConcurrentReadStress [blocks] [readers]}. Exits with status 1 on any violation.
+ */
+public class ConcurrentReadStress {
+    private static final int VALIDATE_EVERY = 1_000;
+
+    public static void main(String[] args) throws Exception {
+        int blocks = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int readers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        System.out.println("=== CONCURRENT READ STRESS ===");
+        System.out.printf("Blocks: %,d, readers: %d%n%n", blocks, readers);
+        System.out.printf("%-28s %12s %16s %12s%n", "Storage", "Blocks/s", "Reads/s", "Violations");
+
+        long violations = run("In memory", new BlockchainConfig(), blocks, readers);
+
+        Path directory = Files.createTempDirectory("read-stress");
+        try {
+            violations += run("Window over block log", new BlockchainConfig()
+                .withBlockStore(new MappedBlockLog(directory))
+                .withWriteBehind(DurabilityPolicy.DEFAULT)
+                .withResidentWindow(64, 256), blocks, readers);
+        } finally {
+            deleteRecursively(directory);
+        }
+
+        if (violations > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static long run(String label, BlockchainConfig config, int blocks, int readers) throws InterruptedException {
+        Blockchain chain = new Blockchain(config.withDifficulty(1).withConsoleOutput(false));
+        AtomicLong reads = new AtomicLong();
+        AtomicLong violations = new AtomicLong();
+        AtomicReference<String> firstViolation = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            for (int i = 1; i < blocks; i++) {
+                chain.addBlock("Block " + i);
+            }
+        }, "stress-writer");
+
+        List<Thread> readerThreads = new ArrayList<>();
+        for (int r = 0; r < readers; r++) {
+            readerThreads.add(new Thread(() -> {
+                long performed = 0;
+                int lastSize = 0;
+                try {
+                    while (writer.isAlive()) {
+                        String problem = check(chain, lastSize, performed);
+                        if (problem != null) {
+                            violations.incrementAndGet();
+                            firstViolation.compareAndSet(null, problem);
+                        }
+                        lastSize = chain.size();
+                        performed++;
+                    }
+                } catch (RuntimeException e) {
+                    violations.incrementAndGet();
+                    firstViolation.compareAndSet(null, e.toString());
+                }
+                reads.addAndGet(performed);
+            }, "stress-reader-" + r));
+        }
+
+        long start = System.nanoTime();
+        writer.start();
+        for (Thread reader : readerThreads) {
+            reader.start();
+        }
+        writer.join();
+        for (Thread reader : readerThreads) {
+            reader.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        if (!chain.isChainValid(true) || chain.size() != blocks) {
+            violations.incrementAndGet();
+            firstViolation.compareAndSet(null, "Final chain is invalid or has " + chain.size() + " blocks");
+        }
+        chain.close();
+
+        System.out.printf("%-28s %,12.0f %,16.0f %12d%n", label, blocks / seconds, reads.get() / seconds, violations.get());
+        if (firstViolation.get() != null) {
+            System.out.println("  first violation: " + firstViolation.get());
+        }
+        return violations.get();
+    }
+
+    /**
+     * One round of reads; returns a description of the first inconsistency, or {@code null}
+     */
+    private static String check(Blockchain chain, int lastSize, long round) {
+        int size = chain.size();
+        if (size < lastSize) {
+            return "Size went back from " + lastSize + " to " + size;
+        }
+
+        Block latest = chain.getLatestBlock();
+        Block byHash = chain.getBlockByHash(latest.getHash());
+        if (byHash == null || !byHash.getHash().equals(latest.getHash())) {
+            return "Latest block " + latest.getHash() + " not found by hash";
+        }
+
+        int height = ThreadLocalRandom.current().nextInt(1, Math.max(2, size));
+        if (height < size) {
+            Block block = chain.getBlock(height);
+            Block previous = chain.getBlock(height - 1);
+            if (!block.getPreviousHash().equals(previous.getHash())) {
+                return "Block " + height + " does not link to block " + (height - 1);
+            }
+            Block found = chain.getBlockByHash(block.getHash());
+            if (found == null || !found.getHash().equals(block.getHash())) {
+                return "Block " + height + " not found by hash";
+            }
+        }
+
+        if (round % VALIDATE_EVERY == 0 && !chain.isChainValid()) {
+            return "Chain failed validation at size " + chain.size();
+        }
+        return null;
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,525 @@
+package src.main.java.blockchain.demo;
+
+import src.main.java.blockchain.core.Blockchain;
+import src.main.java.blockchain.core.BlockchainConfig;
+import src.main.java.blockchain.metrics.Histogram;
+import src.main.java.blockchain.persistence.BlockchainDAO;
+import src.main.java.blockchain.persistence.WriteBehindBlockWriter.DurabilityPolicy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Load generator and soak test for {@link Blockchain}.
+ *
+ * Client threads add entries either in a closed loop, each thread waiting for its previous
+ * entry before sending the next, or at a fixed total rate. At a fixed rate, latency is measured
+ * from when an entry was due rather than from when it was sent. A chain that falls behind
+ * therefore shows up in the percentiles instead of slowing the load down.
+ *
+ * Prints one line per report interval and a summary at the end:
+ * - entries per second;
+ * - p50, p99 and p999 end-to-end latency;
+ * - GC pauses, from the JVM's GC notifications;
+ * - heap use and database size.
+ * All of it, including the per-interval series, is written as JSON for comparing builds.
+ *
+ * Usage: {@code LoadGenerator [--option=value ...]}, all optional:
+ * <pre>
+ * --mode=closed|rate       closed loop, or a fixed rate (default closed)
+ * --rate=N                 entries per second over all threads in rate mode (default 100)
+ * --threads=N              client threads (default 4)
+ * --duration=S             measured seconds, after the warmup (default 60)
+ * --warmup=S               seconds of load before measuring (default 5)
+ * --report-every=S         seconds between interval reports (default 10)
+ * --payload-bytes=N        bytes per entry (default 256)
+ * --difficulty-bits=N      leading zero bits per block (default 8)
+ * --mining-threads=N       mining threads of the chain (default 1)
+ * --api=add|submit         addBlock, one block per entry; or submit, entries batched into blocks (default add)
+ * --storage=memory|h2-mem|h2-file  no database, in-memory H2 or file-backed H2 (default h2-file)
+ * --schema=v1|v2           table layout for H2 (default v1)
+ * --write-behind=true      persist through the write-behind queue (default false)
+ * --db-dir=PATH            directory for file-backed H2, kept afterwards (default: a temporary directory, deleted)
+ * --out=FILE               JSON result file (default loadgen-result.json)
+ * </pre>
+ */
+public class LoadGenerator {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        Path dbDirectory = null;
+        boolean deleteDbDirectory = false;
+        if (options.storage.equals("h2-file")) {
+            dbDirectory = (options.dbDir != null) ? Files.createDirectories(Path.of(options.dbDir)) : Files.createTempDirectory("loadgen");
+            deleteDbDirectory = options.dbDir == null;
+        }
+
+        try {
+            Result result = new LoadGenerator(options, dbDirectory).run();
+            try (Writer out = Files.newBufferedWriter(Path.of(options.out), StandardCharsets.UTF_8)) {
+                GSON.toJson(result, out);
+            }
+            System.out.println("Results written to " + options.out);
+        } finally {
+            if (deleteDbDirectory) {
+                deleteRecursively(dbDirectory);
+            }
+        }
+    }
+
+    /**
+     * Command line settings; also written to the result file as they were applied
+     */
+    static final class Options {
+        String mode = "closed";
+        int rate = 100;
+        int threads = 4;
+        int durationSeconds = 60;
+        int warmupSeconds = 5;
+        int reportEverySeconds = 10;
+        int payloadBytes = 256;
+        int difficultyBits = 8;
+        int miningThreads = 1;
+        String api = "add";
+        String storage = "h2-file";
+        String schema = "v1";
+        boolean writeBehind;
+        String dbDir;
+        String out = "loadgen-result.json";
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                int equals = arg.indexOf('=');
+                if (!arg.startsWith("--") || equals < 0) {
+                    throw new IllegalArgumentException("Expected --option=value: " + arg);
+                }
+                String name = arg.substring(2, equals);
+                String value = arg.substring(equals + 1);
+                switch (name) {
+                    case "mode": options.mode = oneOf(name, value, "closed", "rate"); break;
+                    case "rate": options.rate = positive(name, value); break;
+                    case "threads": options.threads = positive(name, value); break;
+                    case "duration": options.durationSeconds = positive(name, value); break;
+                    case "warmup": options.warmupSeconds = Integer.parseInt(value); break;
+                    case "report-every": options.reportEverySeconds = positive(name, value); break;
+                    case "payload-bytes": options.payloadBytes = positive(name, value); break;
+                    case "difficulty-bits": options.difficultyBits = positive(name, value); break;
+                    case "mining-threads": options.miningThreads = positive(name, value); break;
+                    case "api": options.api = oneOf(name, value, "add", "submit"); break;
+                    case "storage": options.storage = oneOf(name, value, "memory", "h2-mem", "h2-file"); break;
+                    case "schema": options.schema = oneOf(name, value, "v1", "v2"); break;
+                    case "write-behind": options.writeBehind = Boolean.parseBoolean(value); break;
+                    case "db-dir": options.dbDir = value; break;
+                    case "out": options.out = value; break;
+                    default: throw new IllegalArgumentException("Unknown option --" + name);
+                }
+            }
+            return options;
+        }
+
+        private static String oneOf(String name, String value, String... allowed) {
+            for (String candidate : allowed) {
+                if (candidate.equals(value)) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("--" + name + " must be one of " + String.join(", ", allowed));
+        }
+
+        private static int positive(String name, String value) {
+            int parsed = Integer.parseInt(value);
+            if (parsed < 1) {
+                throw new IllegalArgumentException("--" + name + " must be positive");
+            }
+            return parsed;
+        }
+    }
+
+    /** Latency percentiles in milliseconds */
+    static final class Latency {
+        double p50;
+        double p90;
+        double p99;
+        double p999;
+        double max;
+        double mean;
+
+        static Latency of(Histogram nanos) {
+            Latency latency = new Latency();
+            latency.p50 = nanos.getValueAtPercentile(50) / 1e6;
+            latency.p90 = nanos.getValueAtPercentile(90) / 1e6;
+            latency.p99 = nanos.getValueAtPercentile(99) / 1e6;
+            latency.p999 = nanos.getValueAtPercentile(99.9) / 1e6;
+            latency.max = nanos.getMax() / 1e6;
+            latency.mean = nanos.getMean() / 1e6;
+            return latency;
+        }
+    }
+
+    /** GC pauses in milliseconds */
+    static final class GcPauses {
+        long count;
+        double totalMillis;
+        double p99Millis;
+        double maxMillis;
+
+        static GcPauses of(Histogram micros) {
+            GcPauses pauses = new GcPauses();
+            pauses.count = micros.getCount();
+            pauses.totalMillis = micros.getMean() * micros.getCount() / 1e3;
+            pauses.p99Millis = micros.getValueAtPercentile(99) / 1e3;
+            pauses.maxMillis = micros.getMax() / 1e3;
+            return pauses;
+        }
+    }
+
+    /** One report interval */
+    static final class Interval {
+        double elapsedSeconds;
+        long entries;
+        double entriesPerSecond;
+        long errors;
+        Latency latencyMillis;
+        GcPauses gcPauses;
+        long heapUsedBytes;
+        Long dbBytes;
+        int blocks;
+    }
+
+    /** Everything written to the result file */
+    static final class Result {
+        Options options;
+        Map<String, String> environment = new LinkedHashMap<>();
+        String startedAt;
+        double measuredSeconds;
+        long entries;
+        double entriesPerSecond;
+        long errors;
+        Latency latencyMillis;
+        GcPauses gcPauses;
+        long heapUsedBytes;
+        Long dbBytes;
+        int blocks;
+        boolean chainValid;
+        List<Interval> intervals = new ArrayList<>();
+    }
+
+    private final Options options;
+    private final Path dbDirectory;
+    private final long periodNanos;
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    // Recording starts after the warmup; interval histograms are swapped out at every report
+    private volatile boolean measuring;
+    private final Histogram totalLatency = new Histogram();
+    private final AtomicReference<Histogram> intervalLatency = new AtomicReference<>(new Histogram());
+    private final Histogram totalGcPauses = new Histogram();
+    private final AtomicReference<Histogram> intervalGcPauses = new AtomicReference<>(new Histogram());
+    private final AtomicLong entries = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong sequence = new AtomicLong();
+
+    LoadGenerator(Options options, Path dbDirectory) {
+        this.options = options;
+        this.dbDirectory = dbDirectory;
+        this.periodNanos = TimeUnit.SECONDS.toNanos(1) * options.threads / options.rate;
+    }
+
+    Result run() throws InterruptedException {
+        Result result = new Result();
+        result.options = options;
+        result.environment.put("java.version", System.getProperty("java.version"));
+        result.environment.put("java.vm.name", System.getProperty("java.vm.name"));
+        result.environment.put("os", System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+        result.environment.put("processors", Integer.toString(Runtime.getRuntime().availableProcessors()));
+        result.environment.put("maxHeapBytes", Long.toString(Runtime.getRuntime().maxMemory()));
+        result.startedAt = Instant.now().toString();
+
+        List<Runnable> unsubscribe = listenForGcPauses();
+        Blockchain chain = new Blockchain(chainConfig());
+        try {
+            System.out.println("=== LOAD GENERATOR ===");
+            System.out.printf("Mode: %s%s, threads: %d, api: %s, payload: %d bytes, difficulty: %d bits, storage: %s%s%n",
+                options.mode, options.mode.equals("rate") ? " at " + options.rate + "/s" : "", options.threads,
+                options.api, options.payloadBytes, options.difficultyBits, options.storage,
+                options.writeBehind ? " with write-behind" : "");
+            System.out.printf("Warmup %d s, then %d s measured%n%n", options.warmupSeconds, options.durationSeconds);
+
+            long start = System.nanoTime();
+            long measureFrom = start + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+            long end = measureFrom + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+            List<Thread> clients = new ArrayList<>();
+            for (int i = 0; i < options.threads; i++) {
+                int index = i;
+                Thread client = new Thread(() -> drive(chain, index, start, end), "load-client-" + i);
+                client.setDaemon(true);
+                clients.add(client);
+                client.start();
+            }
+
+            sleepUntil(measureFrom);
+            measuring = true;
+            System.out.printf("%8s %12s %10s %10s %10s %8s %10s %12s %12s%n", "Time (s)", "Entries/s", "p50 (ms)",
+                "p99 (ms)", "p999 (ms)", "GCs", "GC (ms)", "Heap (MB)", "DB (MB)");
+            long intervalStart = measureFrom;
+            long entriesBefore = 0;
+            long errorsBefore = 0;
+            while (intervalStart < end) {
+                long intervalEnd = Math.min(end, intervalStart + TimeUnit.SECONDS.toNanos(options.reportEverySeconds));
+                sleepUntil(intervalEnd);
+                Interval interval = new Interval();
+                interval.elapsedSeconds = (intervalEnd - measureFrom) / 1e9;
+                interval.entries = entries.get() - entriesBefore;
+                interval.errors = errors.get() - errorsBefore;
+                interval.entriesPerSecond = interval.entries / ((intervalEnd - intervalStart) / 1e9);
+                interval.latencyMillis = Latency.of(intervalLatency.getAndSet(new Histogram()));
+                interval.gcPauses = GcPauses.of(intervalGcPauses.getAndSet(new Histogram()));
+                interval.heapUsedBytes = memory.getHeapMemoryUsage().getUsed();
+                interval.dbBytes = dbBytes();
+                interval.blocks = chain.size();
+                result.intervals.add(interval);
+                print(interval);
+                entriesBefore += interval.entries;
+                errorsBefore += interval.errors;
+                intervalStart = intervalEnd;
+            }
+            measuring = false;
+
+            for (Thread client : clients) {
+                client.join();
+            }
+            chain.flush();
+
+            result.measuredSeconds = (end - measureFrom) / 1e9;
+            result.entries = entries.get();
+            result.errors = errors.get();
+            result.entriesPerSecond = result.entries / result.measuredSeconds;
+            result.latencyMillis = Latency.of(totalLatency);
+            result.gcPauses = GcPauses.of(totalGcPauses);
+            result.heapUsedBytes = memory.getHeapMemoryUsage().getUsed();
+            result.dbBytes = dbBytes();
+            result.blocks = chain.size();
+            result.chainValid = chain.isChainValid();
+        } finally {
+            chain.close();
+            unsubscribe.forEach(Runnable::run);
+        }
+
+        System.out.println();
+        System.out.printf("Entries: %,d in %.0f s, %,.1f/s, %d errors%n",
+            result.entries, result.measuredSeconds, result.entriesPerSecond, result.errors);
+        System.out.printf("Latency (ms): p50 %.2f, p90 %.2f, p99 %.2f, p999 %.2f, max %.2f%n",
+            result.latencyMillis.p50, result.latencyMillis.p90, result.latencyMillis.p99,
+            result.latencyMillis.p999, result.latencyMillis.max);
+        System.out.printf("GC pauses: %d, total %.1f ms, p99 %.2f ms, max %.2f ms%n",
+            result.gcPauses.count, result.gcPauses.totalMillis, result.gcPauses.p99Millis, result.gcPauses.maxMillis);
+        System.out.printf("Blocks: %,d, chain valid: %s%s%n", result.blocks, result.chainValid,
+            result.dbBytes != null ? String.format(", database: %.1f MB", result.dbBytes / 1e6) : "");
+        return result;
+    }
+
+    private BlockchainConfig chainConfig() {
+        BlockchainConfig config = new BlockchainConfig()
+            .withDifficultyBits(options.difficultyBits)
+            .withMiningThreads(options.miningThreads)
+            .withDbSchema(options.schema.equals("v2") ? BlockchainDAO.Schema.V2 : BlockchainDAO.Schema.V1)
+            .withConsoleOutput(false);
+        if (options.storage.equals("h2-mem")) {
+            config.withDbUrl("jdbc:h2:mem:loadgen" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        } else if (options.storage.equals("h2-file")) {
+            config.withDbUrl("jdbc:h2:file:" + dbDirectory.resolve("chain").toAbsolutePath());
+        }
+        if (options.writeBehind && !options.storage.equals("memory")) {
+            config.withWriteBehind(DurabilityPolicy.DEFAULT);
+        }
+        return config;
+    }
+
+    /**
+     * Client loop. In rate mode, thread {@code index} owns every {@code threads}-th slot of the
+     * schedule; a thread that is behind sends at once, and its latency counts from the slot.
+     * Threads stop at {@code end}.
+     */
+    private void drive(Blockchain chain, int index, long start, long end) {
+        boolean closedLoop = options.mode.equals("closed");
+        long slot = start + index * (periodNanos / options.threads);
+        while (true) {
+            long now = System.nanoTime();
+            if (closedLoop) {
+                slot = now;
+            } else if (slot > now) {
+                sleepUntil(slot);
+            }
+            // A thread that is behind drops its backlog at the end rather than overrunning
+            if (slot >= end || now >= end) {
+                return;
+            }
+            long due = slot;
+            String entry = payload();
+            if (options.api.equals("add")) {
+                try {
+                    chain.addBlock(entry);
+                    record(due);
+                } catch (RuntimeException e) {
+                    recordError();
+                }
+            } else {
+                CompletableFuture<?> future;
+                try {
+                    future = chain.submit(entry);
+                } catch (RuntimeException e) {
+                    recordError();
+                    continue;
+                }
+                future.whenComplete((block, failure) -> {
+                    if (failure == null) {
+                        record(due);
+                    } else {
+                        recordError();
+                    }
+                });
+                if (closedLoop) {
+                    try {
+                        future.join();
+                    } catch (RuntimeException e) {
+                        // Counted by the completion callback
+                    }
+                }
+            }
+            slot += periodNanos;
+        }
+    }
+
+    private void record(long dueNanos) {
+        if (!measuring) {
+            return;
+        }
+        long latency = System.nanoTime() - dueNanos;
+        totalLatency.record(latency);
+        intervalLatency.get().record(latency);
+        entries.incrementAndGet();
+    }
+
+    private void recordError() {
+        if (measuring) {
+            errors.incrementAndGet();
+        }
+    }
+
+    // Numbered entry padded, or cut, to the configured size
+    private String payload() {
+        StringBuilder entry = new StringBuilder(options.payloadBytes);
+        entry.append("entry-").append(sequence.incrementAndGet()).append('-');
+        while (entry.length() < options.payloadBytes) {
+            entry.append((char) ('a' + entry.length() % 26));
+        }
+        entry.setLength(options.payloadBytes);
+        return entry.toString();
+    }
+
+    /**
+     * Subscribes to the JVM's GC notifications and records the duration of every pause.
+     * Concurrent cycles, which run beside the application, are not pauses and are skipped.
+     *
+     * @return actions that remove the listeners
+     */
+    private List<Runnable> listenForGcPauses() {
+        NotificationListener listener = (notification, handback) -> {
+            if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            if (info.getGcName().contains("Concurrent") || info.getGcAction().contains("concurrent")) {
+                return;
+            }
+            if (measuring) {
+                long micros = info.getGcInfo().getDuration() * 1000;
+                totalGcPauses.record(micros);
+                intervalGcPauses.get().record(micros);
+            }
+        };
+        List<Runnable> unsubscribe = new ArrayList<>();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                NotificationEmitter emitter = (NotificationEmitter) gc;
+                emitter.addNotificationListener(listener, null, null);
+                unsubscribe.add(() -> {
+                    try {
+                        emitter.removeNotificationListener(listener);
+                    } catch (Exception e) {
+                        // Already removed
+                    }
+                });
+            }
+        }
+        return unsubscribe;
+    }
+
+    private Long dbBytes() {
+        if (dbDirectory == null) {
+            return null;
+        }
+        try (Stream<Path> files = Files.walk(dbDirectory)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> {
+                try {
+                    return Files.size(file);
+                } catch (IOException e) {
+                    // Removed by H2 while walking
+                    return 0;
+                }
+            }).sum();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to measure " + dbDirectory, e);
+        }
+    }
+
+    private static void print(Interval interval) {
+        System.out.printf("%8.0f %,12.1f %10.2f %10.2f %10.2f %8d %10.1f %12.1f %12s%n",
+            interval.elapsedSeconds, interval.entriesPerSecond, interval.latencyMillis.p50,
+            interval.latencyMillis.p99, interval.latencyMillis.p999, interval.gcPauses.count,
+            interval.gcPauses.totalMillis, interval.heapUsedBytes / 1e6,
+            interval.dbBytes != null ? String.format("%.1f", interval.dbBytes / 1e6) : "-");
+    }
+
+    private static void sleepUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package src.main.java.blockchain.demo;
+
+import src.main.java.blockchain.core.Block;
+import src.main.java.blockchain.hashing.HashEngines;
+import src.main.java.blockchain.metrics.Histogram;
+import src.main.java.blockchain.mining.MiningJob;
+import src.main.java.blockchain.mining.MiningPool;
+import src.main.java.blockchain.mining.MiningService;
+
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how quickly a {@link MiningJob} ends a mining call: the time from {@code cancel()}, or
+ * from the deadline, until the call has thrown and every worker has stopped.
+ *
+ * Usage: {@code MiningCancellationBenchmark [runs] [threads]}. Blocks are mined to a difficulty
+ * no run can reach, on the calling thread, on a {@link MiningPool} and on a
+ * {@link MiningService}. Each run is cancelled from another thread after a random 5-25 ms, or
+ * given a timeout of that length, and reports mean, p99 and max latency. A last run prints the
+ * progress reports of a job with a one-second timeout.
+ */
+public class MiningCancellationBenchmark {
+    private static final int UNREACHABLE_BITS = 40;
+
+    public static void main(String[] args) throws InterruptedException {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        System.out.println("=== MINING CANCELLATION BENCHMARK ===");
+        System.out.printf("Runs: %d, threads: %d%n%n", runs, threads);
+        System.out.printf("%-26s %10s %10s %10s%n", "Miner", "Mean (ms)", "p99 (ms)", "Max (ms)");
+
+        ScheduledExecutorService canceller = Executors.newSingleThreadScheduledExecutor();
+        MiningPool pool = new MiningPool(threads);
+        MiningService service = new MiningService(threads, HashEngines.defaultEngine());
+        MiningService.Client client = service.register("benchmark", 1, pool.getMetrics());
+        try {
+            Random random = new Random(3);
+            measure("Calling thread, cancel", runs, random, canceller, false,
+                job -> newBlock().mineToBits(UNREACHABLE_BITS, HashEngines.defaultEngine(), job));
+            measure("Pool, cancel", runs, random, canceller, false,
+                job -> pool.mineToBits(newBlock(), UNREACHABLE_BITS, job));
+            measure("Pool, deadline", runs, random, canceller, true,
+                job -> pool.mineToBits(newBlock(), UNREACHABLE_BITS, job));
+            measure("Service, cancel", runs, random, canceller, false,
+                job -> client.mineToBits(newBlock(), UNREACHABLE_BITS, job));
+            measure("Service, deadline", runs, random, canceller, true,
+                job -> client.mineToBits(newBlock(), UNREACHABLE_BITS, job));
+
+            System.out.println();
+            System.out.println("Progress of a pool job with a one-second timeout:");
+            MiningJob job = new MiningJob()
+                .withTimeout(1, TimeUnit.SECONDS)
+                .withProgressListener((attempts, rate) ->
+                    System.out.printf("  %,14d attempts, %,12.0f H/s%n", attempts, rate), 200);
+            try {
+                pool.mineToBits(newBlock(), UNREACHABLE_BITS, job);
+            } catch (CancellationException e) {
+                System.out.println("  " + e.getMessage());
+            }
+        } finally {
+            canceller.shutdownNow();
+            client.close();
+            service.shutdown();
+            pool.shutdown();
+        }
+    }
+
+    @FunctionalInterface
+    private interface MiningCall {
+        void mine(MiningJob job);
+    }
+
+    private static void measure(String label, int runs, Random random, ScheduledExecutorService canceller,
+                                boolean deadline, MiningCall call) {
+        Histogram nanos = new Histogram();
+        for (int run = 0; run < runs; run++) {
+            long delayNanos = TimeUnit.MILLISECONDS.toNanos(5 + random.nextInt(20));
+            MiningJob job = new MiningJob();
+            AtomicLong stopRequestedAt = new AtomicLong();
+            long start = System.nanoTime();
+            if (deadline) {
+                job.withTimeout(delayNanos, TimeUnit.NANOSECONDS);
+                stopRequestedAt.set(start + delayNanos);
+            } else {
+                canceller.schedule(() -> {
+                    stopRequestedAt.set(System.nanoTime());
+                    job.cancel();
+                }, delayNanos, TimeUnit.NANOSECONDS);
+            }
+            try {
+                call.mine(job);
+                throw new IllegalStateException("Mined a block at " + UNREACHABLE_BITS + " bits");
+            } catch (CancellationException e) {
+                nanos.record(System.nanoTime() - stopRequestedAt.get());
+            }
+        }
+        System.out.printf("%-26s %10.2f %10.2f %10.2f%n", label, nanos.getMean() / 1e6,
+            nanos.getValueAtPercentile(99) / 1e6, nanos.getMax() / 1e6);
+    }
+
+    private static Block newBlock() {
+        return new Block("Unminable block", "0");
+    }
+}
@@ -0,0 +1,68 @@
+package src.main.java.blockchain.demo;
+
+import src.main.java.blockchain.core.Block;
+import src.main.java.blockchain.hashing.HashEngine;
+import src.main.java.blockchain.hashing.HashEngines;
+import src.main.java.blockchain.mining.MiningPool;
+
+/**
+ * Measures how mining throughput scales with the number of pool threads.
+ *
+ * Usage: {@code MiningScalingBenchmark [difficulty] [blocksPerRun] [maxThreads] [hashEngine]}.
+ * Each thread count mines the same number of blocks on one long-lived pool and reports
+ * hashrate and the speedup relative to a single thread.
+ */
+public class MiningScalingBenchmark {
+
+    public static void main(String[] args) {
+        int difficulty = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int blocksPerRun = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        HashEngine engine = args.length > 3 ? HashEngines.byName(args[3]) : HashEngines.defaultEngine();
+
+        System.out.println("=== MINING SCALING BENCHMARK ===");
+        System.out.printf("Difficulty: %d, blocks per run: %d, max threads: %d, hash engine: %s%n%n",
+            difficulty, blocksPerRun, maxThreads, engine.getName());
+        System.out.printf("%8s %16s %12s %10s%n", "Threads", "Hashrate (H/s)", "ms/block", "Speedup");
+
+        double baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads = nextThreadCount(threads, maxThreads)) {
+            MiningPool pool = new MiningPool(threads, engine);
+            try {
+                // Warm up the pool threads and the nonce loop before measuring
+                mine(pool, difficulty, Math.max(1, blocksPerRun / 4));
+
+                long attemptsBefore = pool.getTotalAttempts();
+                long start = System.nanoTime();
+                mine(pool, difficulty, blocksPerRun);
+                long elapsed = System.nanoTime() - start;
+
+                double hashrate = (pool.getTotalAttempts() - attemptsBefore) / (elapsed / 1e9);
+                if (threads == 1) {
+                    baseline = hashrate;
+                }
+                System.out.printf("%8d %,16.0f %12.1f %9.2fx%n",
+                    threads, hashrate, elapsed / 1e6 / blocksPerRun, hashrate / baseline);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static void mine(MiningPool pool, int difficulty, int blocks) {
+        String previousHash = "0";
+        for (int i = 0; i < blocks; i++) {
+            Block block = new Block("Benchmark block " + i, previousHash);
+            block.setNonce(pool.mineBlockConcurrently(block, difficulty));
+            block.setHash(block.calculateHash());
+            previousHash = block.getHash();
+        }
+    }
+
+    private static int nextThreadCount(int threads, int maxThreads) {
+        if (threads == maxThreads) {
+            return maxThreads + 1;
+        }
+        return Math.min(threads * 2, maxThreads);
+    }
+}
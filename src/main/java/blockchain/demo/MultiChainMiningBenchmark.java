@@ -0,0 +1,140 @@
+package src.main.java.blockchain.demo;
+
+import src.main.java.blockchain.core.Blockchain;
+import src.main.java.blockchain.core.BlockchainConfig;
+import src.main.java.blockchain.hashing.HashEngines;
+import src.main.java.blockchain.metrics.MetricsRegistry;
+import src.main.java.blockchain.metrics.MiningMetrics;
+import src.main.java.blockchain.mining.MiningService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
+
+/**
+ * Mines on many chains at once and compares each chain running its own pool against all
+ * chains sharing one {@link MiningService}.
+ *
+ * Usage: {@code MultiChainMiningBenchmark [difficulty] [seconds] [maxChains]}. For each chain
+ * count, every chain mines blocks on its own thread for the given time. Reports the total
+ * hashrate, the smallest and largest per-chain share relative to a fair share, and the p99
+ * queue wait on the service. A final run gives four chains weights 1 to 4 on the service and
+ * reports the share each one got.
+ */
+public class MultiChainMiningBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int difficulty = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 3;
+        int maxChains = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        System.out.println("=== MULTI-CHAIN MINING BENCHMARK ===");
+        System.out.printf("Difficulty: %d, %.1f s per run, cores: %d%n%n", difficulty, seconds, cores);
+        System.out.printf("%7s %-14s %16s %10s %10s %14s%n",
+            "Chains", "Mining", "Hashrate (H/s)", "Min share", "Max share", "Wait p99 (ms)");
+
+        MiningService service = new MiningService(cores, HashEngines.defaultEngine());
+        try {
+            for (int chains = 1; chains <= maxChains; chains *= 2) {
+                report(chains, "own pools", run(chains, difficulty, seconds,
+                    i -> new BlockchainConfig().withMiningThreads(cores)), false);
+                report(chains, "shared service", run(chains, difficulty, seconds,
+                    i -> new BlockchainConfig().withMiningService(service, 1)), true);
+            }
+
+            System.out.println();
+            System.out.println("Weighted chains on the shared service:");
+            System.out.printf("%7s %16s %10s%n", "Weight", "Hashrate (H/s)", "Share");
+            Result weighted = run(4, difficulty, seconds,
+                i -> new BlockchainConfig().withMiningService(service, i + 1));
+            for (int i = 0; i < weighted.attempts.length; i++) {
+                System.out.printf("%7d %,16.0f %9.1f%%%n",
+                    i + 1, weighted.attempts[i] / weighted.seconds, 100.0 * weighted.attempts[i] / weighted.total());
+            }
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    /** Attempts of each chain over one run */
+    private static final class Result {
+        final long[] attempts;
+        final double seconds;
+        final double queueWaitP99Millis;
+
+        Result(long[] attempts, double seconds, double queueWaitP99Millis) {
+            this.attempts = attempts;
+            this.seconds = seconds;
+            this.queueWaitP99Millis = queueWaitP99Millis;
+        }
+
+        long total() {
+            long total = 0;
+            for (long value : attempts) {
+                total += value;
+            }
+            return total;
+        }
+    }
+
+    private static Result run(int chainCount, int difficulty, double seconds, IntFunction<BlockchainConfig> config)
+            throws InterruptedException {
+        List<Blockchain> chains = new ArrayList<>();
+        for (int i = 0; i < chainCount; i++) {
+            chains.add(new Blockchain(config.apply(i)
+                .withDifficulty(difficulty)
+                .withMetrics(new MetricsRegistry("chain-" + i))
+                .withConsoleOutput(false)));
+        }
+
+        // The genesis blocks are mined on construction; only count the blocks mined from here on
+        for (Blockchain chain : chains) {
+            chain.getMetrics().mining().reset();
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> threads = new ArrayList<>();
+        for (Blockchain chain : chains) {
+            threads.add(new Thread(() -> {
+                for (int block = 1; running.get(); block++) {
+                    chain.addBlock("Block " + block);
+                }
+            }, "benchmark-" + chain.getMetrics().getName()));
+        }
+
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Thread.sleep((long) (seconds * 1000));
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long[] attempts = new long[chainCount];
+        double queueWait = 0;
+        for (int i = 0; i < chainCount; i++) {
+            MiningMetrics mining = chains.get(i).getMetrics().mining();
+            attempts[i] = mining.getTotalAttempts();
+            queueWait = Math.max(queueWait, mining.getQueueWaitP99Millis());
+            chains.get(i).close();
+        }
+        return new Result(attempts, elapsed, queueWait);
+    }
+
+    private static void report(int chains, String label, Result result, boolean queued) {
+        double fair = (double) result.total() / chains;
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (long value : result.attempts) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        System.out.printf("%7d %-14s %,16.0f %9.2fx %9.2fx %14s%n",
+            chains, label, result.total() / result.seconds, min / fair, max / fair,
+            queued ? String.format("%.2f", result.queueWaitP99Millis) : "-");
+    }
+}
@@ -0,0 +1,157 @@
+package src.main.java.blockchain.demo;
+
+import src.main.java.blockchain.core.Block;
+import src.main.java.blockchain.metrics.Histogram;
+import src.main.java.blockchain.metrics.PersistenceMetrics;
+import src.main.java.blockchain.persistence.BlockchainDAO;
+import src.main.java.blockchain.persistence.BlockchainDAO.Schema;
+import src.main.java.blockchain.utils.StringUtil;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Measures the latency of the range reads an explorer issues on a large chain.
+ *
+ * Usage: {@code RangeQueryBenchmark [blocks] [schema]}. The chain is written to a file-based H2
+ * database (v2 by default) with about one block per second of timestamps. Each query runs
+ * {@value #QUERIES} times at random positions and reports mean, p50 and p99:
+ * - a page of {@value #PAGE} blocks by height;
+ * - the blocks of a one-minute timestamp window;
+ * - {@value #PAGE} blocks walking back from a random hash;
+ * - a page of {@value #PAGE} blocks near the tip reached by keyset, and the same page reached
+ *   with {@code OFFSET}, the way paging is often written, for comparison.
+ * Blocks are not mined, since the DAO does not check proof-of-work.
+ */
+public class RangeQueryBenchmark {
+    private static final int SAVE_BATCH = 1000;
+    private static final int QUERIES = 1000;
+    private static final int PAGE = 20;
+
+    public static void main(String[] args) throws IOException, SQLException {
+        int blocks = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        Schema schema = (args.length < 2 || args[1].equalsIgnoreCase("v2")) ? Schema.V2 : Schema.V1;
+
+        System.out.println("=== RANGE QUERY BENCHMARK ===");
+        System.out.printf("Blocks: %,d, schema %s%n%n", blocks, schema);
+
+        Path directory = Files.createTempDirectory("range-query");
+        String dbUrl = "jdbc:h2:file:" + directory.resolve("chain").toAbsolutePath();
+        Random random = new Random(5);
+        try (BlockchainDAO dao = new BlockchainDAO(dbUrl, new PersistenceMetrics(), schema);
+             Connection conn = DriverManager.getConnection(dbUrl)) {
+            long start = System.nanoTime();
+            List<String> hashes = new ArrayList<>(blocks);
+            long firstTimestamp = System.currentTimeMillis();
+            writeChain(dao, blocks, firstTimestamp, random, hashes);
+            long lastTimestamp = dao.getChainStats().getLatestTimestamp();
+            System.out.printf("Wrote %,d blocks in %.1f s%n%n", blocks, (System.nanoTime() - start) / 1e9);
+
+            System.out.printf("%-32s %10s %10s %10s %8s%n", "Query", "Mean (ms)", "p50 (ms)", "p99 (ms)", "Blocks");
+            measure("Height page", () -> {
+                int from = random.nextInt(blocks - PAGE);
+                try (Stream<Block> page = dao.streamBlocks(from, from + PAGE, PAGE)) {
+                    return (int) page.count();
+                }
+            });
+            measure("One-minute timestamp window", () -> {
+                long from = firstTimestamp + (long) (random.nextDouble() * (lastTimestamp - firstTimestamp - 60_000));
+                try (Stream<Block> window = dao.streamBlocksByTimestamp(from, from + 60_000)) {
+                    return (int) window.count();
+                }
+            });
+            measure("Walk back from a hash", () -> {
+                String hash = hashes.get(PAGE + random.nextInt(blocks - PAGE));
+                try (Stream<Block> ancestors = dao.streamAncestors(hash, PAGE)) {
+                    return (int) ancestors.limit(PAGE).count();
+                }
+            });
+            measure("Page near the tip, keyset", () -> {
+                int from = blocks - PAGE - random.nextInt(PAGE);
+                try (Stream<Block> page = dao.streamBlocks(from, from + PAGE, PAGE)) {
+                    return (int) page.count();
+                }
+            });
+            String offsetSql = "SELECT * FROM " + schema.getTable() + " ORDER BY height LIMIT ? OFFSET ?";
+            try (PreparedStatement offsetPage = conn.prepareStatement(offsetSql)) {
+                measure("Page near the tip, OFFSET", QUERIES / 20, () -> {
+                    offsetPage.setInt(1, PAGE);
+                    offsetPage.setInt(2, blocks - PAGE - random.nextInt(PAGE));
+                    int rows = 0;
+                    try (ResultSet rs = offsetPage.executeQuery()) {
+                        while (rs.next()) {
+                            rows++;
+                        }
+                    }
+                    return rows;
+                });
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    private static void writeChain(BlockchainDAO dao, int blocks, long firstTimestamp, Random random, List<String> hashes) {
+        String previousHash = "0";
+        long timestamp = firstTimestamp;
+        for (int from = 0; from < blocks; from += SAVE_BATCH) {
+            List<Block> batch = new ArrayList<>(SAVE_BATCH);
+            for (int height = from; height < Math.min(blocks, from + SAVE_BATCH); height++) {
+                byte[] digest = new byte[32];
+                random.nextBytes(digest);
+                timestamp += random.nextInt(2000);
+                Block block = Block.fromDatabase(StringUtil.toHex(digest), previousHash, "Block " + height,
+                    timestamp, random.nextInt(1 << 20), null, 16);
+                batch.add(block);
+                hashes.add(block.getHash());
+                previousHash = block.getHash();
+            }
+            dao.saveBlocks(batch);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Query {
+        /** Runs the query once and returns the number of blocks read */
+        int run() throws SQLException;
+    }
+
+    private static void measure(String name, Query query) throws SQLException {
+        measure(name, QUERIES, query);
+    }
+
+    private static void measure(String name, int runs, Query query) throws SQLException {
+        // Warm up the statement caches and the JIT before measuring
+        for (int i = 0; i < runs / 10; i++) {
+            query.run();
+        }
+        Histogram nanos = new Histogram();
+        long rows = 0;
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            rows += query.run();
+            nanos.record(System.nanoTime() - start);
+        }
+        System.out.printf("%-32s %10.2f %10.2f %10.2f %8.0f%n", name, nanos.getMean() / 1e6,
+            nanos.getValueAtPercentile(50) / 1e6, nanos.getValueAtPercentile(99) / 1e6, (double) rows / runs);
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package src.main.java.blockchain.demo;
+
+import src.main.java.blockchain.core.Block;
+import src.main.java.blockchain.core.Blockchain;
+import src.main.java.blockchain.core.BlockchainConfig;
+import src.main.java.blockchain.hashing.HashEngine;
+import src.main.java.blockchain.hashing.HashEngines;
+import src.main.java.blockchain.persistence.MappedBlockLog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Measures time-to-ready of a reopened chain: constructing the {@link Blockchain} and
+ * validating it. Compares a full load, a restart from a checkpoint with every block resident,
+ * and a restart from a checkpoint with a resident window.
+ *
+ * Usage: {@code RestartBenchmark [blocks] [blocksAfterCheckpoint]}. The chain is written to
+ * a {@link MappedBlockLog} in a temporary directory at difficulty 1. Each case runs on a fresh
+ * copy of the checkpoint directory, since closing a chain writes a new checkpoint, and the best
+ * of {@value #RUNS} runs is reported.
+ */
+public class RestartBenchmark {
+    private static final int DIFFICULTY = 1;
+    private static final int SAVE_BATCH = 10_000;
+    private static final int RESIDENT_TAIL = 10_000;
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) throws IOException {
+        int blocks = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int afterCheckpoint = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+
+        System.out.println("=== RESTART BENCHMARK ===");
+        System.out.printf("Blocks: %,d, blocks after the checkpoint: %,d%n%n", blocks, afterCheckpoint);
+
+        Path directory = Files.createTempDirectory("restart-benchmark");
+        Path logDirectory = directory.resolve("log");
+        Path checkpointDirectory = directory.resolve("checkpoints");
+        try {
+            long start = System.nanoTime();
+            writeChain(logDirectory, blocks - afterCheckpoint, "0");
+            System.out.printf("Wrote %,d blocks in %.1f s%n", blocks - afterCheckpoint, (System.nanoTime() - start) / 1e9);
+
+            Blockchain chain = new Blockchain(config(logDirectory)
+                .withCheckpoints(checkpointDirectory, Integer.MAX_VALUE)
+                .withResidentWindow(RESIDENT_TAIL, 0));
+            start = System.nanoTime();
+            chain.checkpoint();
+            System.out.printf("First checkpoint (validates every block): %.1f ms%n", (System.nanoTime() - start) / 1e6);
+            String tip = chain.getLatestBlock().getHash();
+            chain.close();
+            writeChain(logDirectory, afterCheckpoint, tip);
+
+            System.out.printf("%n%-34s %14s%n", "Restart", "Ready (ms)");
+            measure("Full load and validation", () -> config(logDirectory));
+            measure("Checkpoint, all blocks resident", () -> config(logDirectory)
+                .withCheckpoints(copyDirectory(checkpointDirectory), Integer.MAX_VALUE));
+            measure("Checkpoint, resident window", () -> config(logDirectory)
+                .withCheckpoints(copyDirectory(checkpointDirectory), Integer.MAX_VALUE)
+                .withResidentWindow(RESIDENT_TAIL, 0));
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    private static BlockchainConfig config(Path logDirectory) {
+        return new BlockchainConfig()
+            .withDifficulty(DIFFICULTY)
+            .withBlockStore(new MappedBlockLog(logDirectory))
+            .withConsoleOutput(false);
+    }
+
+    private static void measure(String label, Supplier<BlockchainConfig> configs) {
+        long best = Long.MAX_VALUE;
+        boolean valid = true;
+        for (int run = 0; run < RUNS; run++) {
+            BlockchainConfig config = configs.get();
+            long start = System.nanoTime();
+            Blockchain chain = new Blockchain(config);
+            valid &= chain.isChainValid();
+            best = Math.min(best, System.nanoTime() - start);
+            chain.close();
+        }
+        System.out.printf("%-34s %,14.1f%s%n", label, best / 1e6, valid ? "" : "  (INVALID)");
+    }
+
+    private static Path copyDirectory(Path source) {
+        try {
+            Path target = Files.createTempDirectory(source.getParent(), "copy");
+            try (Stream<Path> files = Files.list(source)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.copy(file, target.resolve(file.getFileName()));
+                }
+            }
+            return target;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Appends mined blocks to the log, continuing from {@code previousHash}
+     */
+    private static void writeChain(Path logDirectory, int count, String previousHash) {
+        HashEngine engine = HashEngines.defaultEngine();
+        try (MappedBlockLog log = new MappedBlockLog(logDirectory)) {
+            int height = log.size();
+            List<Block> batch = new ArrayList<>(SAVE_BATCH);
+            for (int i = 0; i < count; i++, height++) {
+                Block block = new Block(height == 0 ? "Genesis Block" : "Block " + height, previousHash);
+                block.mine(DIFFICULTY, engine);
+                batch.add(block);
+                previousHash = block.getHash();
+                if (batch.size() == SAVE_BATCH) {
+                    log.saveBlocks(batch);
+                    batch.clear();
+                }
+            }
+            log.saveBlocks(batch);
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package src.main.java.blockchain.demo;
+
+import src.main.java.blockchain.core.Block;
+import src.main.java.blockchain.metrics.PersistenceMetrics;
+import src.main.java.blockchain.persistence.BlockchainDAO;
+import src.main.java.blockchain.persistence.BlockchainDAO.Schema;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Compares the v1 and v2 block table layouts on a file-based H2 database: size on disk,
+ * time to load the whole chain, time for lookups by hash, and the time to migrate the v1
+ * table to v2.
+ *
+ * Usage: {@code StorageSchemaBenchmark [blocks] [entriesPerBlock]}. Blocks hold JSON entry
+ * lists with a Merkle root, like blocks from the mempool. They are not mined, since the DAO
+ * does not check proof-of-work.
+ */
+public class StorageSchemaBenchmark {
+    private static final int SAVE_BATCH = 1000;
+    private static final int LOAD_RUNS = 5;
+    private static final int HASH_LOOKUPS = 1000;
+
+    public static void main(String[] args) throws IOException {
+        int blocks = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int entriesPerBlock = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+        System.out.println("=== STORAGE SCHEMA BENCHMARK ===");
+        System.out.printf("Blocks: %,d, entries per block: %d%n%n", blocks, entriesPerBlock);
+
+        List<Block> chain = buildChain(blocks, entriesPerBlock);
+        System.out.printf("%6s %14s %12s %16s%n", "Schema", "DB size", "Load (ms)", "Hash lookup (us)");
+
+        Path v1Directory = null;
+        for (Schema schema : Schema.values()) {
+            Path directory = Files.createTempDirectory("schema-" + schema.name().toLowerCase());
+            String dbUrl = "jdbc:h2:file:" + directory.resolve("chain");
+
+            try (BlockchainDAO dao = new BlockchainDAO(dbUrl, new PersistenceMetrics(), schema)) {
+                for (int from = 0; from < chain.size(); from += SAVE_BATCH) {
+                    dao.saveBlocks(chain.subList(from, Math.min(chain.size(), from + SAVE_BATCH)));
+                }
+            }
+            long size = directorySize(directory);
+
+            try (BlockchainDAO dao = new BlockchainDAO(dbUrl, new PersistenceMetrics(), schema)) {
+                long bestLoad = Long.MAX_VALUE;
+                for (int run = 0; run < LOAD_RUNS; run++) {
+                    long start = System.nanoTime();
+                    int loaded = dao.loadBlockchain().size();
+                    bestLoad = Math.min(bestLoad, System.nanoTime() - start);
+                    if (loaded != blocks) {
+                        throw new IllegalStateException("Loaded " + loaded + " of " + blocks + " blocks");
+                    }
+                }
+
+                Random random = new Random(42);
+                long start = System.nanoTime();
+                for (int i = 0; i < HASH_LOOKUPS; i++) {
+                    dao.loadBlockByHash(chain.get(random.nextInt(blocks)).getHash());
+                }
+                long lookup = System.nanoTime() - start;
+
+                System.out.printf("%6s %,14d %12.1f %16.1f%n",
+                    schema, size, bestLoad / 1e6, lookup / 1e3 / HASH_LOOKUPS);
+            }
+
+            if (schema == Schema.V1) {
+                v1Directory = directory;
+            } else {
+                deleteRecursively(directory);
+            }
+        }
+
+        String v1Url = "jdbc:h2:file:" + v1Directory.resolve("chain");
+        try (BlockchainDAO dao = new BlockchainDAO(v1Url, new PersistenceMetrics(), Schema.V2)) {
+            long start = System.nanoTime();
+            long migrated = dao.migrateToV2(BlockchainDAO.DEFAULT_MIGRATION_BATCH_SIZE);
+            System.out.printf("%nMigrated %,d v1 blocks to v2 in %.1f ms%n", migrated, (System.nanoTime() - start) / 1e6);
+        } finally {
+            deleteRecursively(v1Directory);
+        }
+    }
+
+    private static List<Block> buildChain(int blocks, int entriesPerBlock) {
+        Random random = new Random(7);
+        List<Block> chain = new ArrayList<>(blocks);
+        String previousHash = "0";
+        for (int i = 0; i < blocks; i++) {
+            List<String> entries = new ArrayList<>(entriesPerBlock);
+            for (int e = 0; e < entriesPerBlock; e++) {
+                entries.add(String.format("{\"from\":\"account-%05d\",\"to\":\"account-%05d\",\"amount\":%d,\"memo\":\"transfer %d.%d\"}",
+                    random.nextInt(10_000), random.nextInt(10_000), random.nextInt(1_000_000), i, e));
+            }
+            Block block = Block.withEntries(entries, previousHash);
+            chain.add(block);
+            previousHash = block.getHash();
+        }
+        return chain;
+    }
+
+    private static long directorySize(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> {
+                try {
+                    return Files.size(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).sum();
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package src.main.java.blockchain.demo;
+
+import src.main.java.blockchain.core.Blockchain;
+import src.main.java.blockchain.core.BlockchainConfig;
+
+import java.util.Arrays;
+
+/**
+ * Shows how closely a retargeting chain holds a target block time compared with fixed
+ * difficulties in whole hex digits.
+ *
+ * Usage: {@code TargetBlockTimeBenchmark [targetMillis] [retargetInterval] [blocks]}. The
+ * retargeting chain starts at 8 bits, far too easy, and has to find the difficulty itself.
+ * For each chain the benchmark prints the block time percentiles, taken from block timestamps,
+ * after the first quarter of the blocks. For the retargeting chain it also prints the
+ * difficulty and mean block time of every retarget interval.
+ */
+public class TargetBlockTimeBenchmark {
+    private static final int INITIAL_BITS = 8;
+
+    public static void main(String[] args) {
+        long targetMillis = args.length > 0 ? Long.parseLong(args[0]) : 60;
+        int interval = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int blocks = args.length > 2 ? Integer.parseInt(args[2]) : 400;
+
+        System.out.println("=== TARGET BLOCK TIME BENCHMARK ===");
+        System.out.printf("Target: %d ms per block, retarget every %d blocks, %d blocks per chain%n%n",
+            targetMillis, interval, blocks);
+
+        Blockchain retargeting = mine(new BlockchainConfig()
+            .withDifficultyBits(INITIAL_BITS)
+            .withTargetBlockTime(targetMillis, interval), blocks);
+        System.out.printf("%8s %6s %16s%n", "Interval", "Bits", "Mean block (ms)");
+        for (int first = 0; first + interval <= retargeting.size(); first += interval) {
+            long elapsed = retargeting.getBlock(first + interval - 1).getTimeStamp() - retargeting.getBlock(first).getTimeStamp();
+            System.out.printf("%8d %6d %16.1f%n", first / interval, retargeting.getBlock(first).getDifficultyBits(),
+                (double) elapsed / (interval - 1));
+        }
+        System.out.println();
+
+        System.out.printf("%-24s %10s %10s %10s%n", "Difficulty", "p50 (ms)", "p90 (ms)", "Mean (ms)");
+        report("Retargeting from 8 bits", retargeting);
+        retargeting.close();
+        for (int digits = 3; digits <= 4; digits++) {
+            Blockchain fixed = mine(new BlockchainConfig().withDifficulty(digits), blocks);
+            report(digits + " hex digits", fixed);
+            fixed.close();
+        }
+    }
+
+    private static Blockchain mine(BlockchainConfig config, int blocks) {
+        Blockchain chain = new Blockchain(config.withConsoleOutput(false));
+        for (int i = 1; i < blocks; i++) {
+            chain.addBlock("Block " + i);
+        }
+        return chain;
+    }
+
+    /**
+     * Block times after the first quarter of the chain. A block's timestamp is taken when it
+     * is created, right after the block below it was mined, so the gap to the next timestamp
+     * is the block's mining time.
+     */
+    private static void report(String label, Blockchain chain) {
+        int from = chain.size() / 4;
+        long[] times = new long[chain.size() - 1 - from];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = chain.getBlock(from + i + 1).getTimeStamp() - chain.getBlock(from + i).getTimeStamp();
+        }
+        long total = Arrays.stream(times).sum();
+        Arrays.sort(times);
+        System.out.printf("%-24s %10d %10d %10.1f%n", label,
+            times[times.length / 2], times[times.length * 9 / 10], (double) total / times.length);
+    }
+}
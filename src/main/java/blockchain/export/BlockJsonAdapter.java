@@ -0,0 +1,40 @@
+package src.main.java.blockchain.export;
+
+import src.main.java.blockchain.core.Block;
+
+import java.io.IOException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes a block as the same JSON object Gson's reflective serialization produced for
+ * {@code Blockchain.toJson()}, field by field and without reflection. Stateless, so one
+ * instance serves every export.
+ */
+final class BlockJsonAdapter extends TypeAdapter<Block> {
+    static final BlockJsonAdapter INSTANCE = new BlockJsonAdapter();
+
+    private BlockJsonAdapter() {
+    }
+
+    @Override
+    public void write(JsonWriter out, Block block) throws IOException {
+        out.beginObject();
+        out.name("hash").value(block.getHash());
+        out.name("previousHash").value(block.getPreviousHash());
+        out.name("data").value(block.getData());
+        out.name("timeStamp").value(block.getTimeStamp());
+        out.name("nonce").value(block.getNonce());
+        if (block.hasMerkleRoot()) {
+            out.name("merkleRoot").value(block.getMerkleRoot());
+        }
+        out.name("difficultyBits").value(block.getDifficultyBits());
+        out.endObject();
+    }
+
+    @Override
+    public Block read(JsonReader in) {
+        throw new UnsupportedOperationException("Blocks are exported, not imported");
+    }
+}
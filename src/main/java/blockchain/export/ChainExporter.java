@@ -0,0 +1,232 @@
+package src.main.java.blockchain.export;
+
+import src.main.java.blockchain.core.Block;
+import src.main.java.blockchain.core.Blockchain;
+import src.main.java.blockchain.persistence.BlockStore;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Streams blocks as JSON to a {@link Writer} or {@link OutputStream}, one block at a time,
+ * so memory use does not depend on the length of the chain.
+ *
+ * Blocks are written either as one JSON array ({@link Format#JSON_ARRAY}, optionally pretty
+ * printed) or as newline-delimited JSON with one compact block per line
+ * ({@link Format#NDJSON}). Exports can be limited to a height range and to a timestamp
+ * range, and read either from a {@link Blockchain} or straight from a {@link BlockStore}.
+ * The target is flushed but not closed.
+ */
+public class ChainExporter {
+
+    public enum Format {
+        JSON_ARRAY,
+        NDJSON
+    }
+
+    private Format format = Format.JSON_ARRAY;
+    private boolean prettyPrinting;
+    private int fromHeight;
+    private int toHeight = Integer.MAX_VALUE;
+    private long fromTimestamp = Long.MIN_VALUE;
+    private long toTimestamp = Long.MAX_VALUE;
+
+    public ChainExporter withFormat(Format format) {
+        this.format = format;
+        return this;
+    }
+
+    /**
+     * Indents the JSON array output. Ignored for NDJSON, where every block is one line.
+     */
+    public ChainExporter withPrettyPrinting(boolean prettyPrinting) {
+        this.prettyPrinting = prettyPrinting;
+        return this;
+    }
+
+    /**
+     * Exports only heights {@code fromHeight .. toHeight - 1}
+     */
+    public ChainExporter withHeightRange(int fromHeight, int toHeight) {
+        if (fromHeight < 0 || toHeight < fromHeight) {
+            throw new IllegalArgumentException(String.format("Invalid height range: %d-%d", fromHeight, toHeight));
+        }
+        this.fromHeight = fromHeight;
+        this.toHeight = toHeight;
+        return this;
+    }
+
+    /**
+     * Exports only blocks with {@code fromTimestamp <= timestamp <= toTimestamp}, in epoch millis
+     */
+    public ChainExporter withTimestampRange(long fromTimestamp, long toTimestamp) {
+        if (toTimestamp < fromTimestamp) {
+            throw new IllegalArgumentException(String.format("Invalid timestamp range: %d-%d", fromTimestamp, toTimestamp));
+        }
+        this.fromTimestamp = fromTimestamp;
+        this.toTimestamp = toTimestamp;
+        return this;
+    }
+
+    /**
+     * Exports blocks of an open blockchain, resident or not
+     *
+     * @return number of blocks written
+     */
+    public long export(Blockchain blockchain, Writer out) {
+        return write(out, consumer -> {
+            int end = Math.min(toHeight, blockchain.size());
+            for (int height = fromHeight; height < end; height++) {
+                consumer.accept(blockchain.getBlock(height));
+            }
+        });
+    }
+
+    /**
+     * Exports blocks straight from a store, streamed through its cursor
+     *
+     * @return number of blocks written
+     */
+    public long export(BlockStore store, Writer out) {
+        return write(out, consumer -> store.forEachBlock(fromHeight, toHeight, consumer));
+    }
+
+    /**
+     * Exports blocks of an open blockchain as UTF-8
+     *
+     * @return number of blocks written
+     */
+    public long export(Blockchain blockchain, OutputStream out) {
+        Writer writer = utf8Writer(out);
+        long written = export(blockchain, writer);
+        flush(writer);
+        return written;
+    }
+
+    /**
+     * Exports blocks straight from a store as UTF-8
+     *
+     * @return number of blocks written
+     */
+    public long export(BlockStore store, OutputStream out) {
+        Writer writer = utf8Writer(out);
+        long written = export(store, writer);
+        flush(writer);
+        return written;
+    }
+
+    private long write(Writer out, Consumer<Consumer<Block>> source) {
+        BlockSink sink = (format == Format.NDJSON) ? new NdjsonSink(out) : new ArraySink(out, prettyPrinting);
+        try {
+            sink.begin();
+            source.accept(block -> {
+                if (block.getTimeStamp() >= fromTimestamp && block.getTimeStamp() <= toTimestamp) {
+                    sink.write(block);
+                }
+            });
+            sink.end();
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to export blocks", e);
+        }
+        return sink.count;
+    }
+
+    private static Writer utf8Writer(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    private static void flush(Writer writer) {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to export blocks", e);
+        }
+    }
+
+    /**
+     * Output format state; {@link #write} is called from inside the block source, so it
+     * reports failures unchecked.
+     */
+    private abstract static class BlockSink {
+        long count;
+
+        abstract void begin() throws IOException;
+
+        abstract void writeBlock(Block block) throws IOException;
+
+        abstract void end() throws IOException;
+
+        final void write(Block block) {
+            try {
+                writeBlock(block);
+                count++;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to export block " + block.getHash(), e);
+            }
+        }
+    }
+
+    private static final class ArraySink extends BlockSink {
+        private final JsonWriter json;
+
+        ArraySink(Writer out, boolean prettyPrinting) {
+            this.json = new JsonWriter(out);
+            json.setHtmlSafe(true);
+            if (prettyPrinting) {
+                json.setIndent("  ");
+            }
+        }
+
+        @Override
+        void begin() throws IOException {
+            json.beginArray();
+        }
+
+        @Override
+        void writeBlock(Block block) throws IOException {
+            BlockJsonAdapter.INSTANCE.write(json, block);
+        }
+
+        @Override
+        void end() throws IOException {
+            json.endArray();
+            json.flush();
+        }
+    }
+
+    private static final class NdjsonSink extends BlockSink {
+        private final Writer out;
+        private final JsonWriter json;
+
+        NdjsonSink(Writer out) {
+            this.out = out;
+            // Lenient so the writer accepts one top-level value per line
+            this.json = new JsonWriter(out);
+            json.setHtmlSafe(true);
+            json.setLenient(true);
+        }
+
+        @Override
+        void begin() {
+        }
+
+        @Override
+        void writeBlock(Block block) throws IOException {
+            BlockJsonAdapter.INSTANCE.write(json, block);
+            out.write('\n');
+        }
+
+        @Override
+        void end() throws IOException {
+            json.flush();
+        }
+    }
+}
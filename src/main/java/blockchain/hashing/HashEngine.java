@@ -0,0 +1,46 @@
+package src.main.java.blockchain.hashing;
+
+import src.main.java.blockchain.utils.StringUtil;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * SHA-256 implementation used for block hashing, mining and validation.
+ *
+ * Engines are stateless and safe to share between threads; per-thread mining state lives
+ * in the {@link NonceSearcher} instances they create. Every engine must produce exactly the
+ * same digests as the JCA reference, see {@link HashEngines#verify(HashEngine)}.
+ */
+public interface HashEngine {
+
+    /** Short identifier used for selection and in logs, e.g. {@code "jca"}. */
+    String getName();
+
+    /**
+     * Hashes {@code length} bytes of {@code input} starting at {@code offset} and writes the
+     * 32-byte digest into {@code out} at {@code outOffset}.
+     */
+    void digest(byte[] input, int offset, int length, byte[] out, int outOffset);
+
+    /**
+     * Creates a searcher for proof-of-work mining. Searchers are not thread-safe; each
+     * mining thread should own one and reuse it across blocks.
+     */
+    NonceSearcher newNonceSearcher();
+
+    default byte[] digest(byte[] input) {
+        byte[] out = new byte[32];
+        digest(input, 0, input.length, out, 0);
+        return out;
+    }
+
+    /**
+     * Hashes the UTF-8 encoding of {@code input} and returns the lowercase hex digest.
+     */
+    default String hashHex(String input) {
+        if (input == null) {
+            throw new IllegalArgumentException("Input cannot be null");
+        }
+        return StringUtil.toHex(digest(input.getBytes(StandardCharsets.UTF_8)));
+    }
+}
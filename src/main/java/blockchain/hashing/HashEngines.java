@@ -0,0 +1,100 @@
+package src.main.java.blockchain.hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Factory and reference check for the available {@link HashEngine} implementations.
+ */
+public final class HashEngines {
+    private static final HashEngine JCA = new JcaHashEngine();
+    private static final HashEngine UNROLLED = new UnrolledSha256Engine();
+    private static final HashEngine MULTI_LANE = new MultiLaneSha256Engine();
+
+    private static final Map<HashEngine, Boolean> VERIFIED = new ConcurrentHashMap<>();
+
+    private HashEngines() {
+    }
+
+    /** The JCA {@code MessageDigest} engine; the reference all others are checked against. */
+    public static HashEngine jca() { return JCA; }
+
+    public static HashEngine unrolled() { return UNROLLED; }
+
+    public static HashEngine multiLane() { return MULTI_LANE; }
+
+    /**
+     * Engine used when none is selected explicitly. On HotSpot the JCA digest is backed by
+     * SHA-256 compression intrinsics, which outrun the pure-Java engines where the CPU has
+     * SHA extensions; pick another engine explicitly where it benchmarks faster.
+     */
+    public static HashEngine defaultEngine() { return JCA; }
+
+    /**
+     * Looks up an engine by its {@link HashEngine#getName() name}.
+     *
+     * @throws IllegalArgumentException if no engine has that name
+     */
+    public static HashEngine byName(String name) {
+        switch (name) {
+            case "jca": return JCA;
+            case "unrolled": return UNROLLED;
+            case "multilane": return MULTI_LANE;
+            default:
+                throw new IllegalArgumentException("Unknown hash engine: " + name);
+        }
+    }
+
+    /**
+     * Checks an engine against the JCA reference: plain digests over messages that cover
+     * every padding boundary, and nonce searches across digit-width changes and midstate
+     * chunk boundaries. The result is cached per engine instance.
+     *
+     * @throws IllegalStateException if the engine disagrees with the reference
+     */
+    public static void verify(HashEngine engine) {
+        if (engine == JCA || VERIFIED.containsKey(engine)) {
+            return;
+        }
+
+        Random random = new Random(42);
+        byte[] out = new byte[32];
+        for (int length = 0; length <= 200; length++) {
+            byte[] input = new byte[length];
+            random.nextBytes(input);
+            engine.digest(input, 0, length, out, 0);
+            if (!Arrays.equals(out, JCA.digest(input))) {
+                throw new IllegalStateException(String.format(
+                    "Hash engine '%s' disagrees with JCA SHA-256 for a %d-byte input", engine.getName(), length));
+            }
+        }
+
+        NonceSearcher candidate = engine.newNonceSearcher();
+        NonceSearcher reference = JCA.newNonceSearcher();
+        int[] prefixLengths = {1, 63, 64, 77, 130};
+        for (int prefixLength : prefixLengths) {
+            byte[] prefix = new byte[prefixLength];
+            Arrays.fill(prefix, (byte) 'a');
+            byte[] suffix = ("payload-" + prefixLength).getBytes(StandardCharsets.UTF_8);
+            candidate.reset(prefix, suffix);
+            reference.reset(prefix, suffix);
+
+            for (int zeroBits = 0; zeroBits <= 8; zeroBits += 4) {
+                for (int first : new int[] {0, 95, 9_995, Integer.MAX_VALUE - 40}) {
+                    int expected = reference.search(first, 40, zeroBits);
+                    int actual = candidate.search(first, 40, zeroBits);
+                    if (expected != actual) {
+                        throw new IllegalStateException(String.format(
+                            "Hash engine '%s' nonce search disagrees with JCA SHA-256 (expected %d, got %d)",
+                            engine.getName(), expected, actual));
+                    }
+                }
+            }
+        }
+
+        VERIFIED.put(engine, Boolean.TRUE);
+    }
+}
@@ -0,0 +1,97 @@
+package src.main.java.blockchain.hashing;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Reference engine backed by the JCA {@code SHA-256} {@link MessageDigest}, one instance per
+ * thread. The JCA API cannot restore a saved midstate without cloning, so its searcher hashes
+ * the full message each attempt; it still reuses the buffer and writes no hex.
+ */
+public final class JcaHashEngine implements HashEngine {
+
+    private static final ThreadLocal<MessageDigest> SHA256_DIGEST =
+        ThreadLocal.withInitial(JcaHashEngine::newDigest);
+
+    @Override
+    public String getName() {
+        return "jca";
+    }
+
+    @Override
+    public void digest(byte[] input, int offset, int length, byte[] out, int outOffset) {
+        MessageDigest digest = SHA256_DIGEST.get();
+        digest.reset();
+        digest.update(input, offset, length);
+        try {
+            digest.digest(out, outOffset, 32);
+        } catch (DigestException e) {
+            throw new IllegalStateException("Error calculating SHA-256 hash", e);
+        }
+    }
+
+    @Override
+    public NonceSearcher newNonceSearcher() {
+        return new JcaNonceSearcher();
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Failed to initialize SHA-256", e);
+        }
+    }
+
+    private static final class JcaNonceSearcher implements NonceSearcher {
+        private final MessageDigest digest = newDigest();
+        private final byte[] out = new byte[32];
+        private byte[] prefix = new byte[0];
+        private byte[] suffix = new byte[0];
+        private byte[] message = new byte[0];
+        private int messageLength;
+        private int digitCount = -1;
+
+        @Override
+        public void reset(byte[] prefix, byte[] suffix) {
+            this.prefix = prefix.clone();
+            this.suffix = suffix.clone();
+            this.digitCount = -1;
+        }
+
+        @Override
+        public int search(int firstNonce, int count, int zeroBits) {
+            for (int i = 0; i < count; i++) {
+                int nonce = firstNonce + i;
+                int digits = Sha256.digitCount(nonce);
+                if (digits != digitCount) {
+                    layout(digits);
+                }
+                Sha256.writeDigits(message, prefix.length, digits, nonce);
+
+                digest.update(message, 0, messageLength);
+                try {
+                    digest.digest(out, 0, 32);
+                } catch (DigestException e) {
+                    throw new IllegalStateException("Error calculating SHA-256 hash", e);
+                }
+                if (Sha256.hasLeadingZeroBits(out, zeroBits)) {
+                    return nonce;
+                }
+            }
+            return -1;
+        }
+
+        private void layout(int digits) {
+            messageLength = prefix.length + digits + suffix.length;
+            if (message.length < messageLength) {
+                message = Arrays.copyOf(message, messageLength);
+            }
+            System.arraycopy(prefix, 0, message, 0, prefix.length);
+            System.arraycopy(suffix, 0, message, prefix.length + digits, suffix.length);
+            digitCount = digits;
+        }
+    }
+}
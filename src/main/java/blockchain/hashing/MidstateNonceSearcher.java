@@ -0,0 +1,97 @@
+package src.main.java.blockchain.hashing;
+
+import java.util.Arrays;
+
+/**
+ * Scalar midstate search on the pure-Java compression function.
+ *
+ * The complete 64-byte chunks of the prefix are compressed once into a midstate in
+ * {@link #reset}. Each attempt restores the midstate, writes the nonce digits in place into
+ * a reusable tail buffer (prefix remainder, digits, suffix and padding) and compresses only
+ * the tail chunks. The tail is laid out again only when the number of nonce digits changes.
+ */
+class MidstateNonceSearcher implements NonceSearcher {
+    final int[] midstate = new int[8];
+    private final int[] state = new int[8];
+    private final int[] w = new int[64];
+
+    private byte[] prefixRemainder = new byte[0];
+    private byte[] suffix = new byte[0];
+    private long prefixLength;
+
+    byte[] tail = new byte[128];
+    int tailLength;
+    int digitOffset;
+    int layoutGeneration;
+    private int digitCount = -1;
+
+    @Override
+    public void reset(byte[] prefix, byte[] suffix) {
+        this.suffix = suffix.clone();
+        this.prefixLength = prefix.length;
+
+        System.arraycopy(Sha256.INITIAL_STATE, 0, midstate, 0, 8);
+        int fullChunks = prefix.length >>> 6;
+        for (int i = 0; i < fullChunks; i++) {
+            Sha256.compress(midstate, w, prefix, i << 6);
+        }
+
+        this.prefixRemainder = Arrays.copyOfRange(prefix, fullChunks << 6, prefix.length);
+        this.digitOffset = prefixRemainder.length;
+        this.digitCount = -1;
+    }
+
+    @Override
+    public int search(int firstNonce, int count, int zeroBits) {
+        for (int i = 0; i < count; i++) {
+            int nonce = firstNonce + i;
+            if (test(nonce, zeroBits)) {
+                return nonce;
+            }
+        }
+        return -1;
+    }
+
+    boolean test(int nonce, int zeroBits) {
+        int digits = Sha256.digitCount(nonce);
+        ensureLayout(digits);
+        Sha256.writeDigits(tail, digitOffset, digits, nonce);
+
+        System.arraycopy(midstate, 0, state, 0, 8);
+        for (int off = 0; off < tailLength; off += 64) {
+            Sha256.compress(state, w, tail, off);
+        }
+        return Sha256.hasLeadingZeroBits(state, zeroBits);
+    }
+
+    /**
+     * Makes sure {@link #tail} is laid out for nonces with the given number of digits and
+     * reports whether it had to be rebuilt.
+     */
+    boolean ensureLayout(int digits) {
+        if (digits == digitCount) {
+            return false;
+        }
+        int messageTail = prefixRemainder.length + digits + suffix.length;
+        int padded = ((messageTail + 9 + 63) >>> 6) << 6;
+        if (tail.length < padded) {
+            tail = new byte[padded];
+        } else {
+            Arrays.fill(tail, 0, padded, (byte) 0);
+        }
+
+        System.arraycopy(prefixRemainder, 0, tail, 0, prefixRemainder.length);
+        System.arraycopy(suffix, 0, tail, prefixRemainder.length + digits, suffix.length);
+        tail[messageTail] = (byte) 0x80;
+
+        long bitLength = (prefixLength + digits + suffix.length) * 8;
+        for (int i = 0; i < 8; i++) {
+            tail[padded - 1 - i] = (byte) (bitLength >>> (8 * i));
+        }
+
+        this.tailLength = padded;
+        this.digitCount = digits;
+        this.layoutGeneration++;
+        return true;
+    }
+}
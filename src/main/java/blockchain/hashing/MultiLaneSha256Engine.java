@@ -0,0 +1,191 @@
+package src.main.java.blockchain.hashing;
+
+/**
+ * Mining engine that hashes several consecutive nonce candidates per call.
+ *
+ * The lanes are kept in struct-of-arrays form (one {@code int[]} per working variable,
+ * indexed by lane) and every round runs as a simple loop over the lanes, which is the shape
+ * the JIT's superword pass can turn into SIMD instructions. The JDK Vector API is not used:
+ * it is still an incubator module and not available at this project's language level.
+ * Plain digests are delegated to the scalar unrolled engine.
+ */
+public final class MultiLaneSha256Engine implements HashEngine {
+    public static final int DEFAULT_LANES = 8;
+
+    private final int lanes;
+    private final UnrolledSha256Engine scalar = new UnrolledSha256Engine();
+
+    public MultiLaneSha256Engine() {
+        this(DEFAULT_LANES);
+    }
+
+    public MultiLaneSha256Engine(int lanes) {
+        if (lanes < 1) {
+            throw new IllegalArgumentException("Lane count must be positive");
+        }
+        this.lanes = lanes;
+    }
+
+    public int getLanes() {
+        return lanes;
+    }
+
+    @Override
+    public String getName() {
+        return "multilane";
+    }
+
+    @Override
+    public void digest(byte[] input, int offset, int length, byte[] out, int outOffset) {
+        scalar.digest(input, offset, length, out, outOffset);
+    }
+
+    @Override
+    public NonceSearcher newNonceSearcher() {
+        return new MultiLaneNonceSearcher(lanes);
+    }
+
+    /**
+     * Runs groups of {@code lanes} consecutive nonces through the compression function
+     * together. Groups that straddle a change in digit count fall back to the scalar path.
+     */
+    private static final class MultiLaneNonceSearcher extends MidstateNonceSearcher {
+        private final int lanes;
+        private final int[] ws;
+        private final int[] laneState;
+        private final int[][] vars = new int[8][];
+        private byte[][] laneTails = new byte[0][];
+        private int laneGeneration = -1;
+
+        MultiLaneNonceSearcher(int lanes) {
+            this.lanes = lanes;
+            this.ws = new int[64 * lanes];
+            this.laneState = new int[8 * lanes];
+            for (int k = 0; k < 8; k++) {
+                vars[k] = new int[lanes];
+            }
+        }
+
+        @Override
+        public int search(int firstNonce, int count, int zeroBits) {
+            int i = 0;
+            while (i < count) {
+                int nonce = firstNonce + i;
+                int digits = Sha256.digitCount(nonce);
+                if (count - i >= lanes && digits == Sha256.digitCount(nonce + lanes - 1)) {
+                    int hit = searchLanes(nonce, digits, zeroBits);
+                    if (hit >= 0) {
+                        return hit;
+                    }
+                    i += lanes;
+                } else {
+                    if (test(nonce, zeroBits)) {
+                        return nonce;
+                    }
+                    i++;
+                }
+            }
+            return -1;
+        }
+
+        private int searchLanes(int firstNonce, int digits, int zeroBits) {
+            ensureLayout(digits);
+            if (laneGeneration != layoutGeneration) {
+                copyTailToLanes();
+            }
+
+            for (int l = 0; l < lanes; l++) {
+                Sha256.writeDigits(laneTails[l], digitOffset, digits, firstNonce + l);
+            }
+            for (int k = 0; k < 8; k++) {
+                int word = midstate[k];
+                for (int l = 0; l < lanes; l++) {
+                    laneState[k * lanes + l] = word;
+                }
+            }
+            for (int off = 0; off < tailLength; off += 64) {
+                compressLanes(off);
+            }
+
+            for (int l = 0; l < lanes; l++) {
+                if (laneHasLeadingZeroBits(l, zeroBits)) {
+                    return firstNonce + l;
+                }
+            }
+            return -1;
+        }
+
+        private void copyTailToLanes() {
+            if (laneTails.length != lanes || laneTails[0].length < tailLength) {
+                laneTails = new byte[lanes][tailLength];
+            }
+            for (int l = 0; l < lanes; l++) {
+                System.arraycopy(tail, 0, laneTails[l], 0, tailLength);
+            }
+            laneGeneration = layoutGeneration;
+        }
+
+        private void compressLanes(int off) {
+            final int n = lanes;
+            for (int l = 0; l < n; l++) {
+                byte[] chunk = laneTails[l];
+                for (int i = 0; i < 16; i++) {
+                    int p = off + (i << 2);
+                    ws[i * n + l] = (chunk[p] << 24) | ((chunk[p + 1] & 0xff) << 16)
+                        | ((chunk[p + 2] & 0xff) << 8) | (chunk[p + 3] & 0xff);
+                }
+            }
+            for (int i = 16; i < 64; i++) {
+                int base = i * n;
+                for (int l = 0; l < n; l++) {
+                    int w15 = ws[base - 15 * n + l];
+                    int w2 = ws[base - 2 * n + l];
+                    int s0 = Integer.rotateRight(w15, 7) ^ Integer.rotateRight(w15, 18) ^ (w15 >>> 3);
+                    int s1 = Integer.rotateRight(w2, 17) ^ Integer.rotateRight(w2, 19) ^ (w2 >>> 10);
+                    ws[base + l] = ws[base - 16 * n + l] + s0 + ws[base - 7 * n + l] + s1;
+                }
+            }
+
+            for (int k = 0; k < 8; k++) {
+                System.arraycopy(laneState, k * n, vars[k], 0, n);
+            }
+
+            // Same role rotation as Sha256.compress, done on array references. 64 rounds is a
+            // multiple of 8, so vars[k] holds working variable k again afterwards.
+            int[] a = vars[0], b = vars[1], c = vars[2], d = vars[3];
+            int[] e = vars[4], f = vars[5], g = vars[6], h = vars[7];
+            for (int i = 0; i < 64; i++) {
+                int k = Sha256.K[i];
+                int base = i * n;
+                for (int l = 0; l < n; l++) {
+                    int el = e[l];
+                    int al = a[l];
+                    int t = h[l] + Sha256.sigma1(el) + Sha256.ch(el, f[l], g[l]) + k + ws[base + l];
+                    d[l] += t;
+                    h[l] = t + Sha256.sigma0(al) + Sha256.maj(al, b[l], c[l]);
+                }
+                int[] tmp = h;
+                h = g; g = f; f = e; e = d; d = c; c = b; b = a; a = tmp;
+            }
+
+            for (int k = 0; k < 8; k++) {
+                int[] v = vars[k];
+                int base = k * n;
+                for (int l = 0; l < n; l++) {
+                    laneState[base + l] += v[l];
+                }
+            }
+        }
+
+        private boolean laneHasLeadingZeroBits(int lane, int zeroBits) {
+            int fullWords = zeroBits >>> 5;
+            for (int k = 0; k < fullWords; k++) {
+                if (laneState[k * lanes + lane] != 0) {
+                    return false;
+                }
+            }
+            int remaining = zeroBits & 31;
+            return remaining == 0 || (laneState[fullWords * lanes + lane] >>> (32 - remaining)) == 0;
+        }
+    }
+}
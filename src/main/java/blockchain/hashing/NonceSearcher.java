@@ -0,0 +1,24 @@
+package src.main.java.blockchain.hashing;
+
+/**
+ * Per-thread proof-of-work search over messages of the form {@code prefix + nonce + suffix},
+ * where the nonce is written as decimal digits. Implementations encode the fixed parts once
+ * per block and check difficulty on the raw digest, so losing nonces allocate nothing.
+ *
+ * Instances are not thread-safe.
+ */
+public interface NonceSearcher {
+
+    /**
+     * Prepares the searcher for a new message. The arrays are copied or consumed before
+     * this method returns, so callers may reuse them.
+     */
+    void reset(byte[] prefix, byte[] suffix);
+
+    /**
+     * Tries the non-negative nonces {@code firstNonce .. firstNonce + count - 1} in order and
+     * returns the first one whose digest starts with at least {@code zeroBits} zero bits,
+     * or {@code -1} if none does.
+     */
+    int search(int firstNonce, int count, int zeroBits);
+}
@@ -0,0 +1,151 @@
+package src.main.java.blockchain.hashing;
+
+/**
+ * Pure-Java SHA-256 building blocks shared by the midstate-based engines.
+ *
+ * {@link #compress} is unrolled eight rounds at a time: instead of shifting the eight
+ * working variables after every round, each round of the group names them in rotated order,
+ * so after eight rounds they are back in place without any moves.
+ */
+final class Sha256 {
+    static final int[] K = {
+        0x428a2f98, 0x71374491, 0xb5c0fbcf, 0xe9b5dba5, 0x3956c25b, 0x59f111f1, 0x923f82a4, 0xab1c5ed5,
+        0xd807aa98, 0x12835b01, 0x243185be, 0x550c7dc3, 0x72be5d74, 0x80deb1fe, 0x9bdc06a7, 0xc19bf174,
+        0xe49b69c1, 0xefbe4786, 0x0fc19dc6, 0x240ca1cc, 0x2de92c6f, 0x4a7484aa, 0x5cb0a9dc, 0x76f988da,
+        0x983e5152, 0xa831c66d, 0xb00327c8, 0xbf597fc7, 0xc6e00bf3, 0xd5a79147, 0x06ca6351, 0x14292967,
+        0x27b70a85, 0x2e1b2138, 0x4d2c6dfc, 0x53380d13, 0x650a7354, 0x766a0abb, 0x81c2c92e, 0x92722c85,
+        0xa2bfe8a1, 0xa81a664b, 0xc24b8b70, 0xc76c51a3, 0xd192e819, 0xd6990624, 0xf40e3585, 0x106aa070,
+        0x19a4c116, 0x1e376c08, 0x2748774c, 0x34b0bcb5, 0x391c0cb3, 0x4ed8aa4a, 0x5b9cca4f, 0x682e6ff3,
+        0x748f82ee, 0x78a5636f, 0x84c87814, 0x8cc70208, 0x90befffa, 0xa4506ceb, 0xbef9a3f7, 0xc67178f2
+    };
+
+    static final int[] INITIAL_STATE = {
+        0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+
+    private Sha256() {
+    }
+
+    /**
+     * Compresses the 64-byte chunk at {@code chunk[off]} into {@code h}, using {@code w}
+     * (at least 64 ints) as message schedule scratch space.
+     */
+    static void compress(int[] h, int[] w, byte[] chunk, int off) {
+        for (int i = 0; i < 16; i++) {
+            int p = off + (i << 2);
+            w[i] = (chunk[p] << 24) | ((chunk[p + 1] & 0xff) << 16)
+                | ((chunk[p + 2] & 0xff) << 8) | (chunk[p + 3] & 0xff);
+        }
+        for (int i = 16; i < 64; i++) {
+            int w15 = w[i - 15];
+            int w2 = w[i - 2];
+            int s0 = Integer.rotateRight(w15, 7) ^ Integer.rotateRight(w15, 18) ^ (w15 >>> 3);
+            int s1 = Integer.rotateRight(w2, 17) ^ Integer.rotateRight(w2, 19) ^ (w2 >>> 10);
+            w[i] = w[i - 16] + s0 + w[i - 7] + s1;
+        }
+
+        int a = h[0], b = h[1], c = h[2], d = h[3], e = h[4], f = h[5], g = h[6], hh = h[7];
+        int t;
+        for (int i = 0; i < 64; i += 8) {
+            t = hh + sigma1(e) + ch(e, f, g) + K[i] + w[i];
+            d += t;
+            hh = t + sigma0(a) + maj(a, b, c);
+
+            t = g + sigma1(d) + ch(d, e, f) + K[i + 1] + w[i + 1];
+            c += t;
+            g = t + sigma0(hh) + maj(hh, a, b);
+
+            t = f + sigma1(c) + ch(c, d, e) + K[i + 2] + w[i + 2];
+            b += t;
+            f = t + sigma0(g) + maj(g, hh, a);
+
+            t = e + sigma1(b) + ch(b, c, d) + K[i + 3] + w[i + 3];
+            a += t;
+            e = t + sigma0(f) + maj(f, g, hh);
+
+            t = d + sigma1(a) + ch(a, b, c) + K[i + 4] + w[i + 4];
+            hh += t;
+            d = t + sigma0(e) + maj(e, f, g);
+
+            t = c + sigma1(hh) + ch(hh, a, b) + K[i + 5] + w[i + 5];
+            g += t;
+            c = t + sigma0(d) + maj(d, e, f);
+
+            t = b + sigma1(g) + ch(g, hh, a) + K[i + 6] + w[i + 6];
+            f += t;
+            b = t + sigma0(c) + maj(c, d, e);
+
+            t = a + sigma1(f) + ch(f, g, hh) + K[i + 7] + w[i + 7];
+            e += t;
+            a = t + sigma0(b) + maj(b, c, d);
+        }
+
+        h[0] += a; h[1] += b; h[2] += c; h[3] += d;
+        h[4] += e; h[5] += f; h[6] += g; h[7] += hh;
+    }
+
+    static int sigma0(int x) {
+        return Integer.rotateRight(x, 2) ^ Integer.rotateRight(x, 13) ^ Integer.rotateRight(x, 22);
+    }
+
+    static int sigma1(int x) {
+        return Integer.rotateRight(x, 6) ^ Integer.rotateRight(x, 11) ^ Integer.rotateRight(x, 25);
+    }
+
+    static int ch(int x, int y, int z) {
+        return (x & y) ^ (~x & z);
+    }
+
+    static int maj(int x, int y, int z) {
+        return (x & y) ^ (x & z) ^ (y & z);
+    }
+
+    static void writeState(int[] state, byte[] out, int outOffset) {
+        for (int i = 0; i < 8; i++) {
+            int v = state[i];
+            int p = outOffset + (i << 2);
+            out[p] = (byte) (v >>> 24);
+            out[p + 1] = (byte) (v >>> 16);
+            out[p + 2] = (byte) (v >>> 8);
+            out[p + 3] = (byte) v;
+        }
+    }
+
+    static boolean hasLeadingZeroBits(int[] state, int zeroBits) {
+        int fullWords = zeroBits >>> 5;
+        for (int i = 0; i < fullWords; i++) {
+            if (state[i] != 0) {
+                return false;
+            }
+        }
+        int remaining = zeroBits & 31;
+        return remaining == 0 || (state[fullWords] >>> (32 - remaining)) == 0;
+    }
+
+    static boolean hasLeadingZeroBits(byte[] digest, int zeroBits) {
+        int fullBytes = zeroBits >>> 3;
+        for (int i = 0; i < fullBytes; i++) {
+            if (digest[i] != 0) {
+                return false;
+            }
+        }
+        int remaining = zeroBits & 7;
+        return remaining == 0 || ((digest[fullBytes] & 0xff) >>> (8 - remaining)) == 0;
+    }
+
+    static int digitCount(int value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    static void writeDigits(byte[] buffer, int offset, int digits, int value) {
+        for (int pos = offset + digits - 1; pos >= offset; pos--) {
+            buffer[pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package src.main.java.blockchain.hashing;
+
+/**
+ * Allocation-free pure-Java SHA-256 on an {@code int[]} state with an unrolled compression
+ * function. Mining uses a midstate over the fixed header prefix.
+ */
+public final class UnrolledSha256Engine implements HashEngine {
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    @Override
+    public String getName() {
+        return "unrolled";
+    }
+
+    @Override
+    public void digest(byte[] input, int offset, int length, byte[] out, int outOffset) {
+        Scratch scratch = SCRATCH.get();
+        int[] state = scratch.state;
+        System.arraycopy(Sha256.INITIAL_STATE, 0, state, 0, 8);
+
+        int fullChunks = length >>> 6;
+        for (int i = 0; i < fullChunks; i++) {
+            Sha256.compress(state, scratch.w, input, offset + (i << 6));
+        }
+
+        // Final one or two chunks: remaining bytes, 0x80 terminator, zero fill, bit length
+        byte[] last = scratch.last;
+        int remaining = length - (fullChunks << 6);
+        int lastLength = remaining + 9 <= 64 ? 64 : 128;
+        System.arraycopy(input, offset + (fullChunks << 6), last, 0, remaining);
+        last[remaining] = (byte) 0x80;
+        for (int i = remaining + 1; i < lastLength - 8; i++) {
+            last[i] = 0;
+        }
+        long bitLength = (long) length * 8;
+        for (int i = 0; i < 8; i++) {
+            last[lastLength - 1 - i] = (byte) (bitLength >>> (8 * i));
+        }
+        for (int off = 0; off < lastLength; off += 64) {
+            Sha256.compress(state, scratch.w, last, off);
+        }
+
+        Sha256.writeState(state, out, outOffset);
+    }
+
+    @Override
+    public NonceSearcher newNonceSearcher() {
+        return new MidstateNonceSearcher();
+    }
+
+    private static final class Scratch {
+        final int[] state = new int[8];
+        final int[] w = new int[64];
+        final byte[] last = new byte[128];
+    }
+}
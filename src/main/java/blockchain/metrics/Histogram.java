@@ -0,0 +1,189 @@
+package src.main.java.blockchain.metrics;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent log-linear histogram of non-negative {@code long} values, in the style of
+ * HdrHistogram.
+ *
+ * Values below {@value #SUB_BUCKETS} are counted exactly. Above that, every power of two is
+ * split into {@value #SUB_BUCKETS} linear sub-buckets, so a recorded value is off by at most
+ * about 3% whatever its magnitude. All buckets are allocated up front, so {@link #record(long)}
+ * is a few atomic updates and never allocates.
+ */
+public final class Histogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = 64 - SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT * SUB_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one value. Negative values are recorded as {@code 0}.
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(indexOf(v));
+        count.incrementAndGet();
+        sum.addAndGet(v);
+        long current = max.get();
+        while (v > current && !max.compareAndSet(current, v)) {
+            current = max.get();
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * Returns the value at the given percentile (0..100), as the upper bound of the bucket it
+     * falls into and never above the recorded maximum. {@code 0} if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValueAt(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Clears all recorded values. Values recorded concurrently with a reset may be partly lost.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * A histogram with the same recorded values
+     */
+    public Histogram copy() {
+        Histogram copy = new Histogram();
+        // The copy is not shared yet, so plain writes of the non-empty buckets are enough
+        for (int i = 0; i < counts.length(); i++) {
+            long bucketCount = counts.get(i);
+            if (bucketCount != 0) {
+                copy.counts.setPlain(i, bucketCount);
+            }
+        }
+        copy.count.set(count.get());
+        copy.sum.set(sum.get());
+        copy.max.set(max.get());
+        return copy;
+    }
+
+    /**
+     * Compact encoding for storage: the count, sum and maximum, then only the non-empty buckets,
+     * each as the distance from the previous one and its count, in variable-length integers
+     */
+    public byte[] toByteArray() {
+        ByteBuffer buffer = ByteBuffer.allocate(3 * 10 + counts.length() * 2 * 10);
+        putVarLong(buffer, count.get());
+        putVarLong(buffer, sum.get());
+        putVarLong(buffer, max.get());
+        int previous = -1;
+        for (int i = 0; i < counts.length(); i++) {
+            long bucketCount = counts.get(i);
+            if (bucketCount != 0) {
+                putVarLong(buffer, i - previous);
+                putVarLong(buffer, bucketCount);
+                previous = i;
+            }
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * Decodes {@link #toByteArray()}
+     *
+     * @throws IllegalArgumentException if the bytes are not an encoded histogram
+     */
+    public static Histogram fromByteArray(byte[] bytes) {
+        Histogram histogram = new Histogram();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try {
+            histogram.count.set(getVarLong(buffer));
+            histogram.sum.set(getVarLong(buffer));
+            histogram.max.set(getVarLong(buffer));
+            int index = -1;
+            while (buffer.hasRemaining()) {
+                index += (int) getVarLong(buffer);
+                histogram.counts.set(index, getVarLong(buffer));
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed histogram encoding", e);
+        }
+        return histogram;
+    }
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Variable-length integer is too long");
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int bucket = exponent - SUB_BUCKET_BITS + 1;
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return bucket * SUB_BUCKETS + subBucket;
+    }
+
+    private static long highestValueAt(int index) {
+        int bucket = index >>> SUB_BUCKET_BITS;
+        long subBucket = index & (SUB_BUCKETS - 1);
+        if (bucket == 0) {
+            return subBucket;
+        }
+        int shift = bucket - 1;
+        long lowest = (SUB_BUCKETS + subBucket) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,98 @@
+package src.main.java.blockchain.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Mining, persistence and validation metrics of one blockchain, optionally published as
+ * JMX MBeans under {@code blockchain:type=<Mining|Persistence|Validation>,name=<name>}.
+ */
+public class MetricsRegistry {
+    public static final String JMX_DOMAIN = "blockchain";
+
+    private final String name;
+    private final MiningMetrics mining = new MiningMetrics();
+    private final PersistenceMetrics persistence = new PersistenceMetrics();
+    private final ValidationMetrics validation = new ValidationMetrics();
+    private final List<ObjectName> registered = new ArrayList<>();
+
+    public MetricsRegistry() {
+        this("default");
+    }
+
+    /**
+     * @param name value of the {@code name} key in the MBean object names
+     */
+    public MetricsRegistry(String name) {
+        this.name = name;
+    }
+
+    public String getName() { return name; }
+    public MiningMetrics mining() { return mining; }
+    public PersistenceMetrics persistence() { return persistence; }
+    public ValidationMetrics validation() { return validation; }
+
+    /**
+     * Registers the MBeans with the platform MBean server. Does nothing if already registered.
+     */
+    public synchronized void registerMBeans() {
+        if (!registered.isEmpty()) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            register(server, "Mining", mining);
+            register(server, "Persistence", persistence);
+            register(server, "Validation", validation);
+        } catch (JMException e) {
+            unregisterMBeans();
+            throw new RuntimeException("Failed to register metrics MBeans for " + name, e);
+        }
+    }
+
+    public synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : registered) {
+            try {
+                server.unregisterMBean(objectName);
+            } catch (JMException e) {
+                // Already gone; nothing left to clean up
+            }
+        }
+        registered.clear();
+    }
+
+    public synchronized boolean isRegistered() {
+        return !registered.isEmpty();
+    }
+
+    /**
+     * Multi-line human-readable summary of the current values
+     */
+    public String summary() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("Mining: %,d blocks, %,.0f H/s, latency mean %.1f ms / p50 %.1f ms / p99 %.1f ms, %,.0f attempts per block%n",
+            mining.getBlocksMined(), mining.getTotalHashrate(), mining.getBlockLatencyMeanMillis(),
+            mining.getBlockLatencyP50Millis(), mining.getBlockLatencyP99Millis(), mining.getAttemptsPerBlockMean()));
+        if (mining.getQueueWaitHistogram().getCount() > 0) {
+            out.append(String.format("Mining queue wait: p50 %.2f ms / p99 %.2f ms%n",
+                mining.getQueueWaitP50Millis(), mining.getQueueWaitP99Millis()));
+        }
+        out.append(String.format("Persistence: %,d blocks saved (p99 %.2f ms per call), %,d loaded (p99 %.2f ms), connection wait p99 %.2f ms%n",
+            persistence.getBlocksSaved(), persistence.getSaveLatencyP99Millis(), persistence.getBlocksLoaded(),
+            persistence.getLoadLatencyP99Millis(), persistence.getConnectionWaitP99Millis()));
+        out.append(String.format("Validation: %,d blocks in %,d runs, %,.0f blocks/s",
+            validation.getBlocksValidated(), validation.getValidationRuns(), validation.getThroughput()));
+        return out.toString();
+    }
+
+    private void register(MBeanServer server, String type, Object mbean) throws JMException {
+        ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+        server.registerMBean(mbean, objectName);
+        registered.add(objectName);
+    }
+}
@@ -0,0 +1,128 @@
+package src.main.java.blockchain.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hashrate, block latency, attempts per block and, for chains mining on a shared
+ * {@code MiningService}, how long blocks wait for their first worker.
+ *
+ * Workers report their attempts and search time per chunk of nonces through
+ * {@link #recordWork(int, long, long)}; each worker owns a slot padded onto its own cache line,
+ * so concurrent workers do not contend. Whoever completes a block reports it once through
+ * {@link #recordBlock(long, long)}.
+ */
+public class MiningMetrics implements MiningMetricsMBean {
+    /** Worker slots; higher worker numbers share slots modulo this count */
+    public static final int MAX_WORKERS = 64;
+
+    // 8 longs = 64 bytes between slots of adjacent workers
+    private static final int SLOT_STRIDE = 8;
+
+    private final AtomicLongArray workerAttempts = new AtomicLongArray(MAX_WORKERS * SLOT_STRIDE);
+    private final AtomicLongArray workerNanos = new AtomicLongArray(MAX_WORKERS * SLOT_STRIDE);
+    private final AtomicInteger workersSeen = new AtomicInteger();
+    private final LongAdder blocksMined = new LongAdder();
+    private final LongAdder blockAttempts = new LongAdder();
+    private final LongAdder blockNanos = new LongAdder();
+    private final Histogram blockLatencyNanos = new Histogram();
+    private final Histogram attemptsPerBlock = new Histogram();
+    private final Histogram queueWaitNanos = new Histogram();
+
+    /**
+     * Records {@code attempts} hashes computed by {@code worker} in {@code nanos} of search time
+     */
+    public void recordWork(int worker, long attempts, long nanos) {
+        int slot = Math.floorMod(worker, MAX_WORKERS);
+        workerAttempts.addAndGet(slot * SLOT_STRIDE, attempts);
+        workerNanos.addAndGet(slot * SLOT_STRIDE, nanos);
+        if (slot >= workersSeen.get()) {
+            workersSeen.accumulateAndGet(slot + 1, Math::max);
+        }
+    }
+
+    /**
+     * Records a mined block that took {@code nanos} and {@code attempts} hashes in total
+     */
+    public void recordBlock(long nanos, long attempts) {
+        blocksMined.increment();
+        blockAttempts.add(attempts);
+        blockNanos.add(nanos);
+        blockLatencyNanos.record(nanos);
+        attemptsPerBlock.record(attempts);
+    }
+
+    /**
+     * Records the time a block waited between being submitted and its first nonce chunk
+     * starting on a worker
+     */
+    public void recordQueueWait(long nanos) {
+        queueWaitNanos.record(nanos);
+    }
+
+    public Histogram getBlockLatencyHistogram() { return blockLatencyNanos; }
+    public Histogram getQueueWaitHistogram() { return queueWaitNanos; }
+    public Histogram getAttemptsPerBlockHistogram() { return attemptsPerBlock; }
+
+    @Override
+    public long getBlocksMined() { return blocksMined.sum(); }
+
+    @Override
+    public long getTotalAttempts() { return blockAttempts.sum(); }
+
+    @Override
+    public double getTotalHashrate() {
+        long nanos = blockNanos.sum();
+        return nanos == 0 ? 0 : blockAttempts.sum() * 1e9 / nanos;
+    }
+
+    @Override
+    public double[] getPerThreadHashrate() {
+        double[] rates = new double[workersSeen.get()];
+        for (int i = 0; i < rates.length; i++) {
+            long nanos = workerNanos.get(i * SLOT_STRIDE);
+            rates[i] = nanos == 0 ? 0 : workerAttempts.get(i * SLOT_STRIDE) * 1e9 / nanos;
+        }
+        return rates;
+    }
+
+    @Override
+    public double getBlockLatencyMeanMillis() { return blockLatencyNanos.getMean() / 1e6; }
+
+    @Override
+    public double getBlockLatencyP50Millis() { return blockLatencyNanos.getValueAtPercentile(50) / 1e6; }
+
+    @Override
+    public double getBlockLatencyP99Millis() { return blockLatencyNanos.getValueAtPercentile(99) / 1e6; }
+
+    @Override
+    public double getBlockLatencyMaxMillis() { return blockLatencyNanos.getMax() / 1e6; }
+
+    @Override
+    public double getAttemptsPerBlockMean() { return attemptsPerBlock.getMean(); }
+
+    @Override
+    public long getAttemptsPerBlockP99() { return attemptsPerBlock.getValueAtPercentile(99); }
+
+    @Override
+    public double getQueueWaitP50Millis() { return queueWaitNanos.getValueAtPercentile(50) / 1e6; }
+
+    @Override
+    public double getQueueWaitP99Millis() { return queueWaitNanos.getValueAtPercentile(99) / 1e6; }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < workerAttempts.length(); i++) {
+            workerAttempts.set(i, 0);
+            workerNanos.set(i, 0);
+        }
+        workersSeen.set(0);
+        blocksMined.reset();
+        blockAttempts.reset();
+        blockNanos.reset();
+        blockLatencyNanos.reset();
+        attemptsPerBlock.reset();
+        queueWaitNanos.reset();
+    }
+}
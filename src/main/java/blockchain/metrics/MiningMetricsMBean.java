@@ -0,0 +1,29 @@
+package src.main.java.blockchain.metrics;
+
+/**
+ * JMX view of {@link MiningMetrics}
+ */
+public interface MiningMetricsMBean {
+    long getBlocksMined();
+    long getTotalAttempts();
+
+    /** Hashes per second over the time spent mining blocks */
+    double getTotalHashrate();
+
+    /** Hashes per second of each mining worker while it was searching */
+    double[] getPerThreadHashrate();
+
+    double getBlockLatencyMeanMillis();
+    double getBlockLatencyP50Millis();
+    double getBlockLatencyP99Millis();
+    double getBlockLatencyMaxMillis();
+
+    double getAttemptsPerBlockMean();
+    long getAttemptsPerBlockP99();
+
+    /** Wait for the first worker on a shared mining service; 0 when mining on an own pool */
+    double getQueueWaitP50Millis();
+    double getQueueWaitP99Millis();
+
+    void reset();
+}
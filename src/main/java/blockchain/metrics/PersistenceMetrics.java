@@ -0,0 +1,81 @@
+package src.main.java.blockchain.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency of block store writes and reads, and the time spent waiting for a pooled
+ * connection. A save call that writes a batch is recorded once, with its block count.
+ */
+public class PersistenceMetrics implements PersistenceMetricsMBean {
+    private final LongAdder blocksSaved = new LongAdder();
+    private final LongAdder blocksLoaded = new LongAdder();
+    private final LongAdder connectionTimeouts = new LongAdder();
+    private final Histogram saveNanos = new Histogram();
+    private final Histogram loadNanos = new Histogram();
+    private final Histogram connectionWaitNanos = new Histogram();
+
+    public void recordSave(int blocks, long nanos) {
+        blocksSaved.add(blocks);
+        saveNanos.record(nanos);
+    }
+
+    public void recordLoad(long nanos) {
+        blocksLoaded.increment();
+        loadNanos.record(nanos);
+    }
+
+    public void recordConnectionWait(long nanos) {
+        connectionWaitNanos.record(nanos);
+    }
+
+    public void recordConnectionTimeout() {
+        connectionTimeouts.increment();
+    }
+
+    public Histogram getSaveLatencyHistogram() { return saveNanos; }
+    public Histogram getLoadLatencyHistogram() { return loadNanos; }
+    public Histogram getConnectionWaitHistogram() { return connectionWaitNanos; }
+
+    @Override
+    public long getBlocksSaved() { return blocksSaved.sum(); }
+
+    @Override
+    public long getSaveCalls() { return saveNanos.getCount(); }
+
+    @Override
+    public double getSaveLatencyMeanMillis() { return saveNanos.getMean() / 1e6; }
+
+    @Override
+    public double getSaveLatencyP99Millis() { return saveNanos.getValueAtPercentile(99) / 1e6; }
+
+    @Override
+    public long getBlocksLoaded() { return blocksLoaded.sum(); }
+
+    @Override
+    public double getLoadLatencyMeanMillis() { return loadNanos.getMean() / 1e6; }
+
+    @Override
+    public double getLoadLatencyP99Millis() { return loadNanos.getValueAtPercentile(99) / 1e6; }
+
+    @Override
+    public long getConnectionAcquisitions() { return connectionWaitNanos.getCount(); }
+
+    @Override
+    public double getConnectionWaitMeanMillis() { return connectionWaitNanos.getMean() / 1e6; }
+
+    @Override
+    public double getConnectionWaitP99Millis() { return connectionWaitNanos.getValueAtPercentile(99) / 1e6; }
+
+    @Override
+    public long getConnectionTimeouts() { return connectionTimeouts.sum(); }
+
+    @Override
+    public void reset() {
+        blocksSaved.reset();
+        blocksLoaded.reset();
+        connectionTimeouts.reset();
+        saveNanos.reset();
+        loadNanos.reset();
+        connectionWaitNanos.reset();
+    }
+}
@@ -0,0 +1,22 @@
+package src.main.java.blockchain.metrics;
+
+/**
+ * JMX view of {@link PersistenceMetrics}
+ */
+public interface PersistenceMetricsMBean {
+    long getBlocksSaved();
+    long getSaveCalls();
+    double getSaveLatencyMeanMillis();
+    double getSaveLatencyP99Millis();
+
+    long getBlocksLoaded();
+    double getLoadLatencyMeanMillis();
+    double getLoadLatencyP99Millis();
+
+    long getConnectionAcquisitions();
+    double getConnectionWaitMeanMillis();
+    double getConnectionWaitP99Millis();
+    long getConnectionTimeouts();
+
+    void reset();
+}
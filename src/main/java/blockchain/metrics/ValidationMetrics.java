@@ -0,0 +1,45 @@
+package src.main.java.blockchain.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Number of blocks checked by chain validation and how fast they were checked
+ */
+public class ValidationMetrics implements ValidationMetricsMBean {
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder blocks = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private volatile double lastRunThroughput;
+
+    public void recordRun(int blocksChecked, long runNanos) {
+        runs.increment();
+        blocks.add(blocksChecked);
+        nanos.add(runNanos);
+        if (blocksChecked > 0 && runNanos > 0) {
+            lastRunThroughput = blocksChecked * 1e9 / runNanos;
+        }
+    }
+
+    @Override
+    public long getValidationRuns() { return runs.sum(); }
+
+    @Override
+    public long getBlocksValidated() { return blocks.sum(); }
+
+    @Override
+    public double getThroughput() {
+        long total = nanos.sum();
+        return total == 0 ? 0 : blocks.sum() * 1e9 / total;
+    }
+
+    @Override
+    public double getLastRunThroughput() { return lastRunThroughput; }
+
+    @Override
+    public void reset() {
+        runs.reset();
+        blocks.reset();
+        nanos.reset();
+        lastRunThroughput = 0;
+    }
+}
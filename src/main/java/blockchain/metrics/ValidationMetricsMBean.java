@@ -0,0 +1,17 @@
+package src.main.java.blockchain.metrics;
+
+/**
+ * JMX view of {@link ValidationMetrics}
+ */
+public interface ValidationMetricsMBean {
+    long getValidationRuns();
+    long getBlocksValidated();
+
+    /** Blocks per second over all validation runs */
+    double getThroughput();
+
+    /** Blocks per second of the most recent run that checked at least one block */
+    double getLastRunThroughput();
+
+    void reset();
+}
@@ -0,0 +1,31 @@
+package src.main.java.blockchain.mining;
+
+import src.main.java.blockchain.core.Block;
+
+/**
+ * Something that searches the nonce space of a block on several threads: a chain's own
+ * {@link MiningPool} or its share of a process-wide {@link MiningService}.
+ */
+public interface BlockMiner {
+
+    /**
+     * Mines the block to {@code zeroBits} leading zero bits and returns the winning nonce. If
+     * the 31-bit nonce space of the block's timestamp is exhausted the timestamp is rolled
+     * forward, in which case the block's timestamp is updated to the one the nonce belongs to.
+     */
+    default int mineToBits(Block block, int zeroBits) {
+        return mineToBits(block, zeroBits, new MiningJob());
+    }
+
+    /**
+     * Mines the block like {@link #mineToBits(Block, int)} under the given job, which can
+     * cancel it, bound it by a deadline and receive its progress
+     *
+     * @throws java.util.concurrent.CancellationException if the job was cancelled or expired
+     *         before a nonce was found; every worker has stopped searching by then
+     */
+    int mineToBits(Block block, int zeroBits, MiningJob job);
+
+    /** Number of threads that may search one block at the same time. */
+    int getThreadCount();
+}
@@ -0,0 +1,167 @@
+package src.main.java.blockchain.mining;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handle on one mining call that can cancel it, bound it by a deadline and observe it.
+ *
+ * Pass a job to {@link BlockMiner#mineToBits(src.main.java.blockchain.core.Block, int, MiningJob)},
+ * {@code Block.mineToBits} or {@code Blockchain.addBlock}. Once the job is cancelled from any
+ * thread, or its deadline passes, the call stops its workers after the nonce chunk they are
+ * searching, a few milliseconds of work, and throws a {@link CancellationException}. The block
+ * is then left unmined. A job is used for one call only.
+ *
+ * The progress listener is called on the thread that is mining or waiting for the workers, at
+ * most once per interval, so a slow listener delays noticing a solution but never the workers.
+ */
+public final class MiningJob {
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    /**
+     * Receives the progress of a running job
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * @param attempts hashes tried so far for this job
+         * @param hashesPerSecond attempts divided by the time since the job started
+         */
+        void onProgress(long attempts, double hashesPerSecond);
+    }
+
+    private long deadlineNanos = NO_DEADLINE;
+    private ProgressListener listener;
+    private long progressIntervalNanos;
+
+    private volatile boolean cancelled;
+    private volatile Runnable canceller;
+    private boolean started;
+    private long startNanos;
+    private long nextReportNanos;
+
+    /**
+     * Stops the job once {@code timeout} has passed, counted from this call rather than from
+     * the start of mining, so time spent waiting for the chain's write lock counts against it.
+     */
+    public MiningJob withTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Timeout cannot be negative");
+        }
+        long nanos = unit.toNanos(timeout);
+        // Timeouts of centuries would overflow the clock; they are no deadline at all
+        this.deadlineNanos = (nanos < Long.MAX_VALUE / 2) ? System.nanoTime() + nanos : NO_DEADLINE;
+        return this;
+    }
+
+    /**
+     * Reports progress to {@code listener} every {@code intervalMillis} while the job runs
+     */
+    public MiningJob withProgressListener(ProgressListener listener, long intervalMillis) {
+        if (intervalMillis < 1) {
+            throw new IllegalArgumentException("Progress interval must be positive");
+        }
+        this.listener = listener;
+        this.progressIntervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        return this;
+    }
+
+    /**
+     * Stops the job; a no-op once it has finished. May be called from any thread, also before
+     * the job has started, in which case mining fails at once.
+     */
+    public void cancel() {
+        cancelled = true;
+        Runnable current = canceller;
+        if (current != null) {
+            current.run();
+        }
+    }
+
+    public boolean isCancelled() { return cancelled; }
+
+    /** Whether the job has a deadline and it has passed. */
+    public boolean isExpired() {
+        return deadlineNanos != NO_DEADLINE && System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /**
+     * Reports progress if it is due and stops the job if it was cancelled or has expired.
+     * Called by miners between nonce chunks, on the thread that runs the job.
+     *
+     * @throws CancellationException if the job was cancelled or its deadline has passed
+     */
+    public void poll(long attempts) {
+        throwIfStopped();
+        if (listener != null) {
+            long now = System.nanoTime();
+            if (now - nextReportNanos >= 0) {
+                nextReportNanos = now + progressIntervalNanos;
+                long elapsed = Math.max(1, now - startNanos);
+                listener.onProgress(attempts, attempts * 1e9 / elapsed);
+            }
+        }
+    }
+
+    /**
+     * Marks the job as running on the calling thread, which polls it with {@link #poll(long)}.
+     * For miners that search on the calling thread; see {@link #start(Runnable)}.
+     *
+     * @throws IllegalStateException if the job has been used before
+     * @throws CancellationException if the job was cancelled or has expired already
+     */
+    public void start() {
+        start(null);
+    }
+
+    /**
+     * Marks the job as running. {@code onCancel}, if any, is run by {@link #cancel()} to wake
+     * the mining call; it must be safe to run more than once and after the call has ended.
+     *
+     * @throws IllegalStateException if the job has been used before
+     * @throws CancellationException if the job was cancelled or has expired already
+     */
+    void start(Runnable onCancel) {
+        synchronized (this) {
+            if (started) {
+                throw new IllegalStateException("A mining job can only be used once");
+            }
+            started = true;
+        }
+        startNanos = System.nanoTime();
+        nextReportNanos = startNanos + progressIntervalNanos;
+        canceller = onCancel;
+        // Checked after the canceller is set, so a concurrent cancel() is seen by one or the other
+        throwIfStopped();
+    }
+
+    /** Ends the job, so a later {@link #cancel()} no longer reaches the mining call. */
+    void finish() {
+        canceller = null;
+    }
+
+    /**
+     * Time the waiting thread may block before it must poll again for the deadline or the next
+     * progress report, or {@link Long#MAX_VALUE} if only {@link #cancel()} can end the wait
+     */
+    long nanosUntilNextPoll() {
+        long wait = Long.MAX_VALUE;
+        long now = System.nanoTime();
+        if (deadlineNanos != NO_DEADLINE) {
+            wait = Math.max(0, deadlineNanos - now);
+        }
+        if (listener != null) {
+            wait = Math.min(wait, Math.max(0, nextReportNanos - now));
+        }
+        return wait;
+    }
+
+    private void throwIfStopped() {
+        if (cancelled) {
+            throw new CancellationException("Mining was cancelled");
+        }
+        if (isExpired()) {
+            throw new CancellationException("Mining deadline passed");
+        }
+    }
+}
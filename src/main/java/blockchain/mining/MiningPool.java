@@ -1,50 +1,131 @@
 package src.main.java.blockchain.mining;
 
 import src.main.java.blockchain.core.Block;
+import src.main.java.blockchain.hashing.HashEngine;
+import src.main.java.blockchain.hashing.HashEngines;
+import src.main.java.blockchain.hashing.NonceSearcher;
+import src.main.java.blockchain.metrics.MiningMetrics;
+import src.main.java.blockchain.utils.StringUtil;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Thread pool for concurrent blockchain mining operations
+ * Thread pool for concurrent blockchain mining operations.
+ *
+ * A pool is meant to live as long as its owner (normally a {@code Blockchain}) and is reused
+ * for every block: worker threads and their per-thread {@link NonceSearcher} state survive
+ * across rounds, so the nonce loop stays hot in the JIT. Rounds are serialized, and a round
+ * only returns once every task of it has stopped, so losers never overlap the next block.
  */
-public class MiningPool {
+public class MiningPool implements BlockMiner {
     private final int threadCount;
+    private final HashEngine hashEngine;
+    private final ThreadLocal<Worker> workers;
+    private final AtomicInteger workerSequence = new AtomicInteger();
     private final ExecutorService executorService;
-    private final AtomicBoolean solutionFound = new AtomicBoolean(false);
-    private final AtomicInteger winningNonce = new AtomicInteger(0);
+    private final LongAdder totalAttempts = new LongAdder();
+    private final MiningMetrics metrics;
 
     public MiningPool(int threadCount) {
+        this(threadCount, HashEngines.defaultEngine());
+    }
+
+    public MiningPool(int threadCount, HashEngine hashEngine) {
+        this(threadCount, hashEngine, new MiningMetrics());
+    }
+
+    /**
+     * @param metrics receives per-worker attempts and search time for every chunk, and the
+     *                latency and attempts of every block mined on this pool
+     */
+    public MiningPool(int threadCount, HashEngine hashEngine, MiningMetrics metrics) {
         this.threadCount = Math.max(1, threadCount);
-        this.executorService = Executors.newFixedThreadPool(this.threadCount);
+        this.hashEngine = hashEngine;
+        this.metrics = metrics;
+        this.workers = ThreadLocal.withInitial(() ->
+            new Worker(workerSequence.getAndIncrement(), hashEngine.newNonceSearcher()));
+        this.executorService = Executors.newFixedThreadPool(this.threadCount, new MiningThreadFactory());
     }
 
+    /**
+     * Mines the block on this pool to {@code difficulty} leading zero hex digits and returns
+     * the winning nonce. If the 31-bit nonce space of the block's timestamp is exhausted the
+     * timestamp is rolled forward, in which case the block's timestamp is updated to the one
+     * the nonce belongs to.
+     */
     public int mineBlockConcurrently(Block block, int difficulty) {
-        solutionFound.set(false);
-        winningNonce.set(0);
+        return mineToBits(block, difficulty * 4);
+    }
 
-        String target = "0".repeat(difficulty);
-        CountDownLatch latch = new CountDownLatch(1);
+    /**
+     * Mines on this pool under the given job. The calling thread waits for the round, waking
+     * to report progress and to check the deadline; when the job ends early every task of the
+     * round has left the nonce loop before this throws.
+     */
+    @Override
+    public synchronized int mineToBits(Block block, int zeroBits, MiningJob job) {
+        if (executorService.isShutdown()) {
+            throw new IllegalStateException("Mining pool has been shut down");
+        }
 
-        int rangePerThread = Integer.MAX_VALUE / threadCount;
+        long startTime = System.nanoTime();
+        long attemptsBefore = totalAttempts.sum();
+        MiningRound round = new MiningRound(threadCount);
+        job.start(round::cancel);
 
         for (int i = 0; i < threadCount; i++) {
-            final int startNonce = i * rangePerThread;
-            final int endNonce = (i == threadCount - 1) ? Integer.MAX_VALUE : (i + 1) * rangePerThread;
-
-            executorService.submit(new MiningTask(block, difficulty, startNonce, endNonce, target, latch));
+            executorService.execute(new MiningTask(round, block, zeroBits));
         }
 
         try {
-            latch.await();
+            while (!round.solved.await(job.nanosUntilNextPoll(), TimeUnit.NANOSECONDS)) {
+                job.poll(totalAttempts.sum() - attemptsBefore);
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RuntimeException("Mining was interrupted", e);
+        } finally {
+            round.stop();
+            job.finish();
+        }
+
+        if (round.failure instanceof CancellationException) {
+            throw (CancellationException) round.failure;
+        }
+        if (round.failure != null) {
+            throw new IllegalStateException("Mining task failed", round.failure);
         }
+        // Every task of the round has stopped, so the attempts since the start belong to this block
+        metrics.recordBlock(System.nanoTime() - startTime, totalAttempts.sum() - attemptsBefore);
 
-        return winningNonce.get();
+        long position = round.winningPosition.get();
+        long roll = NonceScheduler.rollOf(position);
+        int nonce = NonceScheduler.nonceOf(position);
+        if (roll > 0) {
+            block.setTimeStamp(block.getTimeStamp() + roll);
+        }
+
+        if (!StringUtil.hasLeadingZeroBits(block.calculateHashWithNonce(nonce), zeroBits)) {
+            throw new IllegalStateException("Mining produced a nonce that does not satisfy the difficulty: " + nonce);
+        }
+        return nonce;
     }
 
+    @Override
+    public int getThreadCount() { return threadCount; }
+
+    public HashEngine getHashEngine() { return hashEngine; }
+
+    public MiningMetrics getMetrics() { return metrics; }
+
+    /** Total hashes attempted by this pool since it was created. */
+    public long getTotalAttempts() { return totalAttempts.sum(); }
+
+    public boolean isShutdown() { return executorService.isShutdown(); }
+
     public void shutdown() {
         executorService.shutdown();
         try {
@@ -57,36 +138,152 @@ public class MiningPool {
         }
     }
 
+    /**
+     * State of a single block search. Kept per round rather than on the pool so a task that
+     * is still draining from an earlier block can never publish into the current one.
+     */
+    private static final class MiningRound {
+        private final NonceScheduler scheduler = new NonceScheduler();
+        private final AtomicBoolean solutionFound = new AtomicBoolean(false);
+        private final AtomicLong winningPosition = new AtomicLong(0);
+        private final CountDownLatch solved = new CountDownLatch(1);
+        private final CountDownLatch finished;
+        private volatile Throwable failure;
+
+        MiningRound(int taskCount) {
+            this.finished = new CountDownLatch(taskCount);
+        }
+
+        void win(long position) {
+            if (solutionFound.compareAndSet(false, true)) {
+                winningPosition.set(position);
+                solved.countDown();
+            }
+        }
+
+        void cancel() {
+            fail(new CancellationException("Mining was cancelled"));
+        }
+
+        void fail(Throwable t) {
+            if (solutionFound.compareAndSet(false, true)) {
+                failure = t;
+                solved.countDown();
+            }
+        }
+
+        /**
+         * Signals all tasks of this round to stop and waits until they have left the nonce loop,
+         * which each does after its current chunk.
+         */
+        void stop() {
+            solutionFound.set(true);
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    finished.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     private class MiningTask implements Runnable {
+        private final MiningRound round;
         private final Block block;
-        private final int difficulty;
-        private final int startNonce;
-        private final int endNonce;
-        private final String target;
-        private final CountDownLatch latch;
-
-        public MiningTask(Block block, int difficulty, int startNonce, int endNonce,
-                          String target, CountDownLatch latch) {
+        private final int zeroBits;
+
+        public MiningTask(MiningRound round, Block block, int zeroBits) {
+            this.round = round;
             this.block = block;
-            this.difficulty = difficulty;
-            this.startNonce = startNonce;
-            this.endNonce = endNonce;
-            this.target = target;
-            this.latch = latch;
+            this.zeroBits = zeroBits;
         }
 
         @Override
         public void run() {
-            for (int nonce = startNonce; nonce < endNonce && !solutionFound.get(); nonce++) {
-                String hash = block.calculateHashWithNonce(nonce);
-                if (hash.substring(0, difficulty).equals(target)) {
-                    if (solutionFound.compareAndSet(false, true)) {
-                        winningNonce.set(nonce);
-                        latch.countDown();
-                        break;
+            try {
+                search();
+            } catch (Throwable t) {
+                round.fail(t);
+            } finally {
+                round.finished.countDown();
+            }
+        }
+
+        private void search() {
+            Worker worker = workers.get();
+            NonceSearcher searcher = worker.searcher;
+            byte[] suffix = block.hashInputSuffix();
+            long currentRoll = -1;
+            int chunkSize = NonceScheduler.MIN_CHUNK;
+
+            while (!round.solutionFound.get()) {
+                long chunkStart = System.nanoTime();
+                long chunkFirst = round.scheduler.claim(chunkSize);
+                long chunkEnd = chunkFirst + chunkSize;
+                long position = chunkFirst;
+
+                while (position < chunkEnd) {
+                    long roll = NonceScheduler.rollOf(position);
+                    if (roll != currentRoll) {
+                        searcher.reset(block.hashInputPrefix(block.getTimeStamp() + roll), suffix);
+                        currentRoll = roll;
+                    }
+                    long segmentEnd = Math.min(chunkEnd, NonceScheduler.nextRollStart(position));
+                    int firstNonce = NonceScheduler.nonceOf(position);
+                    int count = (int) (segmentEnd - position);
+
+                    int hit = searcher.search(firstNonce, count, zeroBits);
+                    if (hit >= 0) {
+                        int offset = hit - firstNonce;
+                        long attempts = position - chunkFirst + offset + 1;
+                        totalAttempts.add(attempts);
+                        metrics.recordWork(worker.index, attempts, System.nanoTime() - chunkStart);
+                        round.win(position + offset);
+                        return;
                     }
+                    position = segmentEnd;
                 }
+
+                long chunkNanos = System.nanoTime() - chunkStart;
+                totalAttempts.add(chunkSize);
+                metrics.recordWork(worker.index, chunkSize, chunkNanos);
+                chunkSize = NonceScheduler.nextChunkSize(chunkSize, chunkNanos);
             }
         }
     }
+
+    /**
+     * Per-thread search state, numbered in the order threads first mine on this pool
+     */
+    private static final class Worker {
+        final int index;
+        final NonceSearcher searcher;
+
+        Worker(int index, NonceSearcher searcher) {
+            this.index = index;
+            this.searcher = searcher;
+        }
+    }
+
+    /**
+     * Daemon worker threads, so a pool that is never shut down does not keep the JVM alive.
+     */
+    private static final class MiningThreadFactory implements ThreadFactory {
+        private static final AtomicInteger POOL_SEQUENCE = new AtomicInteger(1);
+        private final int poolId = POOL_SEQUENCE.getAndIncrement();
+        private final AtomicInteger threadSequence = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "mining-pool-" + poolId + "-worker-" + threadSequence.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
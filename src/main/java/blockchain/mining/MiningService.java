@@ -0,0 +1,461 @@
+package src.main.java.blockchain.mining;
+
+import src.main.java.blockchain.core.Block;
+import src.main.java.blockchain.hashing.HashEngine;
+import src.main.java.blockchain.hashing.HashEngines;
+import src.main.java.blockchain.hashing.NonceSearcher;
+import src.main.java.blockchain.metrics.MiningMetrics;
+import src.main.java.blockchain.utils.StringUtil;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Process-wide mining workers shared by many chains.
+ *
+ * Each chain registers a {@link Client} with a weight and mines through it like through its
+ * own {@link MiningPool}. A fixed set of workers, one per core by default, takes nonce chunks
+ * of a few milliseconds each from the submitted blocks. Before every chunk a worker picks the
+ * client with the lowest virtual time, which advances by attempts divided by weight, so busy
+ * chains share the hashrate in proportion to their weights. A lone busy chain gets all
+ * workers. A chain that was idle starts at the current virtual time and gets no credit for
+ * the time it did not mine.
+ *
+ * Workers switch blocks between chunks without switching threads, so the total hashrate does
+ * not depend on how many chains are mining.
+ */
+public class MiningService {
+    private static final Object SHARED_LOCK = new Object();
+    private static MiningService shared;
+
+    private final int workerCount;
+    private final HashEngine hashEngine;
+    private final List<Thread> workers = new ArrayList<>();
+    private final LongAdder totalAttempts = new LongAdder();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    // Clients with at least one unsolved job; guarded by lock
+    private final List<Client> active = new ArrayList<>();
+    private double virtualTime;
+    private boolean shutdown;
+
+    /**
+     * Service with one worker per available processor and the default hash engine, created on
+     * first use. Its workers are daemon threads and it is never shut down.
+     */
+    public static MiningService shared() {
+        synchronized (SHARED_LOCK) {
+            if (shared == null) {
+                shared = new MiningService(Runtime.getRuntime().availableProcessors(), HashEngines.defaultEngine());
+            }
+            return shared;
+        }
+    }
+
+    public MiningService(int workerCount, HashEngine hashEngine) {
+        this.workerCount = Math.max(1, workerCount);
+        this.hashEngine = hashEngine;
+        AtomicInteger sequence = new AtomicInteger();
+        for (int i = 0; i < this.workerCount; i++) {
+            int index = sequence.getAndIncrement();
+            Thread thread = new Thread(() -> work(new Worker(index, hashEngine.newNonceSearcher())),
+                "mining-service-worker-" + index);
+            thread.setDaemon(true);
+            workers.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Registers a chain.
+     *
+     * @param name name used in thread dumps and {@link Client#toString()}
+     * @param weight share of the workers relative to other busy clients, at least 1
+     * @param metrics receives the chain's hashrate, block latency and queue wait
+     */
+    public Client register(String name, int weight, MiningMetrics metrics) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("Weight must be positive");
+        }
+        return new Client(name, weight, metrics);
+    }
+
+    public int getWorkerCount() { return workerCount; }
+
+    public HashEngine getHashEngine() { return hashEngine; }
+
+    /** Total hashes attempted by the workers since the service was created. */
+    public long getTotalAttempts() { return totalAttempts.sum(); }
+
+    /**
+     * Stops the workers after their current chunk and fails the blocks still being mined
+     */
+    public void shutdown() {
+        List<Job> abandoned = new ArrayList<>();
+        lock.lock();
+        try {
+            shutdown = true;
+            for (Client client : active) {
+                abandoned.addAll(client.jobs);
+                client.jobs.clear();
+            }
+            active.clear();
+            for (Job job : abandoned) {
+                job.finish(-1, new IllegalStateException("Mining service has been shut down"));
+            }
+            workAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public boolean isShutdown() {
+        lock.lock();
+        try {
+            return shutdown;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * One chain's handle on the service. Blocks submitted through the same client are mined
+     * in submission order.
+     */
+    public final class Client implements BlockMiner {
+        private final String name;
+        private final int weight;
+        private final MiningMetrics metrics;
+        // Guarded by the service lock
+        private final ArrayDeque<Job> jobs = new ArrayDeque<>();
+        private double clientVirtualTime;
+        private boolean closed;
+
+        private Client(String name, int weight, MiningMetrics metrics) {
+            this.name = name;
+            this.weight = weight;
+            this.metrics = metrics;
+        }
+
+        /**
+         * Queues the block and waits until a worker has found a nonce and every other chunk
+         * of the block has stopped. A job that is cancelled or expires is taken off the
+         * schedule, and this throws once the chunks already claimed from it have finished.
+         * Progress is reported on the calling thread, outside the service lock.
+         *
+         * @throws IllegalStateException if the client is closed or the service shut down
+         */
+        @Override
+        public int mineToBits(Block block, int zeroBits, MiningJob miningJob) {
+            Job job = new Job(this, block, zeroBits);
+            lock.lock();
+            try {
+                if (closed || shutdown) {
+                    throw new IllegalStateException("Mining service client " + name + " is closed");
+                }
+                miningJob.start(() -> cancel(job, new CancellationException("Mining was cancelled")));
+                if (jobs.isEmpty()) {
+                    // An idle client rejoins at the current virtual time, without credit
+                    clientVirtualTime = Math.max(clientVirtualTime, virtualTime);
+                    active.add(this);
+                }
+                jobs.addLast(job);
+                workAvailable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                awaitCompletion(job, miningJob);
+            } finally {
+                miningJob.finish();
+            }
+
+            if (job.failure instanceof CancellationException) {
+                throw (CancellationException) job.failure;
+            }
+            if (job.failure != null) {
+                throw new IllegalStateException("Mining failed", job.failure);
+            }
+            metrics.recordBlock(System.nanoTime() - job.submittedAt, job.attempts);
+
+            long roll = NonceScheduler.rollOf(job.winningPosition);
+            int nonce = NonceScheduler.nonceOf(job.winningPosition);
+            if (roll > 0) {
+                block.setTimeStamp(job.baseTimestamp + roll);
+            }
+            if (!StringUtil.hasLeadingZeroBits(block.calculateHashWithNonce(nonce), zeroBits)) {
+                throw new IllegalStateException("Mining produced a nonce that does not satisfy the difficulty: " + nonce);
+            }
+            return nonce;
+        }
+
+        /**
+         * Waits until the job is complete, polling the mining job whenever it asks to be
+         * polled while the block is still unsolved
+         */
+        private void awaitCompletion(Job job, MiningJob miningJob) {
+            boolean interrupted = false;
+            while (true) {
+                long attempts;
+                lock.lock();
+                try {
+                    long wait = miningJob.nanosUntilNextPoll();
+                    while (!job.isComplete() && (job.solved || wait > 0)) {
+                        if (wait == Long.MAX_VALUE || job.solved) {
+                            job.done.awaitUninterruptibly();
+                        } else {
+                            try {
+                                wait = job.done.awaitNanos(wait);
+                            } catch (InterruptedException e) {
+                                interrupted = true;
+                            }
+                        }
+                    }
+                    if (job.isComplete()) {
+                        break;
+                    }
+                    attempts = job.attempts;
+                } finally {
+                    lock.unlock();
+                }
+
+                try {
+                    miningJob.poll(attempts);
+                } catch (CancellationException e) {
+                    cancel(job, e);
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Takes the job off the schedule, failing it with {@code cause}; a no-op once it is solved
+         */
+        private void cancel(Job job, CancellationException cause) {
+            lock.lock();
+            try {
+                job.finish(-1, cause);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** All workers of the service may search one block. */
+        @Override
+        public int getThreadCount() { return workerCount; }
+
+        public String getName() { return name; }
+        public int getWeight() { return weight; }
+        public MiningMetrics getMetrics() { return metrics; }
+
+        /**
+         * Rejects further blocks. Blocks already submitted are still mined.
+         */
+        public void close() {
+            lock.lock();
+            try {
+                closed = true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "MiningService.Client{" + name + ", weight=" + weight + "}";
+        }
+    }
+
+    /**
+     * A submitted block: its fixed hash input, its own nonce cursor and what has been found
+     */
+    private final class Job {
+        final Client client;
+        final int zeroBits;
+        final long baseTimestamp;
+        final Block block;
+        final byte[] suffix;
+        final NonceScheduler scheduler = new NonceScheduler();
+        final Condition done = lock.newCondition();
+        final long submittedAt = System.nanoTime();
+
+        // Guarded by the service lock
+        boolean started;
+        boolean solved;
+        int inFlight;
+        long attempts;
+        long winningPosition;
+        Throwable failure;
+
+        Job(Client client, Block block, int zeroBits) {
+            this.client = client;
+            this.block = block;
+            this.zeroBits = zeroBits;
+            this.baseTimestamp = block.getTimeStamp();
+            this.suffix = block.hashInputSuffix();
+        }
+
+        /** Solved or failed, and no worker is searching it anymore. */
+        boolean isComplete() {
+            return solved && inFlight == 0;
+        }
+
+        /**
+         * Marks the job solved, or failed if {@code cause} is set, and takes it off the
+         * schedule. Called with the service lock held.
+         */
+        void finish(long position, Throwable cause) {
+            if (solved) {
+                return;
+            }
+            solved = true;
+            winningPosition = position;
+            failure = cause;
+            client.jobs.remove(this);
+            if (client.jobs.isEmpty()) {
+                active.remove(client);
+            }
+            if (isComplete()) {
+                done.signalAll();
+            }
+        }
+    }
+
+    /**
+     * Per-thread search state. The searcher keeps the prefix of the last block and
+     * timestamp roll it searched, so consecutive chunks of one block skip the reset.
+     */
+    private static final class Worker {
+        final int index;
+        final NonceSearcher searcher;
+        Job currentJob;
+        long currentRoll = -1;
+        int chunkSize = NonceScheduler.MIN_CHUNK;
+
+        Worker(int index, NonceSearcher searcher) {
+            this.index = index;
+            this.searcher = searcher;
+        }
+    }
+
+    private void work(Worker worker) {
+        while (true) {
+            Job job;
+            int chunkSize = worker.chunkSize;
+            long chunkFirst;
+            lock.lock();
+            try {
+                Client client;
+                while ((client = nextClient()) == null) {
+                    if (shutdown) {
+                        return;
+                    }
+                    workAvailable.awaitUninterruptibly();
+                }
+                job = client.jobs.peekFirst();
+                if (!job.started) {
+                    job.started = true;
+                    client.metrics.recordQueueWait(System.nanoTime() - job.submittedAt);
+                }
+                chunkFirst = job.scheduler.claim(chunkSize);
+                job.inFlight++;
+                // Charged up front so other workers see the claim; unused attempts are refunded
+                virtualTime = client.clientVirtualTime;
+                client.clientVirtualTime += (double) chunkSize / client.weight;
+            } finally {
+                lock.unlock();
+            }
+
+            long chunkStart = System.nanoTime();
+            long hit = -1;
+            Throwable failure = null;
+            try {
+                hit = search(worker, job, chunkFirst, chunkFirst + chunkSize);
+            } catch (Throwable t) {
+                failure = t;
+            }
+            long chunkNanos = System.nanoTime() - chunkStart;
+            long attempts = (hit >= 0) ? hit - chunkFirst + 1 : chunkSize;
+
+            lock.lock();
+            try {
+                job.inFlight--;
+                job.attempts += attempts;
+                job.client.clientVirtualTime -= (double) (chunkSize - attempts) / job.client.weight;
+                if (failure != null) {
+                    job.finish(-1, failure);
+                } else if (hit >= 0) {
+                    job.finish(hit, null);
+                }
+                if (job.isComplete()) {
+                    job.done.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            totalAttempts.add(attempts);
+            job.client.metrics.recordWork(worker.index, attempts, chunkNanos);
+            worker.chunkSize = NonceScheduler.nextChunkSize(chunkSize, chunkNanos);
+        }
+    }
+
+    /**
+     * Busy client with the lowest virtual time, or {@code null} if none. Called with the lock
+     * held; the list holds a few dozen clients at most, so a scan is cheap next to a chunk.
+     */
+    private Client nextClient() {
+        Client next = null;
+        for (Client client : active) {
+            if (next == null || client.clientVirtualTime < next.clientVirtualTime) {
+                next = client;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Searches positions {@code first .. end - 1} of the job. A chunk takes a few milliseconds,
+     * so it is always finished even if another worker solves the block meanwhile.
+     *
+     * @return the winning position, or {@code -1}
+     */
+    private long search(Worker worker, Job job, long first, long end) {
+        NonceSearcher searcher = worker.searcher;
+        long position = first;
+        while (position < end) {
+            long roll = NonceScheduler.rollOf(position);
+            if (job != worker.currentJob || roll != worker.currentRoll) {
+                searcher.reset(job.block.hashInputPrefix(job.baseTimestamp + roll), job.suffix);
+                worker.currentJob = job;
+                worker.currentRoll = roll;
+            }
+            long segmentEnd = Math.min(end, NonceScheduler.nextRollStart(position));
+            int firstNonce = NonceScheduler.nonceOf(position);
+            int hit = searcher.search(firstNonce, (int) (segmentEnd - position), job.zeroBits);
+            if (hit >= 0) {
+                return position + (hit - firstNonce);
+            }
+            position = segmentEnd;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,57 @@
+package src.main.java.blockchain.mining;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out nonce chunks to mining tasks from one shared atomic cursor.
+ *
+ * The cursor walks an extended 63-bit search space: the low 31 bits are the nonce and the
+ * high bits are a timestamp roll. When every non-negative nonce has been tried for one
+ * timestamp, the search simply continues with the timestamp advanced by one millisecond,
+ * so a round can never run out of work. Faster threads just claim more chunks.
+ */
+final class NonceScheduler {
+    static final int NONCE_BITS = 31;
+    static final long NONCE_MASK = (1L << NONCE_BITS) - 1;
+
+    static final int MIN_CHUNK = 256;
+    static final int MAX_CHUNK = 1 << 20;
+
+    private final AtomicLong cursor = new AtomicLong();
+
+    /**
+     * Claims the next {@code chunkSize} positions and returns the first one. The claimed
+     * range may cross a timestamp boundary; see {@link #rollOf} and {@link #nonceOf}.
+     */
+    long claim(int chunkSize) {
+        return cursor.getAndAdd(chunkSize);
+    }
+
+    static long rollOf(long position) {
+        return position >>> NONCE_BITS;
+    }
+
+    static int nonceOf(long position) {
+        return (int) (position & NONCE_MASK);
+    }
+
+    /** First position of the timestamp roll that follows the one containing {@code position}. */
+    static long nextRollStart(long position) {
+        return (rollOf(position) + 1) << NONCE_BITS;
+    }
+
+    /**
+     * Adapts a task's chunk size so one chunk takes a few milliseconds: long enough to keep
+     * cursor contention negligible, short enough that tasks notice a solution quickly and
+     * low-difficulty blocks are not over-claimed by a single thread.
+     */
+    static int nextChunkSize(int chunkSize, long elapsedNanos) {
+        if (elapsedNanos < 1_000_000L && chunkSize < MAX_CHUNK) {
+            return chunkSize << 1;
+        }
+        if (elapsedNanos > 4_000_000L && chunkSize > MIN_CHUNK) {
+            return chunkSize >> 1;
+        }
+        return chunkSize;
+    }
+}
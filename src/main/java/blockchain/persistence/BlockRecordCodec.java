@@ -0,0 +1,117 @@
+package src.main.java.blockchain.persistence;
+
+import src.main.java.blockchain.core.Block;
+import src.main.java.blockchain.utils.StringUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary encoding of a block. Hex digests are stored as their 32 raw bytes; any
+ * other value in a hash field (the genesis block's {@code "0"} previous hash) is stored as
+ * a length-prefixed UTF-8 string.
+ *
+ * <pre>
+ * byte    format version
+ * int     difficulty: leading zero bits, or hex digits before version 3
+ * long    timestamp
+ * int     nonce
+ * digest  hash
+ * digest  previous hash
+ * int     data length, followed by the UTF-8 data
+ * byte    1 if a Merkle root follows, else 0              (version 2 onwards)
+ * digest  Merkle root, if present
+ *
+ * digest: byte 0 + 32 raw bytes, or byte 1 + short length + UTF-8 bytes
+ * </pre>
+ *
+ * Version 1 records, written before blocks had Merkle roots, and version 2 records, written
+ * while difficulty was a number of hex digits, are still decoded.
+ */
+final class BlockRecordCodec {
+    private static final byte FORMAT_VERSION = 3;
+    private static final byte FORMAT_VERSION_HEX_DIFFICULTY = 2;
+    private static final byte FORMAT_VERSION_WITHOUT_ROOT = 1;
+    private static final byte RAW_DIGEST = 0;
+    private static final byte TEXT_DIGEST = 1;
+
+    private BlockRecordCodec() {
+    }
+
+    static byte[] encode(Block block) {
+        byte[] data = block.getData().getBytes(StandardCharsets.UTF_8);
+        String merkleRoot = block.getMerkleRoot();
+        int size = 1 + 4 + 8 + 4 + digestSize(block.getHash()) + digestSize(block.getPreviousHash()) + 4 + data.length
+            + 1 + (merkleRoot != null ? digestSize(merkleRoot) : 0);
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(FORMAT_VERSION);
+        buffer.putInt(block.getDifficultyBits());
+        buffer.putLong(block.getTimeStamp());
+        buffer.putInt(block.getNonce());
+        putDigest(buffer, block.getHash());
+        putDigest(buffer, block.getPreviousHash());
+        buffer.putInt(data.length);
+        buffer.put(data);
+        buffer.put((byte) (merkleRoot != null ? 1 : 0));
+        if (merkleRoot != null) {
+            putDigest(buffer, merkleRoot);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Decodes a block starting at the buffer's position, advancing it past the record
+     */
+    static Block decode(ByteBuffer buffer) {
+        byte version = buffer.get();
+        if (version != FORMAT_VERSION && version != FORMAT_VERSION_HEX_DIFFICULTY && version != FORMAT_VERSION_WITHOUT_ROOT) {
+            throw new IllegalStateException("Unsupported block record version: " + version);
+        }
+        int difficulty = buffer.getInt();
+        int difficultyBits = (version == FORMAT_VERSION) ? difficulty : difficulty * 4;
+        long timestamp = buffer.getLong();
+        int nonce = buffer.getInt();
+        String hash = getDigest(buffer);
+        String previousHash = getDigest(buffer);
+        byte[] data = new byte[buffer.getInt()];
+        buffer.get(data);
+        String merkleRoot = null;
+        if (version != FORMAT_VERSION_WITHOUT_ROOT && buffer.get() == 1) {
+            merkleRoot = getDigest(buffer);
+        }
+        return Block.fromDatabase(hash, previousHash, new String(data, StandardCharsets.UTF_8), timestamp, nonce, merkleRoot,
+            difficultyBits);
+    }
+
+    private static int digestSize(String digest) {
+        if (StringUtil.isSha256Hex(digest)) {
+            return 1 + 32;
+        }
+        return 1 + 2 + digest.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void putDigest(ByteBuffer buffer, String digest) {
+        if (StringUtil.isSha256Hex(digest)) {
+            buffer.put(RAW_DIGEST);
+            buffer.put(StringUtil.fromHex(digest));
+        } else {
+            byte[] text = digest.getBytes(StandardCharsets.UTF_8);
+            buffer.put(TEXT_DIGEST);
+            buffer.putShort((short) text.length);
+            buffer.put(text);
+        }
+    }
+
+    private static String getDigest(ByteBuffer buffer) {
+        byte kind = buffer.get();
+        if (kind == RAW_DIGEST) {
+            byte[] raw = new byte[32];
+            buffer.get(raw);
+            return StringUtil.toHex(raw);
+        }
+        byte[] text = new byte[buffer.getShort() & 0xffff];
+        buffer.get(text);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,72 @@
+package src.main.java.blockchain.persistence;
+
+import src.main.java.blockchain.core.Block;
+import src.main.java.blockchain.core.ChainStats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Durable storage for the blocks of one chain, addressed by height. Blocks are appended in
+ * chain order; the first saved block has height 0. Loaded blocks carry the difficulty, in
+ * leading zero bits, they were saved with.
+ */
+public interface BlockStore extends AutoCloseable {
+
+    /**
+     * Appends a block, together with the difficulty it records
+     */
+    void saveBlock(Block block);
+
+    /**
+     * Saves several consecutive blocks, as one unit where the implementation supports it
+     */
+    void saveBlocks(List<Block> blocks);
+
+    /**
+     * Streams blocks in height order starting at {@code fromHeight}
+     */
+    default void forEachBlock(int fromHeight, Consumer<Block> consumer) {
+        forEachBlock(fromHeight, Integer.MAX_VALUE, consumer);
+    }
+
+    /**
+     * Streams the blocks with heights {@code fromHeight .. toHeight - 1} in height order
+     */
+    void forEachBlock(int fromHeight, int toHeight, Consumer<Block> consumer);
+
+    /**
+     * Loads a single block by height, or returns {@code null} if there is none
+     */
+    Block loadBlock(int height);
+
+    /**
+     * Loads a block by its hash, or returns {@code null} if there is none
+     */
+    Block loadBlockByHash(String hash);
+
+    /** Human-readable summary for {@code Blockchain.printStats()}. */
+    String getBlockchainStats();
+
+    /**
+     * Statistics of the stored blocks, kept up to date on every save so this never scans them.
+     * The returned object is a copy the caller may keep.
+     */
+    ChainStats getChainStats();
+
+    /**
+     * Recomputes the statistics from every stored block and replaces the persisted summary,
+     * for recovery when that summary is lost or suspect
+     */
+    ChainStats rebuildChainStats();
+
+    @Override
+    void close();
+
+    default List<Block> loadBlockchain() {
+        List<Block> blocks = new ArrayList<>();
+        forEachBlock(0, blocks::add);
+        return blocks;
+    }
+}
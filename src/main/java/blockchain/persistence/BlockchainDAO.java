@@ -1,28 +1,150 @@
 package src.main.java.blockchain.persistence;
 
 import src.main.java.blockchain.core.Block;
+import src.main.java.blockchain.core.ChainStats;
+import src.main.java.blockchain.metrics.PersistenceMetrics;
+import src.main.java.blockchain.utils.StringUtil;
 import java.sql.*;
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
 
 /**
  * Data Access Object for blockchain persistence operations
+ *
+ * Blocks are stored in one of two table layouts, see {@link Schema}. {@link #migrateToV2(int)}
+ * copies a v1 table into the v2 layout in small transactions while the v1 table stays in use.
+ *
+ * Table {@code chain_stats} holds one summary row per block table with its {@link ChainStats},
+ * so statistics are read without aggregating the blocks. The statistics are updated in memory
+ * on every save; the row is rewritten after the save once {@link #STATS_ROW_INTERVAL} blocks
+ * have been added since it was last written, and on close. It always covers the lowest
+ * {@code block_count} heights, so on open the blocks above those are added to it.
+ *
+ * Range reads ({@link #streamBlocks(int, int)}, {@link #streamBlocksByTimestamp(long, long)},
+ * {@link #streamAncestors(String)}) return lazy streams that page through an index with keyset
+ * pagination: each page runs the same statement on a connection borrowed for that page only,
+ * bound to continue after the last row of the page before, so no page costs more than the ones
+ * before it and an abandoned stream holds no connection.
  */
-public class BlockchainDAO {
+public class BlockchainDAO implements BlockStore {
+    /** Rows fetched per round trip when streaming the chain */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    /** v2 payloads longer than this many UTF-8 bytes are deflated */
+    public static final int DEFAULT_COMPRESS_ABOVE_BYTES = 256;
+
+    /** Rows copied per transaction by {@link #migrateToV2(int)} unless told otherwise */
+    public static final int DEFAULT_MIGRATION_BATCH_SIZE = 1000;
+
+    /** Blocks saved before the summary row is rewritten; at most this many are re-read on open */
+    public static final int STATS_ROW_INTERVAL = 100;
+
+    /** Blocks fetched per page by the range reads unless told otherwise */
+    public static final int DEFAULT_PAGE_SIZE = 256;
+
+    // Exact difficulty in leading zero bits. The difficulty column keeps whole hex digits for
+    // older readers; rows written before this column existed were mined to 4 bits per digit.
+    private static final String ADD_DIFFICULTY_BITS = "ALTER TABLE %s ADD COLUMN IF NOT EXISTS difficulty_bits SMALLINT";
+
+    private static final String MERGE_STATS = "MERGE INTO chain_stats (table_name, block_count, stats) KEY (table_name) VALUES (?, ?, ?)";
+
+    /**
+     * Table layout of the stored blocks
+     */
+    public enum Schema {
+        /**
+         * Table {@code blocks}: hex {@code VARCHAR(64)} digests, {@code TEXT} data, surrogate id
+         */
+        V1("blocks",
+            "INSERT INTO blocks (hash, previous_hash, data, timestamp, nonce, difficulty, merkle_root, difficulty_bits, height) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, (SELECT COALESCE(MAX(height), -1) + 1 FROM blocks))",
+            "hash, previous_hash, data, timestamp, nonce, merkle_root, difficulty, difficulty_bits"),
+
+        /**
+         * Table {@code blocks_v2}: height as primary key, {@code BINARY(32)} digests, data as
+         * UTF-8 bytes that are deflated above a size threshold, and only a unique hash index
+         */
+        V2("blocks_v2",
+            "INSERT INTO blocks_v2 (hash, previous_hash, payload, compressed, timestamp, nonce, difficulty, merkle_root, difficulty_bits, height) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, (SELECT COALESCE(MAX(height), -1) + 1 FROM blocks_v2))",
+            "hash, previous_hash, payload, compressed, timestamp, nonce, merkle_root, difficulty, difficulty_bits");
+
+        private final String table;
+        // Each row's height is one past the current maximum, so inserts need no height from the caller
+        private final String insertSql;
+        private final String blockColumns;
+
+        Schema(String table, String insertSql, String blockColumns) {
+            this.table = table;
+            this.insertSql = insertSql;
+            this.blockColumns = blockColumns;
+        }
+
+        public String getTable() { return table; }
+    }
+
     private final HikariDataSource dataSource;
+    private final PersistenceMetrics metrics;
+    private final Schema schema;
+    private final int compressAboveBytes;
+
+    // Held while saving, so statistics are recorded in height order
+    private final Object statsLock = new Object();
+    private volatile ChainStats stats;
+    private long statsRowBlockCount;
 
     public BlockchainDAO(String dbUrl) {
+        this(dbUrl, new PersistenceMetrics());
+    }
+
+    /**
+     * @param metrics receives save and load latencies and the connection pool's wait times
+     */
+    public BlockchainDAO(String dbUrl, PersistenceMetrics metrics) {
+        this(dbUrl, metrics, Schema.V1);
+    }
+
+    public BlockchainDAO(String dbUrl, PersistenceMetrics metrics, Schema schema) {
+        this(dbUrl, metrics, schema, DEFAULT_COMPRESS_ABOVE_BYTES);
+    }
+
+    /**
+     * @param metrics receives save and load latencies and the connection pool's wait times
+     * @param schema table layout to read and write
+     * @param compressAboveBytes v2 payloads longer than this are deflated; ignored for v1
+     */
+    public BlockchainDAO(String dbUrl, PersistenceMetrics metrics, Schema schema, int compressAboveBytes) {
+        this.metrics = metrics;
+        this.schema = schema;
+        this.compressAboveBytes = compressAboveBytes;
+
         HikariConfig config = new HikariConfig();
         config.setJdbcUrl(dbUrl);
         config.setMaximumPoolSize(10);
         config.setConnectionTimeout(30000);
         config.setIdleTimeout(600000);
         config.setMaxLifetime(1800000);
+        config.setMetricsTrackerFactory((poolName, poolStats) -> new ConnectionWaitTracker(metrics));
 
         this.dataSource = new HikariDataSource(config);
-        initializeTables();
+        if (schema == Schema.V1) {
+            initializeTables();
+        } else {
+            initializeV2Table();
+        }
+        initializeStatsTable();
+        this.stats = loadChainStats();
     }
 
     private void initializeTables() {
@@ -43,96 +165,785 @@ public class BlockchainDAO {
              Statement stmt = conn.createStatement()) {
             stmt.execute(createBlocksTable);
 
-            // Create indexes for performance
-            stmt.execute("CREATE INDEX IF NOT EXISTS idx_hash ON blocks(hash)");
+            // Create indexes for performance. hash is UNIQUE, so its constraint index already
+            // serves lookups and a separate idx_hash only duplicates it.
+            stmt.execute("DROP INDEX IF EXISTS idx_hash");
             stmt.execute("CREATE INDEX IF NOT EXISTS idx_previous_hash ON blocks(previous_hash)");
-            stmt.execute("CREATE INDEX IF NOT EXISTS idx_timestamp ON blocks(timestamp)");
+
+            // Height column for lookups by position; backfilled for tables created without it.
+            // The backfill numbers the whole table, so it only runs while some row lacks a height.
+            stmt.execute("ALTER TABLE blocks ADD COLUMN IF NOT EXISTS height INTEGER");
+            boolean missingHeights;
+            try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM blocks WHERE height IS NULL LIMIT 1")) {
+                missingHeights = rs.next();
+            }
+            if (missingHeights) {
+                stmt.execute("""
+                    MERGE INTO blocks t
+                    USING (SELECT id, ROW_NUMBER() OVER (ORDER BY id) - 1 AS h FROM blocks) s
+                    ON t.id = s.id AND t.height IS NULL
+                    WHEN MATCHED THEN UPDATE SET t.height = s.h
+                """);
+            }
+            stmt.execute("CREATE UNIQUE INDEX IF NOT EXISTS idx_height ON blocks(height)");
+            // Ordered like the pages of streamBlocksByTimestamp; it also serves every lookup
+            // the timestamp-only index did, which older tables still carry
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_timestamp_height ON blocks(timestamp, height)");
+            stmt.execute("DROP INDEX IF EXISTS idx_timestamp");
+
+            // Merkle root of blocks built from entries; NULL for blocks with opaque data
+            stmt.execute("ALTER TABLE blocks ADD COLUMN IF NOT EXISTS merkle_root VARCHAR(64)");
+
+            stmt.execute(ADD_DIFFICULTY_BITS.formatted(Schema.V1.table));
 
         } catch (SQLException e) {
             throw new RuntimeException("Failed to initialize database", e);
         }
     }
 
-    public void saveBlock(Block block, int difficulty) {
-        String sql = "INSERT INTO blocks (hash, previous_hash, data, timestamp, nonce, difficulty) VALUES (?, ?, ?, ?, ?, ?)";
+    private void initializeV2Table() {
+        // The height primary key is the row key, so no surrogate id and no extra height index.
+        // previous_hash is empty for the genesis block, whose previous hash is "0".
+        String createBlocksTable = """
+            CREATE TABLE IF NOT EXISTS blocks_v2 (
+                height INTEGER PRIMARY KEY,
+                hash BINARY(32) NOT NULL,
+                previous_hash VARBINARY(32) NOT NULL,
+                payload VARBINARY NOT NULL,
+                compressed BOOLEAN NOT NULL,
+                timestamp BIGINT NOT NULL,
+                nonce INTEGER NOT NULL,
+                difficulty SMALLINT NOT NULL,
+                merkle_root BINARY(32)
+            )
+        """;
 
         try (Connection conn = dataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(createBlocksTable);
+            stmt.execute("CREATE UNIQUE INDEX IF NOT EXISTS idx_v2_hash ON blocks_v2(hash)");
+            // Ordered like the pages of streamBlocksByTimestamp, so they are read straight off the index
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_v2_timestamp ON blocks_v2(timestamp, height)");
+            stmt.execute(ADD_DIFFICULTY_BITS.formatted(Schema.V2.table));
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to initialize database", e);
+        }
+    }
+
+    private void initializeStatsTable() {
+        String createStatsTable = """
+            CREATE TABLE IF NOT EXISTS chain_stats (
+                table_name VARCHAR(32) PRIMARY KEY,
+                block_count BIGINT NOT NULL,
+                stats VARBINARY NOT NULL
+            )
+        """;
+
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(createStatsTable);
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to initialize database", e);
+        }
+    }
 
-            stmt.setString(1, block.getHash());
-            stmt.setString(2, block.getPreviousHash());
-            stmt.setString(3, block.getData());
-            stmt.setLong(4, block.getTimeStamp());
-            stmt.setInt(5, block.getNonce());
-            stmt.setInt(6, difficulty);
+    /**
+     * Reads the summary row of this schema's table. Blocks the row does not cover yet, because
+     * they were written before the row existed or copied by {@link #migrateToV2(int)}, are
+     * added to it. A row that covers more blocks than the table holds, or cannot be decoded,
+     * is rebuilt from all blocks.
+     */
+    private ChainStats loadChainStats() {
+        synchronized (statsLock) {
+            try (Connection conn = dataSource.getConnection()) {
+                ChainStats loaded = readStatsRow(conn);
+                int blocks = nextHeight(conn, schema);
+                if (loaded == null || loaded.getBlockCount() > blocks) {
+                    loaded = new ChainStats();
+                }
+                if (loaded.getBlockCount() < blocks) {
+                    recordStoredBlocks(conn, loaded);
+                    writeStatsRow(conn, loaded);
+                }
+                statsRowBlockCount = loaded.getBlockCount();
+                return loaded;
 
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to load chain statistics", e);
+            }
+        }
+    }
+
+    private ChainStats readStatsRow(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT block_count, stats FROM chain_stats WHERE table_name = ?")) {
+            stmt.setString(1, schema.table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                ChainStats loaded = ChainStats.fromByteArray(rs.getBytes("stats"));
+                return (loaded.getBlockCount() == rs.getLong("block_count")) ? loaded : null;
+            } catch (IllegalArgumentException e) {
+                System.err.println("Discarding unreadable chain statistics: " + e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    private void writeStatsRow(Connection conn, ChainStats stats) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(MERGE_STATS)) {
+            stmt.setString(1, schema.table);
+            stmt.setLong(2, stats.getBlockCount());
+            stmt.setBytes(3, stats.toByteArray());
             stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Records the blocks above the ones {@code stats} already covers, reading only the columns
+     * the statistics need
+     */
+    private void recordStoredBlocks(Connection conn, ChainStats stats) throws SQLException {
+        String sql = "SELECT timestamp, nonce, merkle_root IS NOT NULL AS has_merkle_root FROM " + schema.table +
+            " WHERE height >= ? ORDER BY height";
+        try (PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(DEFAULT_FETCH_SIZE);
+            stmt.setLong(1, stats.getBlockCount());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    stats.record(rs.getLong("timestamp"), rs.getInt("nonce"), rs.getBoolean("has_merkle_root"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies blocks from the v1 {@code blocks} table into {@code blocks_v2}, starting after
+     * the highest height already in {@code blocks_v2}, with one transaction per
+     * {@code batchSize} rows. The v1 table can keep taking reads and writes meanwhile; rows
+     * appended during the copy are picked up by later batches, and a migration that was
+     * interrupted resumes where it stopped. The v1 table is left in place. The v2 summary row
+     * catches up with the copied blocks when a v2 DAO next opens the database, or right away if
+     * this DAO uses v2.
+     *
+     * @return number of blocks copied
+     */
+    public long migrateToV2(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        if (!tableExists(Schema.V1.table)) {
+            return 0;
+        }
+        initializeTables();
+        initializeV2Table();
+
+        String selectSql = "SELECT height, " + Schema.V1.blockColumns + " FROM blocks " +
+            "WHERE height >= ? ORDER BY height LIMIT ?";
+        String insertSql = "INSERT INTO blocks_v2 (hash, previous_hash, payload, compressed, timestamp, nonce, " +
+            "difficulty, merkle_root, difficulty_bits, height) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        long migrated = 0;
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement select = conn.prepareStatement(selectSql);
+                 PreparedStatement insert = conn.prepareStatement(insertSql)) {
+                while (true) {
+                    int next = nextHeight(conn, Schema.V2);
+                    select.setInt(1, next);
+                    select.setInt(2, batchSize);
+
+                    int copied = 0;
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            int height = rs.getInt("height");
+                            bindV2(insert, readV1Block(rs));
+                            insert.setInt(10, height);
+                            insert.addBatch();
+                            copied++;
+                        }
+                    }
+                    if (copied == 0) {
+                        break;
+                    }
+                    insert.executeBatch();
+                    conn.commit();
+                    migrated += copied;
+                }
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to migrate blocks to the v2 schema", e);
+        }
+        if (schema == Schema.V2 && migrated > 0) {
+            stats = loadChainStats();
+        }
+        return migrated;
+    }
+
+    private boolean tableExists(String table) {
+        try (Connection conn = dataSource.getConnection();
+             ResultSet rs = conn.getMetaData().getTables(null, null, table.toUpperCase(), null)) {
+            return rs.next();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to inspect database", e);
+        }
+    }
+
+    private static int nextHeight(Connection conn, Schema schema) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(height), -1) + 1 FROM " + schema.table)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    public Schema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public void saveBlock(Block block) {
+        long startTime = System.nanoTime();
+        try {
+            insert(List.of(block));
+            metrics.recordSave(1, System.nanoTime() - startTime);
 
         } catch (SQLException e) {
             throw new RuntimeException("Failed to save block: " + block.getHash(), e);
         }
     }
 
-    public List<Block> loadBlockchain() {
-        String sql = "SELECT hash, previous_hash, data, timestamp, nonce FROM blocks ORDER BY id";
-        List<Block> blocks = new ArrayList<>();
+    /**
+     * Saves a block mined to {@code difficulty} hex digits, the unit the {@code difficulty}
+     * column is stored in
+     *
+     * @throws IllegalArgumentException if {@code difficulty} is not the block's recorded
+     *                                  difficulty in whole hex digits
+     * @deprecated the block records its difficulty; use {@link #saveBlock(Block)}
+     */
+    @Deprecated
+    public void saveBlock(Block block, int difficulty) {
+        if (difficulty != block.getDifficultyBits() / 4) {
+            throw new IllegalArgumentException(String.format(
+                "Difficulty %d does not match the %d bits block %s was mined to",
+                difficulty, block.getDifficultyBits(), block.getHash()));
+        }
+        saveBlock(block);
+    }
+
+    /**
+     * Saves several blocks with one JDBC batch and a single commit
+     */
+    @Override
+    public void saveBlocks(List<Block> blocks) {
+        if (blocks.isEmpty()) {
+            return;
+        }
+        long startTime = System.nanoTime();
+        try {
+            insert(blocks);
+            metrics.recordSave(blocks.size(), System.nanoTime() - startTime);
+
+        } catch (SQLException e) {
+            throw new RuntimeException(String.format("Failed to save %d blocks starting at %s",
+                blocks.size(), blocks.get(0).getHash()), e);
+        }
+    }
+
+    /**
+     * Inserts the blocks, in one transaction if there are several, then records them in the
+     * statistics and rewrites the summary row if it is due
+     */
+    private void insert(List<Block> blocks) throws SQLException {
+        synchronized (statsLock) {
+            try (Connection conn = dataSource.getConnection()) {
+                if (blocks.size() == 1) {
+                    try (PreparedStatement stmt = conn.prepareStatement(schema.insertSql)) {
+                        bindBlock(stmt, blocks.get(0));
+                        stmt.executeUpdate();
+                    }
+                } else {
+                    insertBatch(conn, blocks);
+                }
+                stats.recordAll(blocks);
+                if (stats.getBlockCount() - statsRowBlockCount >= STATS_ROW_INTERVAL) {
+                    saveStatsRow(conn);
+                }
+            }
+        }
+    }
+
+    private void insertBatch(Connection conn, List<Block> blocks) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (PreparedStatement stmt = conn.prepareStatement(schema.insertSql)) {
+            for (Block block : blocks) {
+                bindBlock(stmt, block);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Rewrites the summary row. The blocks are committed already, so a failure only leaves the
+     * row behind, to be caught up on open. Callers hold {@link #statsLock}.
+     */
+    private void saveStatsRow(Connection conn) {
+        try {
+            writeStatsRow(conn, stats);
+            statsRowBlockCount = stats.getBlockCount();
+        } catch (SQLException e) {
+            System.err.println("Failed to save chain statistics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Streams blocks in height order, from {@code fromHeight} up to but excluding
+     * {@code toHeight}, through a cursor that fetches {@link #DEFAULT_FETCH_SIZE} rows at a
+     * time instead of materializing the table.
+     */
+    @Override
+    public void forEachBlock(int fromHeight, int toHeight, Consumer<Block> consumer) {
+        String sql = "SELECT " + schema.blockColumns + " FROM " + schema.table + " WHERE height >= ? AND height < ? ORDER BY height";
 
         try (Connection conn = dataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
+             PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(DEFAULT_FETCH_SIZE);
+            stmt.setInt(1, fromHeight);
+            stmt.setInt(2, toHeight);
 
-            while (rs.next()) {
-                Block block = Block.fromDatabase(
-                    rs.getString("hash"),
-                    rs.getString("previous_hash"),
-                    rs.getString("data"),
-                    rs.getLong("timestamp"),
-                    rs.getInt("nonce")
-                );
-                blocks.add(block);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(readBlock(rs));
+                }
             }
 
         } catch (SQLException e) {
             throw new RuntimeException("Failed to load blockchain", e);
         }
+    }
+
+    /**
+     * Loads a single block by height, or returns {@code null} if there is none
+     */
+    @Override
+    public Block loadBlock(int height) {
+        String sql = "SELECT " + schema.blockColumns + " FROM " + schema.table + " WHERE height = ?";
 
-        return blocks;
+        long startTime = System.nanoTime();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, height);
+            try (ResultSet rs = stmt.executeQuery()) {
+                Block block = rs.next() ? readBlock(rs) : null;
+                metrics.recordLoad(System.nanoTime() - startTime);
+                return block;
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to load block at height " + height, e);
+        }
     }
 
-    public String getBlockchainStats() {
-        String sql = """
-            SELECT 
-                COUNT(*) as block_count,
-                MIN(timestamp) as earliest_block,
-                MAX(timestamp) as latest_block,
-                AVG(nonce) as avg_nonce
-            FROM blocks
-        """;
+    /**
+     * Loads a block by hash through the unique hash index
+     */
+    @Override
+    public Block loadBlockByHash(String hash) {
+        String sql = "SELECT " + schema.blockColumns + " FROM " + schema.table + " WHERE hash = ?";
+        if (schema == Schema.V2 && !StringUtil.isSha256Hex(hash)) {
+            return null;
+        }
 
+        long startTime = System.nanoTime();
         try (Connection conn = dataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            if (schema == Schema.V2) {
+                stmt.setBytes(1, StringUtil.fromHex(hash));
+            } else {
+                stmt.setString(1, hash);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                Block block = rs.next() ? readBlock(rs) : null;
+                metrics.recordLoad(System.nanoTime() - startTime);
+                return block;
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to load block " + hash, e);
+        }
+    }
+
+    /**
+     * Blocks with heights {@code fromHeight .. toHeight - 1} in height order, read one page of
+     * {@link #DEFAULT_PAGE_SIZE} blocks at a time.
+     *
+     * Each page borrows a pooled connection only while it is read, so a stream that is not read
+     * to the end holds no connection and need not be closed.
+     */
+    public Stream<Block> streamBlocks(int fromHeight, int toHeight) {
+        return streamBlocks(fromHeight, toHeight, DEFAULT_PAGE_SIZE);
+    }
 
-            if (rs.next()) {
-                return String.format(
-                    "Database Stats: %d blocks, Earliest: %d, Latest: %d, Avg Nonce: %.0f",
-                    rs.getInt("block_count"),
-                    rs.getLong("earliest_block"),
-                    rs.getLong("latest_block"),
-                    rs.getDouble("avg_nonce")
-                );
+    public Stream<Block> streamBlocks(int fromHeight, int toHeight, int pageSize) {
+        String sql = "SELECT height, " + schema.blockColumns + " FROM " + schema.table +
+            " WHERE height >= ? AND height < ? ORDER BY height LIMIT ?";
+        return pagedStream(sql, pageSize, (stmt, last) -> {
+            stmt.setInt(1, (last == null) ? fromHeight : last.height + 1);
+            stmt.setInt(2, toHeight);
+            stmt.setInt(3, pageSize);
+        });
+    }
+
+    /**
+     * Blocks with timestamps in {@code fromMillis .. toMillis - 1}, ordered by timestamp and
+     * then height, read one page of {@link #DEFAULT_PAGE_SIZE} blocks at a time through the
+     * timestamp index.
+     */
+    public Stream<Block> streamBlocksByTimestamp(long fromMillis, long toMillis) {
+        return streamBlocksByTimestamp(fromMillis, toMillis, DEFAULT_PAGE_SIZE);
+    }
+
+    public Stream<Block> streamBlocksByTimestamp(long fromMillis, long toMillis, int pageSize) {
+        // A page continues after the last (timestamp, height) of the page before
+        String sql = "SELECT height, " + schema.blockColumns + " FROM " + schema.table +
+            " WHERE timestamp >= ? AND timestamp < ? AND (timestamp > ? OR height > ?)" +
+            " ORDER BY timestamp, height LIMIT ?";
+        return pagedStream(sql, pageSize, (stmt, last) -> {
+            long from = (last == null) ? fromMillis : last.timestamp;
+            stmt.setLong(1, from);
+            stmt.setLong(2, toMillis);
+            stmt.setLong(3, from);
+            stmt.setInt(4, (last == null) ? -1 : last.height);
+            stmt.setInt(5, pageSize);
+        });
+    }
+
+    /**
+     * The block with the given hash and then its ancestors, following previous hashes back to
+     * the genesis block, read one page of {@link #DEFAULT_PAGE_SIZE} blocks at a time. Empty if
+     * no block has this hash.
+     *
+     * The table holds one chain by height, so the parent of the block at height h is the block
+     * at h - 1; pages are read down the height index and each block is checked to be the
+     * parent of the one before it.
+     *
+     * @throws IllegalStateException from the stream if a stored block does not link to the
+     *         block above it
+     */
+    public Stream<Block> streamAncestors(String hash) {
+        return streamAncestors(hash, DEFAULT_PAGE_SIZE);
+    }
+
+    public Stream<Block> streamAncestors(String hash, int pageSize) {
+        int startHeight = heightOf(hash);
+        if (startHeight < 0) {
+            return Stream.empty();
+        }
+        String sql = "SELECT height, " + schema.blockColumns + " FROM " + schema.table +
+            " WHERE height <= ? ORDER BY height DESC LIMIT ?";
+        return pagedStream(sql, pageSize, (stmt, last) -> {
+            stmt.setInt(1, (last == null) ? startHeight : last.height - 1);
+            stmt.setInt(2, pageSize);
+        }).map(new ParentLinkCheck(hash));
+    }
+
+    /**
+     * Height of the block with the given hash through the unique hash index, or -1 if there
+     * is none
+     */
+    private int heightOf(String hash) {
+        if (hash == null || (schema == Schema.V2 && !StringUtil.isSha256Hex(hash))) {
+            return -1;
+        }
+        String sql = "SELECT height FROM " + schema.table + " WHERE hash = ?";
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            if (schema == Schema.V2) {
+                stmt.setBytes(1, StringUtil.fromHex(hash));
+            } else {
+                stmt.setString(1, hash);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
             }
 
         } catch (SQLException e) {
-            System.err.println("Failed to get statistics: " + e.getMessage());
+            throw new RuntimeException("Failed to look up block " + hash, e);
+        }
+    }
+
+    private Stream<Block> pagedStream(String sql, int pageSize, PageBinder binder) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        PageIterator pages = new PageIterator(sql, pageSize, binder);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(pages::release);
+    }
+
+    private void bindBlock(PreparedStatement stmt, Block block) throws SQLException {
+        if (schema == Schema.V2) {
+            bindV2(stmt, block);
+            return;
+        }
+        stmt.setString(1, block.getHash());
+        stmt.setString(2, block.getPreviousHash());
+        stmt.setString(3, block.getData());
+        stmt.setLong(4, block.getTimeStamp());
+        stmt.setInt(5, block.getNonce());
+        stmt.setInt(6, block.getDifficultyBits() / 4);
+        stmt.setString(7, block.getMerkleRoot());
+        stmt.setInt(8, block.getDifficultyBits());
+    }
+
+    private void bindV2(PreparedStatement stmt, Block block) throws SQLException {
+        PayloadCodec.Payload payload = PayloadCodec.encodePayload(block.getData(), compressAboveBytes);
+        stmt.setBytes(1, PayloadCodec.encodeDigest(block.getHash()));
+        stmt.setBytes(2, PayloadCodec.encodeDigest(block.getPreviousHash()));
+        stmt.setBytes(3, payload.bytes);
+        stmt.setBoolean(4, payload.compressed);
+        stmt.setLong(5, block.getTimeStamp());
+        stmt.setInt(6, block.getNonce());
+        stmt.setInt(7, block.getDifficultyBits() / 4);
+        stmt.setBytes(8, block.getMerkleRoot() != null ? PayloadCodec.encodeDigest(block.getMerkleRoot()) : null);
+        stmt.setInt(9, block.getDifficultyBits());
+    }
+
+    private Block readBlock(ResultSet rs) throws SQLException {
+        if (schema == Schema.V2) {
+            return Block.fromDatabase(
+                PayloadCodec.decodeDigest(rs.getBytes("hash")),
+                PayloadCodec.decodeDigest(rs.getBytes("previous_hash")),
+                PayloadCodec.decodePayload(rs.getBytes("payload"), rs.getBoolean("compressed")),
+                rs.getLong("timestamp"),
+                rs.getInt("nonce"),
+                PayloadCodec.decodeDigest(rs.getBytes("merkle_root")),
+                readDifficultyBits(rs)
+            );
         }
+        return readV1Block(rs);
+    }
+
+    private static Block readV1Block(ResultSet rs) throws SQLException {
+        return Block.fromDatabase(
+            rs.getString("hash"),
+            rs.getString("previous_hash"),
+            rs.getString("data"),
+            rs.getLong("timestamp"),
+            rs.getInt("nonce"),
+            rs.getString("merkle_root"),
+            readDifficultyBits(rs)
+        );
+    }
+
+    private static int readDifficultyBits(ResultSet rs) throws SQLException {
+        int bits = rs.getInt("difficulty_bits");
+        return rs.wasNull() ? rs.getInt("difficulty") * 4 : bits;
+    }
+
+    /**
+     * Formatted from the maintained statistics; no query runs
+     */
+    @Override
+    public String getBlockchainStats() {
+        ChainStats current = stats;
+        return String.format(
+            "Database Stats: %d blocks, Earliest: %d, Latest: %d, Avg Nonce: %.0f",
+            current.getBlockCount(),
+            current.getFirstTimestamp(),
+            current.getLatestTimestamp(),
+            current.getNonceMean()
+        );
+    }
 
-        return "Statistics unavailable";
+    @Override
+    public ChainStats getChainStats() {
+        return stats.copy();
     }
 
+    /**
+     * Recomputes the statistics with one scan of the block table and overwrites the summary
+     * row. Saves wait until the rebuild is done.
+     */
+    @Override
+    public ChainStats rebuildChainStats() {
+        synchronized (statsLock) {
+            ChainStats rebuilt = new ChainStats();
+            try (Connection conn = dataSource.getConnection()) {
+                recordStoredBlocks(conn, rebuilt);
+                writeStatsRow(conn, rebuilt);
+
+            } catch (SQLException e) {
+                throw new RuntimeException("Failed to rebuild chain statistics", e);
+            }
+            stats = rebuilt;
+            statsRowBlockCount = rebuilt.getBlockCount();
+            return rebuilt.copy();
+        }
+    }
+
+    public PersistenceMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
     public void close() {
         if (dataSource != null && !dataSource.isClosed()) {
+            synchronized (statsLock) {
+                if (stats.getBlockCount() != statsRowBlockCount) {
+                    try (Connection conn = dataSource.getConnection()) {
+                        saveStatsRow(conn);
+                    } catch (SQLException e) {
+                        System.err.println("Failed to save chain statistics: " + e.getMessage());
+                    }
+                }
+            }
             dataSource.close();
         }
     }
+
+    /**
+     * Position of the last row of a page, which the next page continues after
+     */
+    private static final class PageKey {
+        final int height;
+        final long timestamp;
+
+        PageKey(int height, long timestamp) {
+            this.height = height;
+            this.timestamp = timestamp;
+        }
+    }
+
+    @FunctionalInterface
+    private interface PageBinder {
+        /** Binds the parameters for the page after {@code last}, or for the first page if it is null */
+        void bind(PreparedStatement stmt, PageKey last) throws SQLException;
+    }
+
+    /**
+     * Iterates over the rows of a keyset-paginated query, holding one page in memory. Each page
+     * borrows a pooled connection only while it is read. The next page is bound to continue after
+     * the last row, so no cursor is held between pages. A stream that is abandoned half-read
+     * holds no connection. H2 caches the parsed statement per pooled connection.
+     */
+    private final class PageIterator implements Iterator<Block> {
+        private final String sql;
+        private final int pageSize;
+        private final PageBinder binder;
+        private final ArrayDeque<Block> page;
+        private PageKey last;
+        private boolean exhausted;
+
+        PageIterator(String sql, int pageSize, PageBinder binder) {
+            this.sql = sql;
+            this.pageSize = pageSize;
+            this.binder = binder;
+            this.page = new ArrayDeque<>(Math.min(pageSize, DEFAULT_FETCH_SIZE));
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (page.isEmpty() && !exhausted) {
+                fetchPage();
+            }
+            return !page.isEmpty();
+        }
+
+        @Override
+        public Block next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.removeFirst();
+        }
+
+        private void fetchPage() {
+            long startTime = System.nanoTime();
+            try (Connection conn = dataSource.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                binder.bind(stmt, last);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        int height = rs.getInt("height");
+                        Block block = readBlock(rs);
+                        page.addLast(block);
+                        last = new PageKey(height, block.getTimeStamp());
+                    }
+                }
+                metrics.recordLoad(System.nanoTime() - startTime);
+                if (page.size() < pageSize) {
+                    exhausted = true;
+                }
+
+            } catch (SQLException e) {
+                exhausted = true;
+                throw new RuntimeException("Failed to load a page of blocks", e);
+            }
+        }
+
+        /** Ends the iteration, dropping the rows of the current page. */
+        void release() {
+            exhausted = true;
+            page.clear();
+        }
+    }
+
+    /**
+     * Passes blocks through while each one is the parent of the block before it
+     */
+    private static final class ParentLinkCheck implements UnaryOperator<Block> {
+        private String expectedHash;
+
+        ParentLinkCheck(String hash) {
+            this.expectedHash = hash;
+        }
+
+        @Override
+        public Block apply(Block block) {
+            if (!block.getHash().equals(expectedHash)) {
+                throw new IllegalStateException(String.format(
+                    "Block %s does not match the previous hash %s of the block above it", block.getHash(), expectedHash));
+            }
+            expectedHash = block.getPreviousHash();
+            return block;
+        }
+    }
+
+    /**
+     * Feeds Hikari's connection acquisition times into the persistence metrics
+     */
+    private static final class ConnectionWaitTracker implements IMetricsTracker {
+        private final PersistenceMetrics metrics;
+
+        ConnectionWaitTracker(PersistenceMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            metrics.recordConnectionWait(elapsedAcquiredNanos);
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            metrics.recordConnectionTimeout();
+        }
+    }
 }
@@ -0,0 +1,461 @@
+package src.main.java.blockchain.persistence;
+
+import src.main.java.blockchain.core.Block;
+import src.main.java.blockchain.core.ChainStats;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only block store for single-node deployments, without a database on the hot path.
+ *
+ * Blocks are written as length-prefixed binary records ({@link BlockRecordCodec}) into
+ * segment files {@code segment-NNNNN.log} of bounded size. A fixed-width index file
+ * {@code blocks.idx} holds one 8-byte position per height (segment number in the high bits,
+ * offset in the low 40 bits). An append is a sequential write to the segment and the index,
+ * optionally followed by {@code force()}. Reads go through read-only {@link MappedByteBuffer}s,
+ * except for records appended since a segment was last mapped, which are read from its channel.
+ *
+ * Each record is {@code int length, int crc32, payload}. On open, index entries pointing at
+ * incomplete records are dropped, complete records that were written but never indexed are
+ * indexed, and a torn last record left by a crash is truncated away.
+ *
+ * {@link ChainStats} are kept in memory and written to {@code stats.bin} by {@link #force()} and
+ * {@link #close()}. On open, blocks appended after the file was last written are added to them.
+ */
+public class MappedBlockLog implements BlockStore {
+    public static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int INDEX_ENTRY_BYTES = 8;
+    private static final int OFFSET_BITS = 40;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+    private static final String INDEX_FILE = "blocks.idx";
+    private static final String STATS_FILE = "stats.bin";
+
+    private final Path directory;
+    private final long segmentSize;
+    private final boolean forceOnAppend;
+    private final List<Segment> segments = new ArrayList<>();
+    private final FileChannel indexChannel;
+    private final CRC32 crc = new CRC32();
+
+    private long[] positions = new long[1024];
+    private int count;
+    private ChainStats stats;
+
+    public MappedBlockLog(Path directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE, false);
+    }
+
+    /**
+     * @param directory directory holding the segment and index files; created if missing
+     * @param segmentSize size at which a new segment file is started, at most 2 GB so a
+     *                    segment fits one mapping
+     * @param forceOnAppend whether every append is forced to the storage device
+     */
+    public MappedBlockLog(Path directory, long segmentSize, boolean forceOnAppend) {
+        if (segmentSize <= RECORD_HEADER_BYTES || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.forceOnAppend = forceOnAppend;
+
+        try {
+            Files.createDirectories(directory);
+            openSegments();
+            this.indexChannel = FileChannel.open(directory.resolve(INDEX_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            loadIndex();
+            recover();
+            this.stats = loadStats();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open block log in " + directory, e);
+        }
+    }
+
+    @Override
+    public synchronized void saveBlock(Block block) {
+        try {
+            append(block);
+            if (forceOnAppend) {
+                forceLog();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save block: " + block.getHash(), e);
+        }
+    }
+
+    @Override
+    public synchronized void saveBlocks(List<Block> blocks) {
+        try {
+            for (Block block : blocks) {
+                append(block);
+            }
+            if (forceOnAppend && !blocks.isEmpty()) {
+                forceLog();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to save %d blocks", blocks.size()), e);
+        }
+    }
+
+    @Override
+    public void forEachBlock(int fromHeight, int toHeight, Consumer<Block> consumer) {
+        for (int height = Math.max(0, fromHeight); height < Math.min(toHeight, size()); height++) {
+            consumer.accept(loadBlock(height));
+        }
+    }
+
+    @Override
+    public synchronized Block loadBlock(int height) {
+        if (height < 0 || height >= count) {
+            return null;
+        }
+        ByteBuffer record = readRecord(positions[height]);
+        if (record == null) {
+            throw new IllegalStateException("Corrupt block record at height " + height);
+        }
+        return BlockRecordCodec.decode(record);
+    }
+
+    /**
+     * The log has no hash index of its own ({@code Blockchain} keeps one in memory), so this
+     * scans backwards from the newest block.
+     */
+    @Override
+    public Block loadBlockByHash(String hash) {
+        for (int height = size() - 1; height >= 0; height--) {
+            Block block = loadBlock(height);
+            if (block.getHash().equals(hash)) {
+                return block;
+            }
+        }
+        return null;
+    }
+
+    /** Number of blocks in the log. */
+    public synchronized int size() {
+        return count;
+    }
+
+    @Override
+    public synchronized String getBlockchainStats() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.size;
+        }
+        return String.format("Block log stats: %d blocks in %d segments, %,d bytes", count, segments.size(), bytes);
+    }
+
+    @Override
+    public synchronized ChainStats getChainStats() {
+        return stats.copy();
+    }
+
+    /**
+     * Recomputes the statistics by decoding every block and rewrites the statistics file
+     */
+    @Override
+    public synchronized ChainStats rebuildChainStats() {
+        ChainStats rebuilt = new ChainStats();
+        for (int height = 0; height < count; height++) {
+            rebuilt.record(loadBlock(height));
+        }
+        stats = rebuilt;
+        try {
+            writeStats();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write chain statistics in " + directory, e);
+        }
+        return rebuilt.copy();
+    }
+
+    /**
+     * Forces all appended records and index entries to the storage device, and writes the
+     * statistics file
+     */
+    public synchronized void force() throws IOException {
+        forceLog();
+        writeStats();
+    }
+
+    private void forceLog() throws IOException {
+        if (!segments.isEmpty()) {
+            segments.get(segments.size() - 1).channel.force(false);
+        }
+        indexChannel.force(false);
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            writeStats();
+            for (Segment segment : segments) {
+                segment.channel.close();
+            }
+            indexChannel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close block log in " + directory, e);
+        }
+    }
+
+    private void append(Block block) throws IOException {
+        byte[] payload = BlockRecordCodec.encode(block);
+        int recordSize = RECORD_HEADER_BYTES + payload.length;
+
+        Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (segment == null || (segment.size > 0 && segment.size + recordSize > segmentSize)) {
+            segment = createSegment(segments.size());
+        }
+
+        crc.reset();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(recordSize);
+        record.putInt(payload.length);
+        record.putInt((int) crc.getValue());
+        record.put(payload);
+        record.flip();
+
+        long offset = segment.size;
+        writeFully(segment.channel, record, offset);
+        segment.size += recordSize;
+
+        appendIndexEntry(((long) (segments.size() - 1) << OFFSET_BITS) | offset);
+        stats.record(block);
+    }
+
+    private void appendIndexEntry(long position) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+        entry.putLong(position);
+        entry.flip();
+        writeFully(indexChannel, entry, (long) count * INDEX_ENTRY_BYTES);
+
+        if (count == positions.length) {
+            positions = Arrays.copyOf(positions, count * 2);
+        }
+        positions[count++] = position;
+    }
+
+    /**
+     * Returns the payload of the record at {@code position}, or {@code null} if the record is
+     * incomplete or fails its checksum.
+     */
+    private ByteBuffer readRecord(long position) {
+        int segmentIndex = (int) (position >>> OFFSET_BITS);
+        long offset = position & OFFSET_MASK;
+        if (segmentIndex >= segments.size()) {
+            return null;
+        }
+        Segment segment = segments.get(segmentIndex);
+        if (offset + RECORD_HEADER_BYTES > segment.size) {
+            return null;
+        }
+
+        ByteBuffer header = segment.read(offset, RECORD_HEADER_BYTES);
+        int length = header.getInt(0);
+        int checksum = header.getInt(4);
+        if (length <= 0 || offset + RECORD_HEADER_BYTES + length > segment.size) {
+            return null;
+        }
+
+        ByteBuffer payload = segment.read(offset + RECORD_HEADER_BYTES, length);
+
+        crc.reset();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue() == checksum ? payload : null;
+    }
+
+    private void openSegments() throws IOException {
+        for (int i = 0; ; i++) {
+            Path path = segmentPath(i);
+            if (!Files.exists(path)) {
+                break;
+            }
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segments.add(new Segment(channel, channel.size()));
+        }
+    }
+
+    private Segment createSegment(int index) throws IOException {
+        FileChannel channel = FileChannel.open(segmentPath(index),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(channel, 0);
+        segments.add(segment);
+        return segment;
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(String.format("segment-%05d.log", index));
+    }
+
+    private void loadIndex() throws IOException {
+        long entries = indexChannel.size() / INDEX_ENTRY_BYTES;
+        if (entries > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Block index too large: " + entries + " entries");
+        }
+        count = (int) entries;
+        positions = new long[Math.max(1024, count)];
+        if (count > 0) {
+            MappedByteBuffer map = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, (long) count * INDEX_ENTRY_BYTES);
+            map.asLongBuffer().get(positions, 0, count);
+        }
+    }
+
+    /**
+     * Reads the statistics file and adds the blocks appended after it was written. A file that
+     * is missing, unreadable or covers more blocks than the log holds is replaced by statistics
+     * over all blocks.
+     */
+    private ChainStats loadStats() {
+        ChainStats loaded = null;
+        Path file = directory.resolve(STATS_FILE);
+        try {
+            if (Files.exists(file)) {
+                loaded = ChainStats.fromByteArray(Files.readAllBytes(file));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Discarding unreadable chain statistics: " + e.getMessage());
+        }
+        if (loaded == null || loaded.getBlockCount() > count) {
+            loaded = new ChainStats();
+        }
+        for (int height = (int) loaded.getBlockCount(); height < count; height++) {
+            loaded.record(loadBlock(height));
+        }
+        return loaded;
+    }
+
+    /**
+     * Replaces the statistics file through a rename, so a crash leaves either the old or the
+     * new file
+     */
+    private void writeStats() throws IOException {
+        Path file = directory.resolve(STATS_FILE);
+        Path temporary = directory.resolve(STATS_FILE + ".tmp");
+        Files.write(temporary, stats.toByteArray());
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Brings index and segments back in line after an unclean shutdown.
+     */
+    private void recover() throws IOException {
+        // Index entries whose record never fully reached the segment
+        int indexed = count;
+        while (count > 0 && readRecord(positions[count - 1]) == null) {
+            count--;
+        }
+
+        // Complete records written after the last index entry are indexed; the first
+        // incomplete one is a torn write and everything from it onwards is cut off
+        int segmentIndex = 0;
+        long offset = 0;
+        if (count > 0) {
+            long last = positions[count - 1];
+            segmentIndex = (int) (last >>> OFFSET_BITS);
+            offset = (last & OFFSET_MASK) + RECORD_HEADER_BYTES + readRecord(last).remaining();
+        }
+        indexChannel.truncate((long) count * INDEX_ENTRY_BYTES);
+        int recovered = 0;
+
+        scan:
+        for (; segmentIndex < segments.size(); segmentIndex++, offset = 0) {
+            Segment segment = segments.get(segmentIndex);
+            while (offset < segment.size) {
+                long position = ((long) segmentIndex << OFFSET_BITS) | offset;
+                ByteBuffer record = readRecord(position);
+                if (record == null) {
+                    truncateFrom(segmentIndex, offset);
+                    break scan;
+                }
+                appendIndexEntry(position);
+                recovered++;
+                offset += RECORD_HEADER_BYTES + record.remaining();
+            }
+        }
+
+        if (recovered > 0 || indexed != count) {
+            System.out.printf("Block log recovered: %d index entries dropped, %d records re-indexed%n",
+                indexed - (count - recovered), recovered);
+        }
+    }
+
+    private void truncateFrom(int segmentIndex, long offset) throws IOException {
+        Segment segment = segments.get(segmentIndex);
+        System.out.printf("Block log: truncating torn record in segment %d at offset %d%n", segmentIndex, offset);
+        segment.channel.truncate(offset);
+        segment.size = offset;
+        segment.mapped = null;
+
+        while (segments.size() > segmentIndex + 1) {
+            Segment removed = segments.remove(segments.size() - 1);
+            removed.channel.close();
+            Files.deleteIfExists(segmentPath(segments.size()));
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * A segment file and its read-only mapping. A mapping cannot reach past the end of the file,
+     * so the segment is re-mapped only once it has doubled since it was last mapped, and reads
+     * beyond the mapped length in between are positional reads of the channel. Appending to the
+     * tail segment therefore costs a logarithmic number of mappings, not one per block.
+     */
+    private static final class Segment {
+        final FileChannel channel;
+        long size;
+        MappedByteBuffer mapped;
+
+        Segment(FileChannel channel, long size) {
+            this.channel = channel;
+            this.size = size;
+        }
+
+        /**
+         * Returns {@code length} bytes at {@code offset}, which must lie within {@link #size}
+         */
+        ByteBuffer read(long offset, int length) {
+            long end = offset + length;
+            try {
+                if (mapped == null || (end > mapped.capacity() && size >= 2L * mapped.capacity())) {
+                    mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                }
+                if (end <= mapped.capacity()) {
+                    ByteBuffer slice = mapped.duplicate();
+                    slice.position((int) offset);
+                    slice.limit((int) end);
+                    return slice.slice();
+                }
+                ByteBuffer buffer = ByteBuffer.allocate(length);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, offset + buffer.position()) < 0) {
+                        throw new EOFException("Block log segment ends before offset " + end);
+                    }
+                }
+                return buffer.flip();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read block log segment", e);
+            }
+        }
+    }
+}
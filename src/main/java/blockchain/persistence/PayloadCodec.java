@@ -0,0 +1,124 @@
+package src.main.java.blockchain.persistence;
+
+import src.main.java.blockchain.utils.StringUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Column encodings of the v2 block table: raw digests and optionally deflated payloads.
+ *
+ * Setting up a zlib stream costs more than deflating a typical block, so each thread keeps
+ * one {@link Deflater} and one {@link Inflater} and resets them between payloads. Payloads
+ * are inflated straight into a per-thread buffer that grows to the largest payload seen.
+ */
+final class PayloadCodec {
+    private static final byte[] NO_DIGEST = new byte[0];
+    private static final String GENESIS_PREVIOUS_HASH = "0";
+    private static final int CHUNK_BYTES = 8192;
+
+    private static final ThreadLocal<Deflater> DEFLATERS =
+        ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION));
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(Inflater::new);
+    private static final ThreadLocal<byte[]> CHUNKS = ThreadLocal.withInitial(() -> new byte[CHUNK_BYTES]);
+
+    private PayloadCodec() {
+    }
+
+    /**
+     * A block's data as stored: UTF-8, deflated when that is worth it
+     */
+    static final class Payload {
+        final byte[] bytes;
+        final boolean compressed;
+
+        Payload(byte[] bytes, boolean compressed) {
+            this.bytes = bytes;
+            this.compressed = compressed;
+        }
+    }
+
+    /**
+     * Encodes the data as UTF-8 and deflates it if it is longer than
+     * {@code compressAboveBytes} and deflating actually makes it smaller.
+     */
+    static Payload encodePayload(String data, int compressAboveBytes) {
+        byte[] utf8 = data.getBytes(StandardCharsets.UTF_8);
+        if (utf8.length <= compressAboveBytes) {
+            return new Payload(utf8, false);
+        }
+
+        Deflater deflater = DEFLATERS.get();
+        try {
+            deflater.setInput(utf8);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(utf8.length / 2);
+            byte[] chunk = CHUNKS.get();
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+                if (out.size() >= utf8.length) {
+                    return new Payload(utf8, false);
+                }
+            }
+            return new Payload(out.toByteArray(), true);
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    static String decodePayload(byte[] bytes, boolean compressed) {
+        if (!compressed) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        Inflater inflater = INFLATERS.get();
+        try {
+            inflater.setInput(bytes);
+            byte[] out = CHUNKS.get();
+            int length = 0;
+            while (!inflater.finished()) {
+                if (length == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                    CHUNKS.set(out);
+                }
+                int inflated = inflater.inflate(out, length, out.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated compressed block payload");
+                }
+                length += inflated;
+            }
+            return new String(out, 0, length, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt compressed block payload", e);
+        } finally {
+            inflater.reset();
+        }
+    }
+
+    /**
+     * Raw 32 bytes of a hex digest; the genesis block's {@code "0"} previous hash is stored
+     * as an empty value.
+     *
+     * @throws IllegalArgumentException for any other value that is not a SHA-256 hex digest
+     */
+    static byte[] encodeDigest(String digest) {
+        if (GENESIS_PREVIOUS_HASH.equals(digest)) {
+            return NO_DIGEST;
+        }
+        if (!StringUtil.isSha256Hex(digest)) {
+            throw new IllegalArgumentException("Not a SHA-256 hex digest: " + digest);
+        }
+        return StringUtil.fromHex(digest);
+    }
+
+    static String decodeDigest(byte[] raw) {
+        if (raw == null) {
+            return null;
+        }
+        return raw.length == 0 ? GENESIS_PREVIOUS_HASH : StringUtil.toHex(raw);
+    }
+}
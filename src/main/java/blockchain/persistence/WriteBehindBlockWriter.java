@@ -0,0 +1,265 @@
+package src.main.java.blockchain.persistence;
+
+import src.main.java.blockchain.core.Block;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind persistence for a {@link BlockStore}.
+ *
+ * Blocks are put into a bounded queue and a dedicated writer thread drains it, saving each
+ * group with one {@link BlockStore#saveBlocks} call (one JDBC batch and one commit for
+ * {@link BlockchainDAO}). A group is committed once it reaches
+ * {@link DurabilityPolicy#getFlushEveryBlocks()} blocks or its oldest block has waited
+ * {@link DurabilityPolicy#getFlushIntervalMillis()}, whichever comes first. When the queue is
+ * full, {@link #submit} blocks the caller until the writer catches up. {@link #close()}
+ * writes everything still queued before it returns.
+ */
+public class WriteBehindBlockWriter implements AutoCloseable {
+
+    /**
+     * When queued blocks must be committed, and how many may be queued at most
+     */
+    public static final class DurabilityPolicy {
+        public static final DurabilityPolicy DEFAULT = new DurabilityPolicy(256, 50, 4096);
+
+        private final int flushEveryBlocks;
+        private final long flushIntervalMillis;
+        private final int queueCapacity;
+
+        /**
+         * @param flushEveryBlocks commit as soon as this many blocks are pending
+         * @param flushIntervalMillis commit when the oldest pending block has waited this long
+         * @param queueCapacity maximum number of queued blocks before submitters are blocked
+         */
+        public DurabilityPolicy(int flushEveryBlocks, long flushIntervalMillis, int queueCapacity) {
+            if (flushEveryBlocks < 1 || flushIntervalMillis < 0 || queueCapacity < 1) {
+                throw new IllegalArgumentException("Invalid durability policy");
+            }
+            this.flushEveryBlocks = flushEveryBlocks;
+            this.flushIntervalMillis = flushIntervalMillis;
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getFlushEveryBlocks() { return flushEveryBlocks; }
+        public long getFlushIntervalMillis() { return flushIntervalMillis; }
+        public int getQueueCapacity() { return queueCapacity; }
+    }
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final BlockStore store;
+    private final DurabilityPolicy policy;
+    private final BlockingQueue<Block> queue;
+    private final Thread writerThread;
+    private final Object submitLock = new Object();
+    private final Object progressLock = new Object();
+
+    // Commit futures in submission order, each with the submitted count it waits for
+    private final ArrayDeque<CommitWaiter> commitWaiters = new ArrayDeque<>();
+
+    private long submittedCount;
+    private long writtenCount;
+    private volatile boolean closed;
+    private volatile RuntimeException failure;
+
+    public WriteBehindBlockWriter(BlockStore store, DurabilityPolicy policy) {
+        this.store = store;
+        this.policy = policy;
+        this.queue = new ArrayBlockingQueue<>(policy.getQueueCapacity());
+        this.writerThread = new Thread(this::drainLoop, "block-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Queues a block for persistence, blocking while the queue is full.
+     *
+     * @return future completed on the writer thread once the block has been committed, or
+     *         completed exceptionally if its group failed to save
+     * @throws IllegalStateException if the writer is closed or an earlier group failed to save
+     */
+    public CompletableFuture<Void> submit(Block block) {
+        CompletableFuture<Void> committed = new CompletableFuture<>();
+        boolean alreadyWritten;
+        synchronized (submitLock) {
+            checkUsable();
+            try {
+                queue.put(block);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while queueing block for persistence", e);
+            }
+            synchronized (progressLock) {
+                submittedCount++;
+                // The writer may already have committed the block's group, in which case no
+                // later group would complete the waiter
+                alreadyWritten = submittedCount <= writtenCount;
+                if (!alreadyWritten) {
+                    commitWaiters.addLast(new CommitWaiter(submittedCount, committed));
+                }
+            }
+        }
+        if (alreadyWritten) {
+            committed.complete(null);
+        } else if (failure != null) {
+            // The writer stopped after this block was queued and may never reach it
+            committed.completeExceptionally(failure);
+        }
+        return committed;
+    }
+
+    /**
+     * Waits until every block submitted before this call has been committed.
+     */
+    public void flush() {
+        synchronized (progressLock) {
+            long target = submittedCount;
+            while (writtenCount < target && failure == null) {
+                try {
+                    progressLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while flushing blocks", e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /** Number of blocks queued but not yet committed. */
+    public int getPendingCount() {
+        synchronized (progressLock) {
+            // Briefly negative while a block committed by the writer is still being counted in submit
+            return (int) Math.max(0, submittedCount - writtenCount);
+        }
+    }
+
+    /**
+     * Writes every queued block, stops the writer thread and returns.
+     *
+     * @throws RuntimeException if any group failed to save
+     */
+    @Override
+    public void close() {
+        synchronized (submitLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the block writer", e);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void checkUsable() {
+        if (failure != null) {
+            throw new IllegalStateException("Block writer failed", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Block writer is closed");
+        }
+    }
+
+    private void drainLoop() {
+        List<Block> group = new ArrayList<>(policy.getFlushEveryBlocks());
+        boolean running = true;
+        while (running && failure == null) {
+            running = fillGroup(group);
+            writeGroup(group);
+        }
+    }
+
+    /**
+     * Waits for the first block, then keeps collecting until the group is full or the first
+     * block has waited for the flush interval. Returns {@code false} once the writer is
+     * closed and the queue is empty.
+     */
+    private boolean fillGroup(List<Block> group) {
+        try {
+            Block first = null;
+            while (first == null) {
+                if (closed && queue.isEmpty()) {
+                    return false;
+                }
+                first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            group.add(first);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(policy.getFlushIntervalMillis());
+
+            while (group.size() < policy.getFlushEveryBlocks()) {
+                queue.drainTo(group, policy.getFlushEveryBlocks() - group.size());
+                long remaining = deadline - System.nanoTime();
+                if (group.size() >= policy.getFlushEveryBlocks() || remaining <= 0 || closed) {
+                    break;
+                }
+                Block next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    break;
+                }
+                group.add(next);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            // Not expected: the writer is stopped through the closed flag
+            Thread.currentThread().interrupt();
+            return !group.isEmpty();
+        }
+    }
+
+    private void writeGroup(List<Block> group) {
+        if (group.isEmpty()) {
+            return;
+        }
+        try {
+            store.saveBlocks(group);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        List<CommitWaiter> done = new ArrayList<>();
+        synchronized (progressLock) {
+            if (failure == null) {
+                writtenCount += group.size();
+            }
+            while (!commitWaiters.isEmpty() && (failure != null || commitWaiters.peekFirst().count <= writtenCount)) {
+                done.add(commitWaiters.pollFirst());
+            }
+            progressLock.notifyAll();
+        }
+        group.clear();
+
+        // Completed outside the lock, as dependent actions run on this thread
+        for (CommitWaiter waiter : done) {
+            if (failure == null) {
+                waiter.future.complete(null);
+            } else {
+                waiter.future.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private static final class CommitWaiter {
+        final long count;
+        final CompletableFuture<Void> future;
+
+        CommitWaiter(long count, CompletableFuture<Void> future) {
+            this.count = count;
+            this.future = future;
+        }
+    }
+}
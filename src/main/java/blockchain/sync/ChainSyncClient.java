@@ -0,0 +1,575 @@
+package src.main.java.blockchain.sync;
+
+import src.main.java.blockchain.core.Block;
+import src.main.java.blockchain.core.ChainValidator.Violation;
+import src.main.java.blockchain.core.DifficultyPolicy;
+import src.main.java.blockchain.hashing.HashEngine;
+import src.main.java.blockchain.hashing.HashEngines;
+import src.main.java.blockchain.persistence.BlockStore;
+import src.main.java.blockchain.utils.StringUtil;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Brings a block store up to date with a leader's chain, headers first.
+ *
+ * The follower asks for headers in batches and keeps several requests in flight on one
+ * connection. Each batch of headers is checked on the verifier pool while later batches are
+ * still arriving:
+ * - each header links to the one before it;
+ * - it records a difficulty the policy accepts at its height;
+ * - its hash meets the recorded difficulty;
+ * - the hash itself is recomputed for blocks with a Merkle root, since their header holds all
+ *   the hash covers.
+ * Only once a batch's headers have passed are its payloads requested. The payloads are checked
+ * on the pool as well: each block's hash is recomputed from its data, or the entries are checked
+ * against the Merkle root. The verified batches are then saved in height order, one
+ * {@link BlockStore#saveBlocks} call per batch, on a writer thread.
+ *
+ * Syncing resumes from the blocks already in the store. Their tip must be a block of the
+ * leader's chain, or the first new header fails to link. Once the follower has saved every block
+ * up to the leader's tip, it asks for the tip again and carries on if the chain has grown. The
+ * leader must mine to the same difficulty policy. A block that fails any check stops the sync
+ * with an {@link IllegalStateException} naming the lowest failing height. Batches below it that
+ * were already verified are still saved.
+ */
+public class ChainSyncClient {
+    public static final int DEFAULT_BATCH_SIZE = 2000;
+    public static final int DEFAULT_PIPELINE_DEPTH = 8;
+
+    private static final long POLL_MILLIS = 100;
+
+    private final BlockStore store;
+    private final DifficultyPolicy difficultyPolicy;
+    private final HashEngine hashEngine;
+    private final Executor verifier;
+    private final int batchSize;
+    private final int pipelineDepth;
+    private volatile int syncedHeight;
+
+    public ChainSyncClient(BlockStore store, DifficultyPolicy difficultyPolicy) {
+        this(store, difficultyPolicy, HashEngines.defaultEngine(), ForkJoinPool.commonPool(),
+            DEFAULT_BATCH_SIZE, DEFAULT_PIPELINE_DEPTH);
+    }
+
+    /**
+     * @param verifier runs the header and payload checks
+     * @param batchSize blocks per request, at most {@value SyncProtocol#MAX_BATCH}
+     * @param pipelineDepth header requests, and separately payload requests, kept in flight
+     */
+    public ChainSyncClient(BlockStore store, DifficultyPolicy difficultyPolicy, HashEngine hashEngine,
+                           Executor verifier, int batchSize, int pipelineDepth) {
+        if (batchSize < 1 || batchSize > SyncProtocol.MAX_BATCH) {
+            throw new IllegalArgumentException("Batch size must be between 1 and " + SyncProtocol.MAX_BATCH);
+        }
+        if (pipelineDepth < 1) {
+            throw new IllegalArgumentException("Pipeline depth must be positive");
+        }
+        this.store = store;
+        this.difficultyPolicy = difficultyPolicy;
+        this.hashEngine = hashEngine;
+        this.verifier = verifier;
+        this.batchSize = batchSize;
+        this.pipelineDepth = pipelineDepth;
+    }
+
+    /**
+     * Outcome of a sync
+     */
+    public static final class Result {
+        private final int fromHeight;
+        private final int toHeight;
+        private final long elapsedNanos;
+        private final long bytesReceived;
+
+        Result(int fromHeight, int toHeight, long elapsedNanos, long bytesReceived) {
+            this.fromHeight = fromHeight;
+            this.toHeight = toHeight;
+            this.elapsedNanos = elapsedNanos;
+            this.bytesReceived = bytesReceived;
+        }
+
+        /** Number of blocks the store held before the sync */
+        public int getFromHeight() { return fromHeight; }
+        /** Number of blocks the store holds after the sync */
+        public int getToHeight() { return toHeight; }
+        public int getBlocks() { return toHeight - fromHeight; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        public long getBytesReceived() { return bytesReceived; }
+
+        public double getBlocksPerSecond() {
+            return getBlocks() / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            if (getBlocks() == 0) {
+                return String.format("already at the leader's %d blocks", toHeight);
+            }
+            return String.format("synced blocks %d .. %d in %.1f s (%,.0f blocks/s, %.1f MB received)",
+                fromHeight, toHeight - 1, elapsedNanos / 1e9, getBlocksPerSecond(), bytesReceived / 1e6);
+        }
+    }
+
+    /**
+     * Syncs from the leader at {@code leader} until the store holds the leader's whole chain
+     *
+     * @throws IllegalStateException if the leader sends a block that fails verification, mines
+     *         to a different difficulty policy, has fewer blocks than the store or refuses a request
+     * @throws UncheckedIOException if the connection fails or the leader sends a malformed frame
+     */
+    public Result sync(InetSocketAddress leader) {
+        long startTime = System.nanoTime();
+        Session session = new Session();
+        try {
+            session.run(leader);
+        } finally {
+            session.close();
+        }
+        return new Result(session.startHeight, syncedHeight, System.nanoTime() - startTime, session.bytesReceived);
+    }
+
+    /** Number of blocks in the store, as of the last batch a running sync saved */
+    public int getSyncedHeight() {
+        return syncedHeight;
+    }
+
+    /**
+     * Blocks requested with one header request and one payload request, and what has become of
+     * them. All fields are used by the network thread only; the futures complete on the
+     * verifier pool and the writer thread.
+     */
+    private static final class Batch {
+        final int from;
+        final int count;
+        SyncProtocol.Header[] headers;
+        CompletableFuture<Void> headersVerified;
+        boolean payloadsRequested;
+        CompletableFuture<List<Block>> blocksVerified;
+        CompletableFuture<Void> saved;
+
+        Batch(int from, int count) {
+            this.from = from;
+            this.count = count;
+        }
+    }
+
+    /**
+     * State of one {@link #sync} call, driven by the calling thread
+     */
+    private final class Session {
+        private final ArrayDeque<Batch> batches = new ArrayDeque<>();
+        private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        private final ExecutorService writer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "chain-sync-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private Selector selector;
+        private SocketChannel channel;
+        private ByteBuffer in = ByteBuffer.allocate(1 << 20);
+        long bytesReceived;
+
+        // Difficulty and timestamp claimed by each header received, by height, for retargeting
+        private byte[] difficultyBits = new byte[0];
+        private long[] timeStamps = new long[0];
+
+        int startHeight;
+        private String lastHash;       // hash of the newest block stored or header received
+        private int tip = -1;          // leader's chain size as last reported
+        private boolean tipRequested;
+        private boolean tipConfirmed;  // the leader reported the same tip twice
+        private int nextHeaderHeight;
+        private int headerRequests;
+        private int payloadRequests;
+        // Save of the newest batch handed to the writer; each save waits for the one before
+        private CompletableFuture<Void> lastSaved = CompletableFuture.completedFuture(null);
+
+        void run(InetSocketAddress leader) {
+            resumeFromStore();
+            try {
+                selector = Selector.open();
+                channel = SocketChannel.open(leader);
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.register(selector, SelectionKey.OP_READ);
+
+                while (true) {
+                    collectCompleted();
+                    if (!requestMore()) {
+                        return;
+                    }
+                    writeRequests();
+                    selector.select(POLL_MILLIS);
+                    selector.selectedKeys().clear();
+                    readResponses();
+                    writeRequests();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Sync with " + leader + " failed", e);
+            }
+        }
+
+        void close() {
+            writer.shutdown();
+            try {
+                // Batches that passed verification are still saved
+                writer.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (Batch batch : batches) {
+                if (batch.saved == null || !batch.saved.isDone() || batch.saved.isCompletedExceptionally()) {
+                    break;
+                }
+                syncedHeight = batch.from + batch.count;
+            }
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+                if (selector != null) {
+                    selector.close();
+                }
+            } catch (IOException e) {
+                // Nothing more is read or written
+            }
+        }
+
+        /**
+         * Finds how many blocks the store holds and loads what verifying the next headers needs
+         * from it: the tip's hash and, when retargeting, one interval of difficulties and timestamps
+         */
+        private void resumeFromStore() {
+            startHeight = storedBlockCount();
+            syncedHeight = startHeight;
+            nextHeaderHeight = startHeight;
+            ensureCapacity(startHeight);
+            int lookback = difficultyPolicy.isRetargeting() ? difficultyPolicy.getRetargetInterval() : 1;
+            int[] height = {Math.max(0, startHeight - lookback)};
+            store.forEachBlock(height[0], startHeight, block -> {
+                difficultyBits[height[0]] = (byte) block.getDifficultyBits();
+                timeStamps[height[0]] = block.getTimeStamp();
+                lastHash = block.getHash();
+                height[0]++;
+            });
+        }
+
+        /**
+         * Size of a height-addressed store: probe doubling heights, then bisect
+         */
+        private int storedBlockCount() {
+            if (store.loadBlock(0) == null) {
+                return 0;
+            }
+            int present = 0;
+            int absent = 1;
+            while (store.loadBlock(absent) != null) {
+                present = absent;
+                absent *= 2;
+            }
+            while (absent - present > 1) {
+                int middle = (present + absent) >>> 1;
+                if (store.loadBlock(middle) != null) {
+                    present = middle;
+                } else {
+                    absent = middle;
+                }
+            }
+            return absent;
+        }
+
+        private void ensureCapacity(int size) {
+            if (size > timeStamps.length) {
+                int capacity = Math.max(size, timeStamps.length * 2);
+                timeStamps = Arrays.copyOf(timeStamps, capacity);
+                difficultyBits = Arrays.copyOf(difficultyBits, capacity);
+            }
+        }
+
+        /**
+         * Hands verified batches to the writer and rethrows the first failure, both in height
+         * order. Each save is chained to the one before, so once a save fails no later batch is
+         * saved on top of the gap.
+         */
+        private void collectCompleted() {
+            while (!batches.isEmpty() && batches.peekFirst().saved != null && batches.peekFirst().saved.isDone()) {
+                Batch batch = batches.removeFirst();
+                join(batch.saved);
+                syncedHeight = batch.from + batch.count;
+            }
+            for (Batch batch : batches) {
+                if (batch.saved != null) {
+                    continue;
+                }
+                if (batch.blocksVerified == null || !batch.blocksVerified.isDone()) {
+                    break;
+                }
+                List<Block> blocks = join(batch.blocksVerified);
+                batch.saved = lastSaved.thenRunAsync(() -> store.saveBlocks(blocks), writer);
+                lastSaved = batch.saved;
+                batch.saved.whenComplete((ignored, failure) -> selector.wakeup());
+            }
+            for (Batch batch : batches) {
+                if (batch.headersVerified == null || !batch.headersVerified.isDone()) {
+                    break;
+                }
+                join(batch.headersVerified);
+            }
+        }
+
+        /**
+         * Issues header requests up to the pipeline depth, and payload requests for batches whose
+         * headers have passed, in height order
+         *
+         * @return false once the store holds the leader's whole chain
+         */
+        private boolean requestMore() {
+            if (tip < 0 || (batches.isEmpty() && nextHeaderHeight >= tip)) {
+                if (tipConfirmed) {
+                    return false;
+                }
+                if (!tipRequested) {
+                    out.addLast(SyncProtocol.tipRequest());
+                    tipRequested = true;
+                }
+                return true;
+            }
+
+            int maxBatches = pipelineDepth * 4;
+            while (headerRequests < pipelineDepth && nextHeaderHeight < tip && batches.size() < maxBatches) {
+                int count = Math.min(batchSize, tip - nextHeaderHeight);
+                batches.addLast(new Batch(nextHeaderHeight, count));
+                out.addLast(SyncProtocol.request(SyncProtocol.HEADERS_REQUEST, nextHeaderHeight, count));
+                nextHeaderHeight += count;
+                headerRequests++;
+            }
+            for (Batch batch : batches) {
+                if (payloadRequests >= pipelineDepth) {
+                    break;
+                }
+                if (batch.payloadsRequested) {
+                    continue;
+                }
+                if (batch.headersVerified == null || !batch.headersVerified.isDone()
+                        || batch.headersVerified.isCompletedExceptionally()) {
+                    break;
+                }
+                out.addLast(SyncProtocol.request(SyncProtocol.PAYLOADS_REQUEST, batch.from, batch.count));
+                batch.payloadsRequested = true;
+                payloadRequests++;
+            }
+            return true;
+        }
+
+        private void writeRequests() throws IOException {
+            while (!out.isEmpty()) {
+                ByteBuffer request = out.peekFirst();
+                channel.write(request);
+                if (request.hasRemaining()) {
+                    break;
+                }
+                out.removeFirst();
+            }
+            channel.keyFor(selector).interestOps(out.isEmpty()
+                ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        private void readResponses() throws IOException {
+            int read;
+            while ((read = channel.read(in)) > 0) {
+                bytesReceived += read;
+                in.flip();
+                while (in.remaining() >= SyncProtocol.FRAME_HEADER_BYTES) {
+                    int length = in.getInt(in.position());
+                    // Checked before the buffer grows to fit the frame, so a bad length cannot exhaust the heap
+                    if (length < 1 || length > SyncProtocol.MAX_RESPONSE_BYTES) {
+                        throw new IOException("Malformed response frame of " + length + " bytes");
+                    }
+                    if (in.remaining() < SyncProtocol.FRAME_HEADER_BYTES + length) {
+                        break;
+                    }
+                    in.getInt();
+                    ByteBuffer body = in.slice().limit(length);
+                    in.position(in.position() + length);
+                    handle(body);
+                }
+                in.compact();
+                // A frame larger than the buffer needs a larger buffer before it can be read
+                if (!in.hasRemaining()) {
+                    in = ByteBuffer.allocate(in.capacity() * 2).put(in.flip());
+                }
+            }
+            if (read < 0) {
+                throw new IllegalStateException("Leader closed the connection");
+            }
+        }
+
+        private void handle(ByteBuffer body) {
+            byte type = body.get();
+            if (type == SyncProtocol.TIP) {
+                onTip(body.getInt(), SyncProtocol.readString(body));
+            } else if (type == SyncProtocol.HEADERS) {
+                onHeaders(body);
+            } else if (type == SyncProtocol.PAYLOADS) {
+                onPayloads(body);
+            } else if (type == SyncProtocol.ERROR) {
+                throw new IllegalStateException("Leader refused a request: " + SyncProtocol.readString(body));
+            } else {
+                throw new IllegalStateException("Unknown response type " + type);
+            }
+        }
+
+        private void onTip(int size, String leaderPolicy) {
+            if (!leaderPolicy.equals(difficultyPolicy.toString())) {
+                throw new IllegalStateException(String.format("Leader mines to \"%s\", this node to \"%s\"",
+                    leaderPolicy, difficultyPolicy));
+            }
+            if (size < Math.max(tip, startHeight)) {
+                throw new IllegalStateException(String.format("Leader has %d blocks, fewer than the %d here",
+                    size, Math.max(tip, startHeight)));
+            }
+            tipConfirmed = (size == tip) || (size == startHeight);
+            tip = size;
+            tipRequested = false;
+            ensureCapacity(tip);
+        }
+
+        private void onHeaders(ByteBuffer body) {
+            int from = body.getInt();
+            int count = body.getInt();
+            Batch batch = nextBatch(from, count, b -> b.headers == null);
+            headerRequests--;
+
+            SyncProtocol.Header[] headers = new SyncProtocol.Header[count];
+            String preceding = lastHash;
+            for (int i = 0; i < count; i++) {
+                SyncProtocol.Header header = SyncProtocol.readHeader(body);
+                headers[i] = header;
+                difficultyBits[from + i] = (byte) header.difficultyBits;
+                timeStamps[from + i] = header.timeStamp;
+            }
+            lastHash = headers[count - 1].hash;
+            batch.headers = headers;
+
+            // The arrays are passed as they are now: a later resize copies them, and the copy
+            // need not be visible to the verifier yet
+            byte[] bits = difficultyBits;
+            long[] times = timeStamps;
+            batch.headersVerified = CompletableFuture.runAsync(
+                () -> verifyHeaders(from, headers, preceding, bits, times), verifier);
+            batch.headersVerified.whenComplete((ignored, failure) -> selector.wakeup());
+        }
+
+        private void onPayloads(ByteBuffer body) {
+            int from = body.getInt();
+            int count = body.getInt();
+            Batch batch = nextBatch(from, count, b -> b.payloadsRequested && b.blocksVerified == null);
+            payloadRequests--;
+
+            // Decoded on the pool; the read buffer is reused for the next response
+            byte[] payloads = new byte[body.remaining()];
+            body.get(payloads);
+            batch.blocksVerified = CompletableFuture.supplyAsync(
+                () -> verifyPayloads(batch.from, batch.headers, ByteBuffer.wrap(payloads)), verifier);
+            batch.blocksVerified.whenComplete((ignored, failure) -> selector.wakeup());
+        }
+
+        /**
+         * The first batch still waiting for this kind of response; the leader answers in order
+         */
+        private Batch nextBatch(int from, int count, Predicate<Batch> waiting) {
+            for (Batch batch : batches) {
+                if (waiting.test(batch)) {
+                    if (batch.from != from || batch.count != count) {
+                        throw new IllegalStateException(String.format(
+                            "Leader sent %d blocks from %d, expected %d from %d; its chain may have been replaced",
+                            count, from, batch.count, batch.from));
+                    }
+                    return batch;
+                }
+            }
+            throw new IllegalStateException("Leader sent blocks that were not requested, from " + from);
+        }
+    }
+
+    /**
+     * Checks the headers of the blocks at heights {@code from ..}
+     *
+     * @param preceding hash of the block below {@code from}, or {@code null} at the genesis block
+     */
+    private void verifyHeaders(int from, SyncProtocol.Header[] headers, String preceding, byte[] bits, long[] timeStamps) {
+        for (int i = 0; i < headers.length; i++) {
+            int height = from + i;
+            SyncProtocol.Header header = headers[i];
+            if (header.merkleRoot != null && !header.hash.equals(Block.calculateHeaderHash(hashEngine,
+                    header.previousHash, header.timeStamp, header.nonce, header.merkleRoot))) {
+                throw rejected(height, Violation.INVALID_HASH);
+            }
+            String expectedPrevious = (i == 0) ? preceding : headers[i - 1].hash;
+            if (expectedPrevious != null && !header.previousHash.equals(expectedPrevious)) {
+                throw rejected(height, Violation.BROKEN_LINK);
+            }
+            int requiredBits = difficultyPolicy.bitsAt(height, h -> bits[h] & 0xff, h -> timeStamps[h]);
+            if (!difficultyPolicy.accepts(header.difficultyBits, requiredBits)) {
+                throw rejected(height, Violation.WRONG_DIFFICULTY);
+            }
+            if (!StringUtil.hasLeadingZeroBits(header.hash, header.difficultyBits)) {
+                throw rejected(height, Violation.INSUFFICIENT_WORK);
+            }
+        }
+    }
+
+    /**
+     * Builds the blocks of verified headers from their payloads and checks what the headers
+     * could not: the hash of blocks with opaque data, and the entries of blocks with a Merkle root
+     */
+    private List<Block> verifyPayloads(int from, SyncProtocol.Header[] headers, ByteBuffer payloads) {
+        List<Block> blocks = new ArrayList<>(headers.length);
+        for (int i = 0; i < headers.length; i++) {
+            Block block = headers[i].toBlock(SyncProtocol.readPayload(payloads));
+            if (!block.hasMerkleRoot() && !block.getHash().equals(block.calculateHash(hashEngine))) {
+                throw rejected(from + i, Violation.INVALID_HASH);
+            }
+            if (!block.isMerkleRootValid()) {
+                throw rejected(from + i, Violation.INVALID_MERKLE_ROOT);
+            }
+            blocks.add(block);
+        }
+        return blocks;
+    }
+
+    private static IllegalStateException rejected(int height, Violation violation) {
+        return new IllegalStateException("Rejected block from leader: " + violation.describe(height));
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
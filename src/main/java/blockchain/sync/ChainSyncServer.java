@@ -0,0 +1,238 @@
+package src.main.java.blockchain.sync;
+
+import src.main.java.blockchain.core.Block;
+import src.main.java.blockchain.core.Blockchain;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Serves a chain to followers over non-blocking sockets.
+ *
+ * One selector thread accepts connections, reads requests and writes responses. Requests on a
+ * connection are answered in order, so a follower can keep several in flight. The thread stops
+ * reading from a connection while more than {@link #MAX_QUEUED_BYTES} of responses wait to be
+ * written to it, so a slow follower cannot make the leader buffer its whole chain.
+ *
+ * Blocks are read with {@link Blockchain#getBlock(int)} on the selector thread. For a chain
+ * with a resident window, reading blocks outside the window goes to the store.
+ */
+public class ChainSyncServer implements AutoCloseable {
+    /** Responses queued per connection before the server stops reading its requests */
+    public static final int MAX_QUEUED_BYTES = 16 << 20;
+
+    private final Blockchain chain;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    /**
+     * Binds to {@code address} and starts serving; port 0 picks a free port
+     */
+    public ChainSyncServer(Blockchain chain, InetSocketAddress address) {
+        this.chain = chain;
+        try {
+            this.selector = Selector.open();
+            this.serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(address);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to listen on " + address, e);
+        }
+        this.thread = new Thread(this::serve, "chain-sync-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Address the server listens on, with the actual port */
+    public InetSocketAddress getAddress() {
+        try {
+            return (InetSocketAddress) serverChannel.getLocalAddress();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Closes all connections and stops the selector thread
+     */
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Per-connection state: the partial request read so far and the responses not yet written
+     */
+    private static final class Connection {
+        final ByteBuffer in = ByteBuffer.allocate(64);
+        final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        long queuedBytes;
+        boolean closeAfterWrite;
+    }
+
+    private void serve() {
+        try {
+            while (!closed) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            if (key.isReadable()) {
+                                read(key);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                write(key);
+                            }
+                        }
+                    } catch (IOException e) {
+                        // The follower went away; only its connection is affected
+                        closeConnection(key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Sync server failed", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeConnection(key);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // Every channel is closed already
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.register(selector, SelectionKey.OP_READ, new Connection());
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        if (channel.read(connection.in) < 0) {
+            closeConnection(key);
+            return;
+        }
+        connection.in.flip();
+        // After an error the remaining requests are dropped
+        while (!connection.closeAfterWrite && connection.in.remaining() >= SyncProtocol.FRAME_HEADER_BYTES) {
+            int length = connection.in.getInt(connection.in.position());
+            if (length < 1 || length > connection.in.capacity() - SyncProtocol.FRAME_HEADER_BYTES) {
+                reply(connection, SyncProtocol.error("Malformed request"));
+                break;
+            }
+            if (connection.in.remaining() < SyncProtocol.FRAME_HEADER_BYTES + length) {
+                break;
+            }
+            connection.in.getInt();
+            ByteBuffer request = connection.in.slice().limit(length);
+            connection.in.position(connection.in.position() + length);
+            reply(connection, respond(request));
+        }
+        connection.in.compact();
+        updateInterest(key, connection);
+    }
+
+    private ByteBuffer respond(ByteBuffer request) {
+        byte type = request.get();
+        if (type == SyncProtocol.TIP_REQUEST) {
+            return SyncProtocol.tip(chain.size(), chain.getDifficultyPolicy().toString());
+        }
+        if ((type != SyncProtocol.HEADERS_REQUEST && type != SyncProtocol.PAYLOADS_REQUEST) || request.remaining() < 8) {
+            return SyncProtocol.error("Unknown request type " + type);
+        }
+        int from = request.getInt();
+        int count = request.getInt();
+        if (from < 0 || count < 0 || count > SyncProtocol.MAX_BATCH) {
+            return SyncProtocol.error(String.format("Invalid range of %d blocks from %d", count, from));
+        }
+        // Blocks past the tip are left out; the follower asks for the tip again when it runs out
+        int available = Math.max(0, Math.min(count, chain.size() - from));
+        Block[] blocks = new Block[available];
+        for (int i = 0; i < available; i++) {
+            blocks[i] = chain.getBlock(from + i);
+        }
+        return (type == SyncProtocol.HEADERS_REQUEST)
+            ? SyncProtocol.headers(from, blocks) : SyncProtocol.payloads(from, blocks);
+    }
+
+    private static void reply(Connection connection, ByteBuffer response) {
+        connection.out.addLast(response);
+        connection.queuedBytes += response.remaining();
+        if (response.get(SyncProtocol.FRAME_HEADER_BYTES) == SyncProtocol.ERROR) {
+            connection.closeAfterWrite = true;
+        }
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        while (!connection.out.isEmpty()) {
+            ByteBuffer response = connection.out.peekFirst();
+            int written = channel.write(response);
+            connection.queuedBytes -= written;
+            if (response.hasRemaining()) {
+                break;
+            }
+            connection.out.removeFirst();
+        }
+        if (connection.out.isEmpty() && connection.closeAfterWrite) {
+            closeConnection(key);
+            return;
+        }
+        updateInterest(key, connection);
+    }
+
+    private static void updateInterest(SelectionKey key, Connection connection) {
+        if (!key.isValid()) {
+            return;
+        }
+        int ops = 0;
+        if (!connection.closeAfterWrite && connection.queuedBytes < MAX_QUEUED_BYTES) {
+            ops |= SelectionKey.OP_READ;
+        }
+        if (!connection.out.isEmpty()) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        key.interestOps(ops);
+    }
+
+    private static void closeConnection(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // Nothing left to do for this connection
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package src.main.java.blockchain.sync;
+
+import src.main.java.blockchain.core.Block;
+import src.main.java.blockchain.utils.StringUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Messages exchanged between a {@link ChainSyncServer} and a {@link ChainSyncClient}.
+ *
+ * Every message is a frame: an int length, counting the type byte and the body, then the type
+ * byte and the body. The follower sends requests; the leader answers each one in order on the
+ * same connection, so the follower can pipeline requests.
+ *
+ * <pre>
+ * TIP_REQUEST       (empty)
+ * TIP               int chain size, string difficulty policy
+ * HEADERS_REQUEST   int from height, int count
+ * HEADERS           int from height, int count, count headers
+ * PAYLOADS_REQUEST  int from height, int count
+ * PAYLOADS          int from height, int count, count payloads
+ * ERROR             string message; the leader closes the connection after it
+ *
+ * header:  long timestamp, int nonce, byte difficulty bits, digest hash, digest previous hash,
+ *          byte 1 if a Merkle root follows else 0, digest Merkle root if present
+ * payload: int length, UTF-8 data
+ * digest:  byte 0 + 32 raw bytes, or byte 1 + string for any other value (the genesis block's "0")
+ * string:  short length, UTF-8 bytes
+ * </pre>
+ *
+ * A header carries everything a block's hash covers except the data. The hash of a block with a
+ * Merkle root can therefore be checked from its header alone; the hash of any other block is
+ * checked once its payload arrives.
+ */
+final class SyncProtocol {
+    static final byte TIP_REQUEST = 1;
+    static final byte TIP = 2;
+    static final byte HEADERS_REQUEST = 3;
+    static final byte HEADERS = 4;
+    static final byte PAYLOADS_REQUEST = 5;
+    static final byte PAYLOADS = 6;
+    static final byte ERROR = 7;
+
+    /** Most headers or payloads the leader sends for one request */
+    static final int MAX_BATCH = 10_000;
+
+    /** Length prefix of a frame */
+    static final int FRAME_HEADER_BYTES = 4;
+
+    /**
+     * Longest response body a follower accepts. Payload batches are bounded by block count only,
+     * so a batch of blocks averaging over 25 KB of data can exceed this and fail the sync.
+     */
+    static final int MAX_RESPONSE_BYTES = 256 << 20;
+
+    private static final byte RAW_DIGEST = 0;
+    private static final byte TEXT_DIGEST = 1;
+
+    private SyncProtocol() {
+    }
+
+    /**
+     * Header of one block as received, before its payload
+     */
+    static final class Header {
+        final long timeStamp;
+        final int nonce;
+        final int difficultyBits;
+        final String hash;
+        final String previousHash;
+        final String merkleRoot;   // null for blocks with opaque data
+
+        Header(long timeStamp, int nonce, int difficultyBits, String hash, String previousHash, String merkleRoot) {
+            this.timeStamp = timeStamp;
+            this.nonce = nonce;
+            this.difficultyBits = difficultyBits;
+            this.hash = hash;
+            this.previousHash = previousHash;
+            this.merkleRoot = merkleRoot;
+        }
+
+        /** The block with the given payload as its data */
+        Block toBlock(String data) {
+            return Block.fromDatabase(hash, previousHash, data, timeStamp, nonce, merkleRoot, difficultyBits);
+        }
+    }
+
+    static ByteBuffer request(byte type, int from, int count) {
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_BYTES + 1 + 8);
+        frame.putInt(1 + 8).put(type).putInt(from).putInt(count);
+        return frame.flip();
+    }
+
+    static ByteBuffer tipRequest() {
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_BYTES + 1);
+        frame.putInt(1).put(TIP_REQUEST);
+        return frame.flip();
+    }
+
+    static ByteBuffer tip(int size, String difficultyPolicy) {
+        byte[] policy = difficultyPolicy.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_BYTES + 1 + 4 + 2 + policy.length);
+        frame.putInt(frame.capacity() - FRAME_HEADER_BYTES).put(TIP).putInt(size);
+        frame.putShort((short) policy.length).put(policy);
+        return frame.flip();
+    }
+
+    static ByteBuffer error(String message) {
+        byte[] text = message.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_BYTES + 1 + 2 + text.length);
+        frame.putInt(frame.capacity() - FRAME_HEADER_BYTES).put(ERROR);
+        frame.putShort((short) text.length).put(text);
+        return frame.flip();
+    }
+
+    /**
+     * Headers of {@code blocks}, the blocks at heights {@code from ..}
+     */
+    static ByteBuffer headers(int from, Block[] blocks) {
+        int size = FRAME_HEADER_BYTES + 1 + 8;
+        for (Block block : blocks) {
+            size += 8 + 4 + 1 + digestSize(block.getHash()) + digestSize(block.getPreviousHash()) + 1
+                + (block.hasMerkleRoot() ? digestSize(block.getMerkleRoot()) : 0);
+        }
+        ByteBuffer frame = ByteBuffer.allocate(size);
+        frame.putInt(size - FRAME_HEADER_BYTES).put(HEADERS).putInt(from).putInt(blocks.length);
+        for (Block block : blocks) {
+            frame.putLong(block.getTimeStamp());
+            frame.putInt(block.getNonce());
+            frame.put((byte) block.getDifficultyBits());
+            putDigest(frame, block.getHash());
+            putDigest(frame, block.getPreviousHash());
+            frame.put((byte) (block.hasMerkleRoot() ? 1 : 0));
+            if (block.hasMerkleRoot()) {
+                putDigest(frame, block.getMerkleRoot());
+            }
+        }
+        return frame.flip();
+    }
+
+    static Header readHeader(ByteBuffer body) {
+        long timeStamp = body.getLong();
+        int nonce = body.getInt();
+        int difficultyBits = body.get() & 0xff;
+        String hash = getDigest(body);
+        String previousHash = getDigest(body);
+        String merkleRoot = (body.get() == 1) ? getDigest(body) : null;
+        return new Header(timeStamp, nonce, difficultyBits, hash, previousHash, merkleRoot);
+    }
+
+    /**
+     * Data of {@code blocks}, the blocks at heights {@code from ..}
+     */
+    static ByteBuffer payloads(int from, Block[] blocks) {
+        byte[][] data = new byte[blocks.length][];
+        int size = FRAME_HEADER_BYTES + 1 + 8;
+        for (int i = 0; i < blocks.length; i++) {
+            data[i] = blocks[i].getData().getBytes(StandardCharsets.UTF_8);
+            size += 4 + data[i].length;
+        }
+        ByteBuffer frame = ByteBuffer.allocate(size);
+        frame.putInt(size - FRAME_HEADER_BYTES).put(PAYLOADS).putInt(from).putInt(blocks.length);
+        for (byte[] payload : data) {
+            frame.putInt(payload.length).put(payload);
+        }
+        return frame.flip();
+    }
+
+    static String readPayload(ByteBuffer body) {
+        byte[] data = new byte[body.getInt()];
+        body.get(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    static String readString(ByteBuffer body) {
+        byte[] text = new byte[body.getShort() & 0xffff];
+        body.get(text);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    private static int digestSize(String digest) {
+        if (StringUtil.isSha256Hex(digest)) {
+            return 1 + 32;
+        }
+        return 1 + 2 + digest.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void putDigest(ByteBuffer buffer, String digest) {
+        if (StringUtil.isSha256Hex(digest)) {
+            buffer.put(RAW_DIGEST);
+            buffer.put(StringUtil.fromHex(digest));
+        } else {
+            byte[] text = digest.getBytes(StandardCharsets.UTF_8);
+            buffer.put(TEXT_DIGEST);
+            buffer.putShort((short) text.length);
+            buffer.put(text);
+        }
+    }
+
+    private static String getDigest(ByteBuffer buffer) {
+        byte kind = buffer.get();
+        if (kind == RAW_DIGEST) {
+            byte[] raw = new byte[32];
+            buffer.get(raw);
+            return StringUtil.toHex(raw);
+        }
+        return readString(buffer);
+    }
+}
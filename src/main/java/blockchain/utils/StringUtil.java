@@ -1,67 +1,98 @@
 package src.main.java.blockchain.utils;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
+import src.main.java.blockchain.hashing.HashEngines;
 
 /**
  * Utility class for cryptographic hashing operations
  */
 public class StringUtil {
 
-    // Thread-local MessageDigest for thread safety and performance
-    private static final ThreadLocal<MessageDigest> SHA256_DIGEST =
-        ThreadLocal.withInitial(() -> {
-            try {
-                return MessageDigest.getInstance("SHA-256");
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to initialize SHA-256", e);
-            }
-        });
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
     /**
-     * Original SHA-256 method (backward compatible)
+     * SHA-256 of the UTF-8 bytes of {@code input} as lowercase hex, computed by the JCA engine
+     * with a thread-local MessageDigest
      */
     public static String applySha256(String input) {
-        if (input == null) {
-            throw new IllegalArgumentException("Input cannot be null");
+        return HashEngines.jca().hashHex(input);
+    }
+
+    /**
+     * Same as {@link #applySha256(String)}, which now reuses a thread-local MessageDigest as
+     * this method once did on its own
+     *
+     * @deprecated use {@link #applySha256(String)}
+     */
+    @Deprecated
+    public static String applySha256Optimized(String input) {
+        return applySha256(input);
+    }
+
+    /**
+     * Lowercase hex encoding of a byte array
+     */
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int val = bytes[i] & 0xff;
+            chars[i * 2] = HEX_DIGITS[val >>> 4];
+            chars[i * 2 + 1] = HEX_DIGITS[val & 0x0f];
         }
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
+        return new String(chars);
+    }
+
+    /**
+     * Decodes a hex string of even length (either case) into bytes
+     *
+     * @throws IllegalArgumentException if the string is not valid hex
+     */
+    public static byte[] fromHex(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Hex string must have an even length");
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Invalid hex string: " + hex);
             }
-            return hexString.toString();
-        } catch (Exception e) {
-            throw new RuntimeException("Error calculating SHA-256 hash", e);
+            bytes[i] = (byte) ((high << 4) | low);
         }
+        return bytes;
     }
 
     /**
-     * Optimized SHA-256 hashing with thread-local MessageDigest
+     * Whether the digest written as hex starts with at least {@code zeroBits} zero bits. Each hex
+     * digit holds four bits of the digest, so this is the same test miners run on raw digests.
      */
-    public static String applySha256Optimized(String input) {
-        if (input == null) {
-            throw new IllegalArgumentException("Input cannot be null");
+    public static boolean hasLeadingZeroBits(String hexDigest, int zeroBits) {
+        if (zeroBits > hexDigest.length() * 4) {
+            return false;
         }
+        int fullDigits = zeroBits >>> 2;
+        for (int i = 0; i < fullDigits; i++) {
+            if (hexDigest.charAt(i) != '0') {
+                return false;
+            }
+        }
+        int remaining = zeroBits & 3;
+        return remaining == 0 || (Character.digit(hexDigest.charAt(fullDigits), 16) >>> (4 - remaining)) == 0;
+    }
 
-        MessageDigest digest = SHA256_DIGEST.get();
-        digest.reset();
-
-        byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-        StringBuilder hexString = new StringBuilder(64);
-        for (byte b : hash) {
-            int val = b & 0xff;
-            if (val < 16) {
-                hexString.append('0');
+    /**
+     * Whether the string is a lowercase hex SHA-256 digest (64 characters)
+     */
+    public static boolean isSha256Hex(String value) {
+        if (value == null || value.length() != 64) {
+            return false;
+        }
+        for (int i = 0; i < 64; i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
             }
-            hexString.append(Integer.toHexString(val));
         }
-        return hexString.toString();
+        return true;
     }
 }